@@ -28,7 +28,6 @@ import se.uu.ub.cora.apptokenstorage.AppTokenStorage;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
-import se.uu.ub.cora.storage.RecordNotFoundException;
 
 public class AppTokenStorageImp extends SecurityStorage implements AppTokenStorage {
 	private Logger log = LoggerProvider.getLoggerForClass(AppTokenStorageImp.class);
@@ -80,10 +79,9 @@ public class AppTokenStorageImp extends SecurityStorage implements AppTokenStora
 	private DataGroup findUser(String userId) {
 		DataGroup user = null;
 		for (String userRecordTypeName : userRecordTypeNames) {
-			try {
-				user = recordStorage.read(userRecordTypeName, userId);
-			} catch (RecordNotFoundException e) {
-				// do nothing
+			DataGroup userForRecordType = recordStorage.readOrNull(userRecordTypeName, userId);
+			if (null != userForRecordType) {
+				user = userForRecordType;
 			}
 		}
 		return user;
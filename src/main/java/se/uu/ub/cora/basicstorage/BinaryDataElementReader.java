@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+final class BinaryDataElementReader {
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private DataInputStream input;
+	private List<String> strings = new ArrayList<>();
+
+	static BinaryDataElementReader usingInput(DataInputStream input) {
+		return new BinaryDataElementReader(input);
+	}
+
+	private BinaryDataElementReader(DataInputStream input) {
+		this.input = input;
+	}
+
+	DataElement readElement() throws IOException {
+		byte elementType = input.readByte();
+		String nameInData = readString();
+		String repeatId = readString();
+		if (elementType == BinaryDataElementWriter.ATOMIC) {
+			DataAtomic dataAtomic = DataAtomicProvider
+					.getDataAtomicUsingNameInDataAndValue(nameInData, readString());
+			if (null != repeatId) {
+				dataAtomic.setRepeatId(repeatId);
+			}
+			return dataAtomic;
+		}
+		DataGroup dataGroup = DataGroupProvider.getDataGroupUsingNameInData(nameInData);
+		if (null != repeatId) {
+			dataGroup.setRepeatId(repeatId);
+		}
+		readAttributes(dataGroup);
+		readChildren(dataGroup);
+		return dataGroup;
+	}
+
+	private void readAttributes(DataGroup dataGroup) throws IOException {
+		int noOfAttributes = input.readInt();
+		for (int i = 0; i < noOfAttributes; i++) {
+			dataGroup.addAttributeByIdWithValue(readString(), readString());
+		}
+	}
+
+	private void readChildren(DataGroup dataGroup) throws IOException {
+		int noOfChildren = input.readInt();
+		for (int i = 0; i < noOfChildren; i++) {
+			dataGroup.addChild(readElement());
+		}
+	}
+
+	String readString() throws IOException {
+		int index = input.readInt();
+		if (index == BinaryDataElementWriter.NO_STRING) {
+			return null;
+		}
+		if (index == strings.size()) {
+			byte[] bytes = readBytes(readLength());
+			strings.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return strings.get(index);
+	}
+
+	private int readLength() throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			throw new IOException("Negative string length: " + length);
+		}
+		return length;
+	}
+
+	private byte[] readBytes(int length) throws IOException {
+		if (length <= CHUNK_SIZE) {
+			byte[] bytes = new byte[length];
+			input.readFully(bytes);
+			return bytes;
+		}
+		return readBytesInChunks(length);
+	}
+
+	private byte[] readBytesInChunks(int length) throws IOException {
+		// a corrupt length must end in EOF, not in allocating memory for data that is not there
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+		byte[] chunk = new byte[CHUNK_SIZE];
+		int remaining = length;
+		while (remaining > 0) {
+			int noOfBytesToRead = Math.min(remaining, CHUNK_SIZE);
+			input.readFully(chunk, 0, noOfBytesToRead);
+			bytes.write(chunk, 0, noOfBytesToRead);
+			remaining -= noOfBytesToRead;
+		}
+		return bytes.toByteArray();
+	}
+}
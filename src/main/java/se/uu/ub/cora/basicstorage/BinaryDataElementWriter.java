@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+
+final class BinaryDataElementWriter {
+	static final byte GROUP = 1;
+	static final byte ATOMIC = 2;
+	static final int NO_STRING = -1;
+	private DataOutputStream output;
+	private Map<String, Integer> stringIndexes = new HashMap<>();
+
+	static BinaryDataElementWriter usingOutput(DataOutputStream output) {
+		return new BinaryDataElementWriter(output);
+	}
+
+	private BinaryDataElementWriter(DataOutputStream output) {
+		this.output = output;
+	}
+
+	void writeElement(DataElement element) throws IOException {
+		if (element instanceof DataAtomic) {
+			DataAtomic dataAtomic = (DataAtomic) element;
+			output.writeByte(ATOMIC);
+			writeString(dataAtomic.getNameInData());
+			writeString(dataAtomic.getRepeatId());
+			writeString(dataAtomic.getValue());
+		} else {
+			DataGroup dataGroup = (DataGroup) element;
+			output.writeByte(GROUP);
+			writeString(dataGroup.getNameInData());
+			writeString(dataGroup.getRepeatId());
+			writeAttributes(dataGroup.getAttributes());
+			writeChildren(dataGroup.getChildren());
+		}
+	}
+
+	private void writeAttributes(Map<String, String> attributes) throws IOException {
+		output.writeInt(attributes.size());
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			writeString(attribute.getKey());
+			writeString(attribute.getValue());
+		}
+	}
+
+	private void writeChildren(List<DataElement> children) throws IOException {
+		output.writeInt(children.size());
+		for (DataElement child : children) {
+			writeElement(child);
+		}
+	}
+
+	void writeString(String string) throws IOException {
+		if (null == string) {
+			output.writeInt(NO_STRING);
+			return;
+		}
+		Integer index = stringIndexes.get(string);
+		if (null != index) {
+			output.writeInt(index);
+			return;
+		}
+		int newIndex = stringIndexes.size();
+		stringIndexes.put(string, newIndex);
+		output.writeInt(newIndex);
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -18,54 +18,56 @@
  */
 package se.uu.ub.cora.basicstorage;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.data.DataGroupProvider;
 
 class CollectedDataOrganiser {
-	private Map<String, DataGroup> collectedDataByDataDivider;
+	private DataGroup collectedData;
 	private String recordType;
 	private String key;
 	private int repeatId;
 	private String id;
 
-	protected Map<String, DataGroup> structureCollectedDataForDisk(
-			Map<String, Map<String, Map<String, List<StorageTermData>>>> terms) {
-		collectedDataByDataDivider = new HashMap<>();
+	protected DataGroup structureCollectedDataForDisk(
+			Map<String, Map<String, Map<String, List<StorageTermData>>>> terms,
+			Map<String, Set<String>> recordIdsByRecordType) {
+		collectedData = DataGroupProvider.getDataGroupUsingNameInData("collectedData");
 		repeatId = 0;
-		for (Entry<String, Map<String, Map<String, List<StorageTermData>>>> entryRecordType : terms
-				.entrySet()) {
+		for (Entry<String, Set<String>> entryRecordType : recordIdsByRecordType.entrySet()) {
 			recordType = entryRecordType.getKey();
-			loopKeysAndCreateStorageTerms(entryRecordType.getValue());
+			loopKeysAndCreateStorageTerms(terms.get(recordType), entryRecordType.getValue());
 		}
-		return collectedDataByDataDivider;
+		return collectedData;
 	}
 
-	private void loopKeysAndCreateStorageTerms(
-			Map<String, Map<String, List<StorageTermData>>> map) {
+	private void loopKeysAndCreateStorageTerms(Map<String, Map<String, List<StorageTermData>>> map,
+			Set<String> recordIds) {
 		for (Entry<String, Map<String, List<StorageTermData>>> mapForEntryKey : map.entrySet()) {
 			key = mapForEntryKey.getKey();
-			loopRecordIdsAndCreateStorageTerms(mapForEntryKey.getValue());
+			loopRecordIdsAndCreateStorageTerms(mapForEntryKey.getValue(), recordIds);
 		}
 	}
 
-	private void loopRecordIdsAndCreateStorageTerms(Map<String, List<StorageTermData>> map) {
-		for (Entry<String, List<StorageTermData>> idEntry : map.entrySet()) {
-			id = idEntry.getKey();
-			loopStorageTermDataAndCreateStorageTerms(idEntry);
+	private void loopRecordIdsAndCreateStorageTerms(Map<String, List<StorageTermData>> map,
+			Set<String> recordIds) {
+		for (String recordId : recordIds) {
+			if (map.containsKey(recordId)) {
+				id = recordId;
+				loopStorageTermDataAndCreateStorageTerms(map.get(recordId));
+			}
 		}
 	}
 
 	private void loopStorageTermDataAndCreateStorageTerms(
-			Entry<String, List<StorageTermData>> idEntry) {
-		for (StorageTermData storageTermData : idEntry.getValue()) {
-			DataGroup storageTerm = createStorageTerm(storageTermData);
-			addStorageTermToResult(storageTermData, storageTerm);
+			List<StorageTermData> listOfStorageTermData) {
+		for (StorageTermData storageTermData : listOfStorageTermData) {
+			collectedData.addChild(createStorageTerm(storageTermData));
 		}
 	}
 
@@ -84,18 +86,4 @@ class CollectedDataOrganiser {
 		repeatId++;
 		return storageTerm;
 	}
-
-	private void addStorageTermToResult(StorageTermData storageTermData, DataGroup storageTerm) {
-		String dataDivider = storageTermData.dataDivider;
-		ensureCollectedDataForDataDivider(dataDivider);
-		collectedDataByDataDivider.get(dataDivider).addChild(storageTerm);
-	}
-
-	private void ensureCollectedDataForDataDivider(String dataDivider) {
-		if (!collectedDataByDataDivider.containsKey(dataDivider)) {
-			DataGroup collectedData = DataGroupProvider
-					.getDataGroupUsingNameInData("collectedData");
-			collectedDataByDataDivider.put(dataDivider, collectedData);
-		}
-	}
-}
\ No newline at end of file
+}
@@ -21,20 +21,52 @@ package se.uu.ub.cora.basicstorage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import se.uu.ub.cora.data.DataGroup;
 
 class CollectedTermsInMemoryStorage {
-	private Map<String, Map<String, Map<String, List<StorageTermData>>>> terms = new HashMap<>();
+	private Map<String, Map<String, Map<String, List<StorageTermData>>>> terms = new ConcurrentHashMap<>();
+	private Map<String, Map<String, Map<String, RecordIdsForValue>>> recordIdsByTypeKeyAndValue = new ConcurrentHashMap<>();
+	private Map<String, Map<String, Set<String>>> recordIdsByDataDividerAndRecordType = new HashMap<>();
+	private Set<String> changedDataDividers = new HashSet<>();
 
-	void removePreviousCollectedStorageTerms(String recordType, String recordId) {
+	synchronized void removePreviousCollectedStorageTerms(String recordType, String recordId) {
 		if (termsExistForRecordType(recordType)) {
 			Map<String, Map<String, List<StorageTermData>>> termsForRecordType = terms
 					.get(recordType);
-			removePreviousCollectedStorageTermsForRecordType(recordId, termsForRecordType);
+			removePreviousCollectedStorageTermsForRecordType(recordType, recordId,
+					termsForRecordType);
+			removeRecordIdFromDataDividersAndMarkAsChanged(recordType, recordId);
+		}
+	}
+
+	private void removeRecordIdFromDataDividersAndMarkAsChanged(String recordType,
+			String recordId) {
+		for (Entry<String, Map<String, Set<String>>> dataDividerEntry : recordIdsByDataDividerAndRecordType
+				.entrySet()) {
+			Map<String, Set<String>> recordIdsByRecordType = dataDividerEntry.getValue();
+			Set<String> recordIds = recordIdsByRecordType.get(recordType);
+			if (null != recordIds && recordIds.remove(recordId)) {
+				removeRecordTypeIfNoRecordIdsLeft(recordIdsByRecordType, recordType);
+				changedDataDividers.add(dataDividerEntry.getKey());
+			}
+		}
+	}
+
+	private void removeRecordTypeIfNoRecordIdsLeft(Map<String, Set<String>> recordIdsByRecordType,
+			String recordType) {
+		if (recordIdsByRecordType.get(recordType).isEmpty()) {
+			recordIdsByRecordType.remove(recordType);
 		}
 	}
 
@@ -42,45 +74,41 @@ class CollectedTermsInMemoryStorage {
 		return terms.containsKey(recordType);
 	}
 
-	private void removePreviousCollectedStorageTermsForRecordType(String recordId,
-			Map<String, Map<String, List<StorageTermData>>> termsForRecordType) {
+	private void removePreviousCollectedStorageTermsForRecordType(String recordType,
+			String recordId, Map<String, Map<String, List<StorageTermData>>> termsForRecordType) {
 		for (Entry<String, Map<String, List<StorageTermData>>> keyEntry : termsForRecordType
 				.entrySet()) {
 			Map<String, List<StorageTermData>> termsForRecordId = keyEntry.getValue();
-			removePreviousCollectedStorageTermsForRecordId(recordId, termsForRecordId);
+			List<StorageTermData> removedTerms = termsForRecordId.remove(recordId);
+			if (null != removedTerms) {
+				removeRecordIdFromValueIndex(recordType, keyEntry.getKey(), recordId,
+						removedTerms);
+			}
 		}
 	}
 
-	private void removePreviousCollectedStorageTermsForRecordId(String recordId,
-			Map<String, List<StorageTermData>> termsForRecordId) {
-		List<String> idsToRemove = new ArrayList<>();
-		findIdsToRemove(recordId, termsForRecordId, idsToRemove);
-		removeStorageTermsForIds(termsForRecordId, idsToRemove);
-	}
-
-	private void findIdsToRemove(String recordId,
-			Map<String, List<StorageTermData>> termsForRecordId, List<String> idsToRemove) {
-		for (Entry<String, List<StorageTermData>> recordIdEntry : termsForRecordId.entrySet()) {
-			if (termsExistForRecordId(recordId, recordIdEntry)) {
-				idsToRemove.add(recordIdEntry.getKey());
+	private void removeRecordIdFromValueIndex(String recordType, String storageKey,
+			String recordId, List<StorageTermData> removedTerms) {
+		Map<String, RecordIdsForValue> recordIdsByValue = recordIdsByTypeKeyAndValue
+				.get(recordType).get(storageKey);
+		for (StorageTermData storageTermData : removedTerms) {
+			RecordIdsForValue recordIds = recordIdsByValue.get(storageTermData.value);
+			if (null != recordIds) {
+				recordIds.remove(recordId);
+				removeValueIfNoRecordIdsLeft(recordIdsByValue, storageTermData.value);
 			}
 		}
 	}
 
-	private void removeStorageTermsForIds(Map<String, List<StorageTermData>> termsForRecordId,
-			List<String> idsToRemove) {
-		for (String key : idsToRemove) {
-			termsForRecordId.remove(key);
+	private void removeValueIfNoRecordIdsLeft(Map<String, RecordIdsForValue> recordIdsByValue,
+			String value) {
+		if (recordIdsByValue.get(value).size() == 0) {
+			recordIdsByValue.remove(value);
 		}
 	}
 
-	private boolean termsExistForRecordId(String recordId,
-			Entry<String, List<StorageTermData>> recordIdEntry) {
-		return recordIdEntry.getKey().equals(recordId);
-	}
-
-	void storeCollectedTerms(String recordType, String recordId, DataGroup collectedTerms,
-			String dataDivider) {
+	synchronized void storeCollectedTerms(String recordType, String recordId,
+			DataGroup collectedTerms, String dataDivider) {
 		removePreviousCollectedStorageTerms(recordType, recordId);
 		if (collectedTerms.containsChildWithNameInData("storage")) {
 			storeCollectedStorageTerms(recordType, recordId, collectedTerms, dataDivider);
@@ -106,14 +134,39 @@ class CollectedTermsInMemoryStorage {
 				recordType, storageKey, recordId);
 
 		listOfStorageTermData.add(StorageTermData.withValueAndDataDivider(termValue, dataDivider));
+		addRecordIdToValueIndex(recordType, storageKey, recordId, termValue);
+		addRecordIdToDataDivider(recordType, recordId, dataDivider);
+		changedDataDividers.add(dataDivider);
+	}
+
+	private void addRecordIdToDataDivider(String recordType, String recordId,
+			String dataDivider) {
+		if (!recordIdsByDataDividerAndRecordType.containsKey(dataDivider)) {
+			recordIdsByDataDividerAndRecordType.put(dataDivider, new HashMap<>());
+		}
+		Map<String, Set<String>> recordIdsByRecordType = recordIdsByDataDividerAndRecordType
+				.get(dataDivider);
+		if (!recordIdsByRecordType.containsKey(recordType)) {
+			recordIdsByRecordType.put(recordType, new HashSet<>());
+		}
+		recordIdsByRecordType.get(recordType).add(recordId);
 	}
 
-	void storeCollectedStorageTermData(String recordType, String storageKey, String recordId,
-			StorageTermData storageTermData) {
+	synchronized void storeCollectedStorageTermData(String recordType, String storageKey,
+			String recordId, StorageTermData storageTermData) {
 		List<StorageTermData> listOfStorageTermData = ensureStorageListExistsForTermForTypeAndKeyAndId(
 				recordType, storageKey, recordId);
 
 		listOfStorageTermData.add(storageTermData);
+		addRecordIdToValueIndex(recordType, storageKey, recordId, storageTermData.value);
+		addRecordIdToDataDivider(recordType, recordId, storageTermData.dataDivider);
+	}
+
+	private void addRecordIdToValueIndex(String recordType, String storageKey, String recordId,
+			String value) {
+		recordIdsByTypeKeyAndValue.computeIfAbsent(recordType, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(storageKey, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(value, key -> new RecordIdsForValue()).add(recordId);
 	}
 
 	private List<StorageTermData> ensureStorageListExistsForTermForTypeAndKeyAndId(
@@ -127,14 +180,14 @@ class CollectedTermsInMemoryStorage {
 
 	private void ensureStorageMapExistsForRecordType(String recordType) {
 		if (!terms.containsKey(recordType)) {
-			terms.put(recordType, new HashMap<>());
+			terms.put(recordType, new ConcurrentHashMap<>());
 		}
 	}
 
 	private void ensureStorageListExistsForTermKey(String storageKey,
 			Map<String, Map<String, List<StorageTermData>>> storageKeysForType) {
 		if (!storageKeysForType.containsKey(storageKey)) {
-			HashMap<String, List<StorageTermData>> mapOfIds = new HashMap<>();
+			Map<String, List<StorageTermData>> mapOfIds = new ConcurrentHashMap<>();
 			storageKeysForType.put(storageKey, mapOfIds);
 		}
 	}
@@ -142,55 +195,79 @@ class CollectedTermsInMemoryStorage {
 	private void ensureStorageListExistsForId(String storageKey, String recordId,
 			Map<String, Map<String, List<StorageTermData>>> storageKeysForType) {
 		if (!storageKeysForType.get(storageKey).containsKey(recordId)) {
-			storageKeysForType.get(storageKey).put(recordId, new ArrayList<>());
+			storageKeysForType.get(storageKey).put(recordId, new CopyOnWriteArrayList<>());
 		}
 	}
 
 	List<String> findRecordIdsForFilter(String type, DataGroup filter) {
-		DataGroup filterPart = filter.getFirstGroupWithNameInData("part");
-		if (terms.containsKey(type)) {
-			return findRecordIdsMatchingFilterPart(type, filterPart);
+		RecordIdsForValue recordIds = getRecordIdsMatchingFilterOrNull(type, filter);
+		if (null == recordIds) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(recordIds.recordIds);
+	}
+
+	int countRecordIdsForFilter(String type, DataGroup filter) {
+		RecordIdsForValue recordIds = getRecordIdsMatchingFilterOrNull(type, filter);
+		if (null == recordIds) {
+			return 0;
 		}
-		return Collections.emptyList();
+		return recordIds.size();
 	}
 
-	private List<String> findRecordIdsMatchingFilterPart(String type, DataGroup filterPart) {
+	private RecordIdsForValue getRecordIdsMatchingFilterOrNull(String type, DataGroup filter) {
+		DataGroup filterPart = filter.getFirstGroupWithNameInData("part");
 		String key = filterPart.getFirstAtomicValueWithNameInData("key");
 		String value = filterPart.getFirstAtomicValueWithNameInData("value");
-		Map<String, Map<String, List<StorageTermData>>> storageTermsForRecordType = terms.get(type);
-
-		Map<String, List<StorageTermData>> mapOfIdsAndStorageTermForTypeAndKey = storageTermsForRecordType
-				.get(key);
-		if (null != mapOfIdsAndStorageTermForTypeAndKey) {
-			return findRecordIdsMatchingValueForKey(value, mapOfIdsAndStorageTermForTypeAndKey);
+		Map<String, RecordIdsForValue> recordIdsByValue = recordIdsByTypeKeyAndValue
+				.getOrDefault(type, Collections.emptyMap()).get(key);
+		if (null == recordIdsByValue) {
+			return null;
 		}
-		return Collections.emptyList();
+		return recordIdsByValue.get(value);
 	}
 
-	private List<String> findRecordIdsMatchingValueForKey(String value,
-			Map<String, List<StorageTermData>> mapOfIdsAndStorageTermForTypeAndKey) {
-		List<String> foundRecordIdsForKey = new ArrayList<>();
+	synchronized Set<String> getChangedDataDividers() {
+		return new HashSet<>(changedDataDividers);
+	}
 
-		for (Entry<String, List<StorageTermData>> entry : mapOfIdsAndStorageTermForTypeAndKey
-				.entrySet()) {
-			findRecordIdsMatchingValueForId(value, foundRecordIdsForKey, entry);
+	synchronized DataGroup structureCollectedTermsForDiskIfChanged(String dataDivider) {
+		if (changedDataDividers.remove(dataDivider)) {
+			return structureCollectedTermsForDataDivider(dataDivider);
 		}
+		return null;
+	}
+
+	private DataGroup structureCollectedTermsForDataDivider(String dataDivider) {
+		Map<String, Set<String>> recordIdsByRecordType = recordIdsByDataDividerAndRecordType
+				.getOrDefault(dataDivider, Collections.emptyMap());
+		return new CollectedDataOrganiser().structureCollectedDataForDisk(terms,
+				recordIdsByRecordType);
+	}
 
-		return foundRecordIdsForKey;
+	Map<String, Map<String, Map<String, List<StorageTermData>>>> getAllTerms() {
+		return terms;
 	}
 
-	private void findRecordIdsMatchingValueForId(String value, List<String> foundRecordIdsForKey,
-			Entry<String, List<StorageTermData>> entry) {
-		String key = entry.getKey();
-		for (StorageTermData storageTermData : entry.getValue()) {
-			if (storageTermData.value.equals(value)) {
-				foundRecordIdsForKey.add(key);
+	private static final class RecordIdsForValue {
+		// the size of a skip list is counted by walking it, so the record ids are counted here
+		private final NavigableSet<String> recordIds = new ConcurrentSkipListSet<>();
+		private final AtomicInteger noOfRecordIds = new AtomicInteger();
+
+		void add(String recordId) {
+			if (recordIds.add(recordId)) {
+				noOfRecordIds.incrementAndGet();
 			}
 		}
-	}
 
-	Map<String, DataGroup> structureCollectedTermsForDisk() {
-		return new CollectedDataOrganiser().structureCollectedDataForDisk(terms);
-	}
+		void remove(String recordId) {
+			if (recordIds.remove(recordId)) {
+				noOfRecordIds.decrementAndGet();
+			}
+		}
 
+		int size() {
+			return noOfRecordIds.get();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+final class DataFileStamps {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private final Path basePath;
+
+	static DataFileStamps usingBasePath(Path basePath) {
+		return new DataFileStamps(basePath);
+	}
+
+	private DataFileStamps(Path basePath) {
+		this.basePath = basePath;
+	}
+
+	void write(DataOutputStream output, BinaryDataElementWriter elementWriter,
+			List<Path> pathsToDataFiles) throws IOException {
+		output.writeInt(pathsToDataFiles.size());
+		for (Path path : pathsToDataFiles) {
+			elementWriter.writeString(basePath.relativize(path).toString());
+			output.writeLong(Files.size(path));
+			output.writeLong(Files.getLastModifiedTime(path).toMillis());
+			output.writeLong(calculateChecksum(path));
+		}
+	}
+
+	private long calculateChecksum(Path path) throws IOException {
+		// size and last modified do not change when a file is rewritten with the same size
+		// within the precision of last modified
+		CRC32 checksum = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream input = Files.newInputStream(path)) {
+			int noOfReadBytes = input.read(buffer);
+			while (noOfReadBytes != -1) {
+				checksum.update(buffer, 0, noOfReadBytes);
+				noOfReadBytes = input.read(buffer);
+			}
+		}
+		return checksum.getValue();
+	}
+
+	boolean readAndCompareWithDataFiles(DataInputStream input,
+			BinaryDataElementReader elementReader, List<Path> pathsToDataFiles)
+			throws IOException {
+		int noOfDataFiles = input.readInt();
+		if (noOfDataFiles != pathsToDataFiles.size()) {
+			return false;
+		}
+		Map<Path, Path> dataFilesByRelativePath = mapDataFilesByRelativePath(pathsToDataFiles);
+		for (int i = 0; i < noOfDataFiles; i++) {
+			Path path = dataFilesByRelativePath.get(Paths.get(elementReader.readString()));
+			long size = input.readLong();
+			long lastModified = input.readLong();
+			long checksum = input.readLong();
+			if (null == path || dataFileIsChanged(path, size, lastModified, checksum)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Map<Path, Path> mapDataFilesByRelativePath(List<Path> pathsToDataFiles) {
+		Map<Path, Path> dataFilesByRelativePath = new HashMap<>();
+		for (Path path : pathsToDataFiles) {
+			dataFilesByRelativePath.put(basePath.relativize(path), path);
+		}
+		return dataFilesByRelativePath;
+	}
+
+	Set<Path> readAndCollectChangedDataFiles(DataInputStream input,
+			BinaryDataElementReader elementReader, List<Path> pathsToDataFiles)
+			throws IOException {
+		Map<Path, Path> dataFilesByRelativePath = mapDataFilesByRelativePath(pathsToDataFiles);
+		Set<Path> changedDataFiles = new HashSet<>();
+		int noOfDataFiles = input.readInt();
+		for (int i = 0; i < noOfDataFiles; i++) {
+			Path relativePath = Paths.get(elementReader.readString());
+			Path path = dataFilesByRelativePath.remove(relativePath);
+			long size = input.readLong();
+			long lastModified = input.readLong();
+			long checksum = input.readLong();
+			if (null == path || dataFileIsChanged(path, size, lastModified, checksum)) {
+				changedDataFiles.add(relativePath);
+			}
+		}
+		// data files not stamped are added after the stamps were written
+		changedDataFiles.addAll(dataFilesByRelativePath.keySet());
+		return changedDataFiles;
+	}
+
+	private boolean dataFileIsChanged(Path path, long size, long lastModified, long checksum)
+			throws IOException {
+		return Files.size(path) != size
+				|| Files.getLastModifiedTime(path).toMillis() != lastModified
+				|| calculateChecksum(path) != checksum;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class DataGroupCompactor {
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private DataGroupCompactor() {
+		throw new UnsupportedOperationException();
+	}
+
+	static byte[] compact(DataGroup dataGroup) {
+		try {
+			return tryToCompact(dataGroup);
+		} catch (IOException e) {
+			throw DataStorageException.withMessageAndException("can not compact record: " + e, e);
+		}
+	}
+
+	private static byte[] tryToCompact(DataGroup dataGroup) throws IOException {
+		ByteArrayOutputStream compactBytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new DeflaterOutputStream(compactBytes, deflater), BUFFER_SIZE))) {
+			BinaryDataElementWriter.usingOutput(output).writeElement(dataGroup);
+		} finally {
+			deflater.end();
+		}
+		return compactBytes.toByteArray();
+	}
+
+	static DataGroup expand(byte[] compactDataGroup) {
+		try {
+			return tryToExpand(compactDataGroup);
+		} catch (IOException e) {
+			throw DataStorageException.withMessageAndException("can not expand record: " + e, e);
+		}
+	}
+
+	private static DataGroup tryToExpand(byte[] compactDataGroup) throws IOException {
+		Inflater inflater = new Inflater();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new ByteArrayInputStream(compactDataGroup), inflater),
+				BUFFER_SIZE))) {
+			return (DataGroup) BinaryDataElementReader.usingInput(input).readElement();
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.List;
+import java.util.Objects;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+
+final class DataGroupComparer {
+
+	private DataGroupComparer() {
+		throw new UnsupportedOperationException();
+	}
+
+	static boolean dataGroupsAreEqual(DataGroup first, DataGroup second) {
+		return first.getNameInData().equals(second.getNameInData())
+				&& Objects.equals(first.getRepeatId(), second.getRepeatId())
+				&& first.getAttributes().equals(second.getAttributes())
+				&& childrenAreEqual(first.getChildren(), second.getChildren());
+	}
+
+	private static boolean childrenAreEqual(List<DataElement> firstChildren,
+			List<DataElement> secondChildren) {
+		if (firstChildren.size() != secondChildren.size()) {
+			return false;
+		}
+		for (int index = 0; index < firstChildren.size(); index++) {
+			if (!dataElementsAreEqual(firstChildren.get(index), secondChildren.get(index))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean dataElementsAreEqual(DataElement first, DataElement second) {
+		if (first instanceof DataGroup && second instanceof DataGroup) {
+			return dataGroupsAreEqual((DataGroup) first, (DataGroup) second);
+		}
+		if (first instanceof DataAtomic && second instanceof DataAtomic) {
+			return dataAtomicsAreEqual((DataAtomic) first, (DataAtomic) second);
+		}
+		return false;
+	}
+
+	private static boolean dataAtomicsAreEqual(DataAtomic first, DataAtomic second) {
+		return first.getNameInData().equals(second.getNameInData())
+				&& Objects.equals(first.getValue(), second.getValue())
+				&& Objects.equals(first.getRepeatId(), second.getRepeatId());
+	}
+}
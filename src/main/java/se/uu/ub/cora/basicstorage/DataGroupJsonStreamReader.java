@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataPart;
+import se.uu.ub.cora.data.converter.JsonToDataConverter;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.json.parser.JsonParser;
+import se.uu.ub.cora.json.parser.JsonValue;
+import se.uu.ub.cora.json.parser.org.OrgJsonParser;
+
+final class DataGroupJsonStreamReader {
+	private static final int END_OF_STREAM = -1;
+	private static final int NOTHING_PEEKED = -2;
+	private static final String CHILDREN = "children";
+	private Reader reader;
+	private int peekedChar = NOTHING_PEEKED;
+	private boolean insideChildren = false;
+	private boolean finished = false;
+	private JsonParser jsonParser = new OrgJsonParser();
+
+	static DataGroupJsonStreamReader usingReader(Reader reader) {
+		return new DataGroupJsonStreamReader(reader);
+	}
+
+	private DataGroupJsonStreamReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	DataGroup readNextChild() throws IOException {
+		String childJson = readNextChildAsJson();
+		if (null == childJson) {
+			return null;
+		}
+		return convertJsonStringToDataGroup(childJson);
+	}
+
+	private String readNextChildAsJson() throws IOException {
+		if (finished) {
+			return null;
+		}
+		if (insideChildren) {
+			moveToNextChild();
+		} else {
+			moveToFirstChild();
+		}
+		if (finished) {
+			return null;
+		}
+		return readValueAsJson();
+	}
+
+	private void moveToFirstChild() throws IOException {
+		insideChildren = true;
+		if (!moveToChildrenArray()) {
+			finished = true;
+			return;
+		}
+		if (peekNonWhitespace() == ']') {
+			read();
+			finished = true;
+		}
+	}
+
+	private boolean moveToChildrenArray() throws IOException {
+		readExpected('{');
+		if (peekNonWhitespace() == '}') {
+			return false;
+		}
+		while (true) {
+			String key = readKey();
+			if (CHILDREN.equals(key)) {
+				readExpected('[');
+				return true;
+			}
+			readValueAsJson();
+			int separator = readNonWhitespace();
+			if (separator == '}') {
+				return false;
+			}
+			if (separator != ',') {
+				throw createUnexpectedCharacterException(separator);
+			}
+		}
+	}
+
+	private String readKey() throws IOException {
+		readExpected('"');
+		StringBuilder key = new StringBuilder();
+		readRestOfString(key);
+		readExpected(':');
+		return key.substring(0, key.length() - 1);
+	}
+
+	private void moveToNextChild() throws IOException {
+		int separator = readNonWhitespace();
+		if (separator == ']') {
+			finished = true;
+		} else if (separator != ',') {
+			throw createUnexpectedCharacterException(separator);
+		}
+	}
+
+	private String readValueAsJson() throws IOException {
+		StringBuilder json = new StringBuilder();
+		int first = readNonWhitespace();
+		json.append((char) first);
+		if (first == '{' || first == '[') {
+			readRestOfObjectOrArray(json);
+		} else if (first == '"') {
+			readRestOfString(json);
+		} else {
+			readRestOfLiteral(json);
+		}
+		return json.toString();
+	}
+
+	private void readRestOfObjectOrArray(StringBuilder json) throws IOException {
+		int depth = 1;
+		while (depth > 0) {
+			int current = readRequired();
+			json.append((char) current);
+			if (current == '"') {
+				readRestOfString(json);
+			} else if (current == '{' || current == '[') {
+				depth++;
+			} else if (current == '}' || current == ']') {
+				depth--;
+			}
+		}
+	}
+
+	private void readRestOfString(StringBuilder json) throws IOException {
+		int current = readRequired();
+		while (current != '"') {
+			json.append((char) current);
+			if (current == '\\') {
+				json.append((char) readRequired());
+			}
+			current = readRequired();
+		}
+		json.append('"');
+	}
+
+	private void readRestOfLiteral(StringBuilder json) throws IOException {
+		int current = peek();
+		while (current != END_OF_STREAM && current != ',' && current != '}' && current != ']'
+				&& !Character.isWhitespace(current)) {
+			json.append((char) read());
+			current = peek();
+		}
+	}
+
+	private void readExpected(char expected) throws IOException {
+		int current = readNonWhitespace();
+		if (current != expected) {
+			throw createUnexpectedCharacterException(current);
+		}
+	}
+
+	private int peekNonWhitespace() throws IOException {
+		skipWhitespace();
+		return peek();
+	}
+
+	private int readNonWhitespace() throws IOException {
+		skipWhitespace();
+		return readRequired();
+	}
+
+	private void skipWhitespace() throws IOException {
+		while (Character.isWhitespace(peek())) {
+			read();
+		}
+	}
+
+	private int readRequired() throws IOException {
+		int current = read();
+		if (current == END_OF_STREAM) {
+			throw DataStorageException.withMessage("can not read json: unexpected end of stream");
+		}
+		return current;
+	}
+
+	private int peek() throws IOException {
+		if (peekedChar == NOTHING_PEEKED) {
+			peekedChar = reader.read();
+		}
+		return peekedChar;
+	}
+
+	private int read() throws IOException {
+		int current = peek();
+		peekedChar = NOTHING_PEEKED;
+		return current;
+	}
+
+	private DataStorageException createUnexpectedCharacterException(int current) {
+		if (current == END_OF_STREAM) {
+			return DataStorageException.withMessage("can not read json: unexpected end of stream");
+		}
+		return DataStorageException
+				.withMessage("can not read json: unexpected character " + (char) current);
+	}
+
+	private DataGroup convertJsonStringToDataGroup(String json) {
+		JsonValue jsonValue = jsonParser.parseString(json);
+		JsonToDataConverter jsonToDataConverter = JsonToDataConverterProvider
+				.getConverterUsingJsonObject(jsonValue);
+		DataPart dataPart = jsonToDataConverter.toInstance();
+		return (DataGroup) dataPart;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+
+final class DataGroupJsonStreamWriter {
+	private static final String INDENT = "    ";
+	private Writer writer;
+	private final List<String> indentsByDepth = new ArrayList<>();
+
+	static DataGroupJsonStreamWriter usingWriter(Writer writer) {
+		return new DataGroupJsonStreamWriter(writer);
+	}
+
+	private DataGroupJsonStreamWriter(Writer writer) {
+		this.writer = writer;
+		indentsByDepth.add("");
+	}
+
+	void writeDataGroup(DataGroup dataGroup) throws IOException {
+		writeElement(dataGroup, 0);
+	}
+
+	private String getIndentForDepth(int depth) {
+		// each indent is created once, as the same few depths are written for every record
+		while (indentsByDepth.size() <= depth) {
+			indentsByDepth.add(indentsByDepth.get(indentsByDepth.size() - 1) + INDENT);
+		}
+		return indentsByDepth.get(depth);
+	}
+
+	private void writeElement(DataElement element, int depth) throws IOException {
+		if (element instanceof DataGroup) {
+			writeGroup((DataGroup) element, depth);
+		} else {
+			writeAtomic((DataAtomic) element, depth);
+		}
+	}
+
+	private void writeGroup(DataGroup dataGroup, int depth) throws IOException {
+		// keys are written in the order DataToJsonConverter writes them
+		int childDepth = depth + 1;
+		boolean hasRepeatId = hasRepeatId(dataGroup.getRepeatId());
+		boolean hasChildren = !dataGroup.getChildren().isEmpty();
+		boolean hasAttributes = !dataGroup.getAttributes().isEmpty();
+		if (!hasRepeatId && !hasChildren && !hasAttributes) {
+			writeGroupWithOnlyName(dataGroup);
+			return;
+		}
+		writer.write('{');
+		if (hasRepeatId) {
+			writeKeyOnNewLine("repeatId", childDepth);
+			writeQuoted(dataGroup.getRepeatId());
+			writer.write(',');
+		}
+		if (hasChildren) {
+			writeKeyOnNewLine("children", childDepth);
+			writeChildren(dataGroup.getChildren(), childDepth);
+			writer.write(',');
+		}
+		writeKeyOnNewLine("name", childDepth);
+		writeQuoted(dataGroup.getNameInData());
+		if (hasAttributes) {
+			writer.write(',');
+			writeKeyOnNewLine("attributes", childDepth);
+			writeAttributes(dataGroup.getAttributes(), childDepth);
+		}
+		writeEndOfObject(depth);
+	}
+
+	private boolean hasRepeatId(String repeatId) {
+		return null != repeatId && !repeatId.isEmpty();
+	}
+
+	private void writeGroupWithOnlyName(DataGroup dataGroup) throws IOException {
+		writer.write("{\"name\": ");
+		writeQuoted(dataGroup.getNameInData());
+		writer.write('}');
+	}
+
+	private void writeKeyOnNewLine(String key, int depth) throws IOException {
+		writer.write('\n');
+		writer.write(getIndentForDepth(depth));
+		writeQuoted(key);
+		writer.write(": ");
+	}
+
+	private void writeEndOfObject(int depth) throws IOException {
+		writer.write('\n');
+		writer.write(getIndentForDepth(depth));
+		writer.write('}');
+	}
+
+	private void writeAttributes(Map<String, String> attributes, int depth) throws IOException {
+		if (attributes.size() == 1) {
+			writeOnlyAttribute(attributes.entrySet().iterator().next());
+		} else {
+			// attributes are written sorted by name, so the same group is always written the same
+			writeEachAttributeOnNewLine(new TreeMap<>(attributes), depth);
+		}
+	}
+
+	private void writeOnlyAttribute(Entry<String, String> attribute) throws IOException {
+		writer.write('{');
+		writeQuoted(attribute.getKey());
+		writer.write(": ");
+		writeQuoted(attribute.getValue());
+		writer.write('}');
+	}
+
+	private void writeEachAttributeOnNewLine(Map<String, String> attributes, int depth)
+			throws IOException {
+		int attributeDepth = depth + 1;
+		writer.write('{');
+		boolean needsComma = false;
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			if (needsComma) {
+				writer.write(',');
+			}
+			writeKeyOnNewLine(attribute.getKey(), attributeDepth);
+			writeQuoted(attribute.getValue());
+			needsComma = true;
+		}
+		writeEndOfObject(depth);
+	}
+
+	private void writeAtomic(DataAtomic dataAtomic, int depth) throws IOException {
+		int childDepth = depth + 1;
+		writer.write('{');
+		if (hasRepeatId(dataAtomic.getRepeatId())) {
+			writeKeyOnNewLine("repeatId", childDepth);
+			writeQuoted(dataAtomic.getRepeatId());
+			writer.write(',');
+		}
+		writeKeyOnNewLine("name", childDepth);
+		writeQuoted(dataAtomic.getNameInData());
+		writer.write(',');
+		writeKeyOnNewLine("value", childDepth);
+		writeQuoted(dataAtomic.getValue());
+		writeEndOfObject(depth);
+	}
+
+	private void writeChildren(List<DataElement> children, int depth) throws IOException {
+		writer.write('[');
+		if (children.size() == 1) {
+			writeElement(children.get(0), depth);
+		} else {
+			writeEachChildOnNewLine(children, depth);
+		}
+		writer.write(']');
+	}
+
+	private void writeEachChildOnNewLine(List<DataElement> children, int depth)
+			throws IOException {
+		int childDepth = depth + 1;
+		boolean needsComma = false;
+		for (DataElement child : children) {
+			if (needsComma) {
+				writer.write(',');
+			}
+			writer.write('\n');
+			writer.write(getIndentForDepth(childDepth));
+			writeElement(child, childDepth);
+			needsComma = true;
+		}
+		writer.write('\n');
+		writer.write(getIndentForDepth(depth));
+	}
+
+	private void writeQuoted(String string) throws IOException {
+		writer.write('"');
+		char previous = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char current = string.charAt(i);
+			writeEscaped(current, previous);
+			previous = current;
+		}
+		writer.write('"');
+	}
+
+	private void writeEscaped(char current, char previous) throws IOException {
+		switch (current) {
+		case '\\':
+		case '"':
+			writer.write('\\');
+			writer.write(current);
+			break;
+		case '/':
+			if (previous == '<') {
+				writer.write('\\');
+			}
+			writer.write(current);
+			break;
+		case '\b':
+			writer.write("\\b");
+			break;
+		case '\t':
+			writer.write("\\t");
+			break;
+		case '\n':
+			writer.write("\\n");
+			break;
+		case '\f':
+			writer.write("\\f");
+			break;
+		case '\r':
+			writer.write("\\r");
+			break;
+		default:
+			writeCharacterPossiblyAsUnicodeEscape(current);
+		}
+	}
+
+	private void writeCharacterPossiblyAsUnicodeEscape(char current) throws IOException {
+		if (current < ' ' || (current >= '\u0080' && current < '\u00a0')
+				|| (current >= '\u2000' && current < '\u2100')) {
+			String hex = Integer.toHexString(current);
+			writer.write("\\u");
+			writer.write("0000", 0, 4 - hex.length());
+			writer.write(hex);
+		} else {
+			writer.write(current);
+		}
+	}
+}
@@ -19,20 +19,41 @@
 
 package se.uu.ub.cora.basicstorage;
 
+import java.nio.ByteBuffer;
+
 import se.uu.ub.cora.data.DataGroup;
 
 final class DividerGroup {
+	static final long NOT_MAPPED = -1;
 
 	static DividerGroup withDataDividerAndDataGroup(String dataDivider, DataGroup dataGroup) {
-		return new DividerGroup(dataDivider, dataGroup);
+		return new DividerGroup(dataDivider, dataGroup, null, null, NOT_MAPPED);
+	}
+
+	static DividerGroup withDataDividerAndCompactDataGroup(String dataDivider,
+			byte[] compactDataGroup) {
+		return new DividerGroup(dataDivider, null, compactDataGroup, null, NOT_MAPPED);
+	}
+
+	static DividerGroup withDataDividerAndMappedSegmentAndPosition(String dataDivider,
+			ByteBuffer mappedSegment, long mappedPosition) {
+		return new DividerGroup(dataDivider, null, null, mappedSegment, mappedPosition);
 	}
 
-	String dataDivider;
-	DataGroup dataGroup;
+	final String dataDivider;
+	final DataGroup dataGroup;
+	final byte[] compactDataGroup;
+	// the segment is referenced, so a record read while segments are compacted stays readable
+	final ByteBuffer mappedSegment;
+	final long mappedPosition;
 
-	private DividerGroup(String dataDivider, DataGroup dataGroup) {
+	private DividerGroup(String dataDivider, DataGroup dataGroup, byte[] compactDataGroup,
+			ByteBuffer mappedSegment, long mappedPosition) {
 		this.dataDivider = dataDivider;
 		this.dataGroup = dataGroup;
+		this.compactDataGroup = compactDataGroup;
+		this.mappedSegment = mappedSegment;
+		this.mappedPosition = mappedPosition;
 	}
 
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class ExpandedRecordCache {
+	private static final int INITIAL_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final int MAX_NO_OF_STRIPES = 16;
+	private static final int MIN_NO_OF_RECORDS_IN_STRIPE = 64;
+	private final Map<DividerGroup, DataGroup>[] stripes;
+
+	static ExpandedRecordCache withMaxNoOfRecords(int maxNoOfRecords) {
+		return new ExpandedRecordCache(maxNoOfRecords);
+	}
+
+	@SuppressWarnings("unchecked")
+	private ExpandedRecordCache(int maxNoOfRecords) {
+		// reads of different records mostly use different stripes, each its own least recently
+		// used cache, instead of all reads waiting for one lock
+		int noOfStripes = calculateNoOfStripes(maxNoOfRecords);
+		stripes = new Map[noOfStripes];
+		for (int i = 0; i < noOfStripes; i++) {
+			stripes[i] = createStripe(maxNoOfRecords / noOfStripes);
+		}
+	}
+
+	private int calculateNoOfStripes(int maxNoOfRecords) {
+		int noOfStripes = Math.min(MAX_NO_OF_STRIPES,
+				maxNoOfRecords / MIN_NO_OF_RECORDS_IN_STRIPE);
+		return Integer.highestOneBit(Math.max(1, noOfStripes));
+	}
+
+	private Map<DividerGroup, DataGroup> createStripe(int maxNoOfRecordsInStripe) {
+		return new LinkedHashMap<DividerGroup, DataGroup>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<DividerGroup, DataGroup> eldest) {
+				return size() > maxNoOfRecordsInStripe;
+			}
+		};
+	}
+
+	private Map<DividerGroup, DataGroup> getStripe(DividerGroup compactRecord) {
+		int hash = compactRecord.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+
+	DataGroup getExpandedDataGroupOrNull(DividerGroup compactRecord) {
+		Map<DividerGroup, DataGroup> stripe = getStripe(compactRecord);
+		synchronized (stripe) {
+			return stripe.get(compactRecord);
+		}
+	}
+
+	void cacheExpandedDataGroup(DividerGroup compactRecord, DataGroup expandedDataGroup) {
+		Map<DividerGroup, DataGroup> stripe = getStripe(compactRecord);
+		synchronized (stripe) {
+			stripe.putIfAbsent(compactRecord, expandedDataGroup);
+		}
+	}
+
+	int getNoOfCachedRecords() {
+		// needed for test
+		int noOfCachedRecords = 0;
+		for (Map<DividerGroup, DataGroup> stripe : stripes) {
+			synchronized (stripe) {
+				noOfCachedRecords += stripe.size();
+			}
+		}
+		return noOfCachedRecords;
+	}
+
+	int getNoOfStripes() {
+		// needed for test
+		return stripes.length;
+	}
+}
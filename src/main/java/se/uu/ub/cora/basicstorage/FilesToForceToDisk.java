@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class FilesToForceToDisk {
+	private final Path basePath;
+	private final Set<Path> pathsToForceToDisk = ConcurrentHashMap.newKeySet();
+
+	static FilesToForceToDisk usingBasePath(String basePath) {
+		return new FilesToForceToDisk(basePath);
+	}
+
+	private FilesToForceToDisk(String basePath) {
+		this.basePath = Paths.get(basePath);
+	}
+
+	void addWrittenFile(Path path) {
+		pathsToForceToDisk.add(path);
+		addDirectoriesToForceToDisk(path);
+	}
+
+	void addRemovedFile(Path path) {
+		addDirectoriesToForceToDisk(path);
+	}
+
+	private void addDirectoriesToForceToDisk(Path path) {
+		pathsToForceToDisk.add(path.getParent());
+		pathsToForceToDisk.add(basePath);
+	}
+
+	void forceToDisk() {
+		for (Path path : pathsToForceToDisk) {
+			pathsToForceToDisk.remove(path);
+			possiblyForcePathToDisk(path);
+		}
+	}
+
+	private void possiblyForcePathToDisk(Path path) {
+		if (Files.exists(path)) {
+			tryToForcePathToDisk(path);
+		}
+		// paths removed after they were written have nothing left to force
+	}
+
+	private void tryToForcePathToDisk(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			handleErrorForcingPathToDisk(path, e);
+		}
+	}
+
+	private void handleErrorForcingPathToDisk(Path path, IOException e) {
+		if (Files.isDirectory(path)) {
+			// directories can not be opened to be forced on all platforms, such as Windows
+			return;
+		}
+		pathsToForceToDisk.add(path);
+		throw DataStorageException.withMessageAndException("can not force files to disk: " + e,
+				e);
+	}
+
+	Set<Path> getPathsToForceToDisk() {
+		// needed for test
+		return pathsToForceToDisk;
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+final class IndexedRecordIds extends AbstractCollection<String> {
+	// nodes are never changed, a write replaces the nodes on its path and then the root, so
+	// a read walks the tree as it was when the read started without any lock
+	private volatile Node root;
+
+	static IndexedRecordIds usingNoRecordIds() {
+		return new IndexedRecordIds(null);
+	}
+
+	static IndexedRecordIds usingRecordIds(Collection<String> recordIds) {
+		String[] orderedRecordIds = new TreeSet<>(recordIds).toArray(new String[0]);
+		return new IndexedRecordIds(
+				createBalancedNode(orderedRecordIds, 0, orderedRecordIds.length));
+	}
+
+	private static Node createBalancedNode(String[] orderedRecordIds, int fromIndex,
+			int toIndex) {
+		if (fromIndex == toIndex) {
+			return null;
+		}
+		int middleIndex = (fromIndex + toIndex) >>> 1;
+		return Node.usingRecordIdAndChildren(orderedRecordIds[middleIndex],
+				createBalancedNode(orderedRecordIds, fromIndex, middleIndex),
+				createBalancedNode(orderedRecordIds, middleIndex + 1, toIndex));
+	}
+
+	private IndexedRecordIds(Node root) {
+		this.root = root;
+	}
+
+	@Override
+	public synchronized boolean add(String recordId) {
+		// writes are synchronized as records for one type can be stored from parallel file reads
+		Node rootBeforeAdd = root;
+		root = addToNode(rootBeforeAdd, recordId);
+		return root != rootBeforeAdd;
+	}
+
+	private Node addToNode(Node node, String recordId) {
+		if (null == node) {
+			return Node.usingRecordIdAndChildren(recordId, null, null);
+		}
+		int comparison = recordId.compareTo(node.recordId);
+		if (comparison < 0) {
+			Node left = addToNode(node.left, recordId);
+			return left == node.left ? node : balance(node.recordId, left, node.right);
+		}
+		if (comparison > 0) {
+			Node right = addToNode(node.right, recordId);
+			return right == node.right ? node : balance(node.recordId, node.left, right);
+		}
+		return node;
+	}
+
+	@Override
+	public synchronized boolean remove(Object recordId) {
+		Node rootBeforeRemove = root;
+		root = removeFromNode(rootBeforeRemove, (String) recordId);
+		return root != rootBeforeRemove;
+	}
+
+	private Node removeFromNode(Node node, String recordId) {
+		if (null == node) {
+			return null;
+		}
+		int comparison = recordId.compareTo(node.recordId);
+		if (comparison < 0) {
+			Node left = removeFromNode(node.left, recordId);
+			return left == node.left ? node : balance(node.recordId, left, node.right);
+		}
+		if (comparison > 0) {
+			Node right = removeFromNode(node.right, recordId);
+			return right == node.right ? node : balance(node.recordId, node.left, right);
+		}
+		return removeNode(node);
+	}
+
+	private Node removeNode(Node node) {
+		if (null == node.left) {
+			return node.right;
+		}
+		if (null == node.right) {
+			return node.left;
+		}
+		String firstRecordIdInRight = getFirstNode(node.right).recordId;
+		return balance(firstRecordIdInRight, node.left,
+				removeFromNode(node.right, firstRecordIdInRight));
+	}
+
+	private Node getFirstNode(Node node) {
+		Node firstNode = node;
+		while (null != firstNode.left) {
+			firstNode = firstNode.left;
+		}
+		return firstNode;
+	}
+
+	private Node balance(String recordId, Node left, Node right) {
+		int heightDifference = height(left) - height(right);
+		if (heightDifference > 1) {
+			return rotateRight(recordId, left, right);
+		}
+		if (heightDifference < -1) {
+			return rotateLeft(recordId, left, right);
+		}
+		return Node.usingRecordIdAndChildren(recordId, left, right);
+	}
+
+	private Node rotateRight(String recordId, Node left, Node right) {
+		if (height(left.left) >= height(left.right)) {
+			return Node.usingRecordIdAndChildren(left.recordId, left.left,
+					Node.usingRecordIdAndChildren(recordId, left.right, right));
+		}
+		Node leftRight = left.right;
+		return Node.usingRecordIdAndChildren(leftRight.recordId,
+				Node.usingRecordIdAndChildren(left.recordId, left.left, leftRight.left),
+				Node.usingRecordIdAndChildren(recordId, leftRight.right, right));
+	}
+
+	private Node rotateLeft(String recordId, Node left, Node right) {
+		if (height(right.right) >= height(right.left)) {
+			return Node.usingRecordIdAndChildren(right.recordId,
+					Node.usingRecordIdAndChildren(recordId, left, right.left), right.right);
+		}
+		Node rightLeft = right.left;
+		return Node.usingRecordIdAndChildren(rightLeft.recordId,
+				Node.usingRecordIdAndChildren(recordId, left, rightLeft.left),
+				Node.usingRecordIdAndChildren(right.recordId, rightLeft.right, right.right));
+	}
+
+	private static int height(Node node) {
+		return null == node ? 0 : node.height;
+	}
+
+	private static int size(Node node) {
+		return null == node ? 0 : node.size;
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	@Override
+	public boolean contains(Object recordId) {
+		Node node = root;
+		while (null != node) {
+			int comparison = ((String) recordId).compareTo(node.recordId);
+			if (comparison == 0) {
+				return true;
+			}
+			node = comparison < 0 ? node.left : node.right;
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return iteratorStartingAtIndex(0);
+	}
+
+	Iterator<String> iteratorStartingAtIndex(int fromIndex) {
+		return new RecordIdIterator(root, fromIndex);
+	}
+
+	private static final class RecordIdIterator implements Iterator<String> {
+		private final Deque<Node> nodesLeftToVisit = new ArrayDeque<>();
+
+		private RecordIdIterator(Node root, int fromIndex) {
+			// the nodes on the path to the start index are kept, the rest is visited when read
+			Node node = root;
+			int indexInNode = fromIndex;
+			while (null != node) {
+				int sizeOfLeft = size(node.left);
+				if (indexInNode < sizeOfLeft) {
+					nodesLeftToVisit.push(node);
+					node = node.left;
+				} else if (indexInNode == sizeOfLeft) {
+					nodesLeftToVisit.push(node);
+					node = null;
+				} else {
+					indexInNode -= sizeOfLeft + 1;
+					node = node.right;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !nodesLeftToVisit.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (nodesLeftToVisit.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Node node = nodesLeftToVisit.pop();
+			pushNodeAndItsLeftNodes(node.right);
+			return node.recordId;
+		}
+
+		private void pushNodeAndItsLeftNodes(Node node) {
+			Node leftNode = node;
+			while (null != leftNode) {
+				nodesLeftToVisit.push(leftNode);
+				leftNode = leftNode.left;
+			}
+		}
+	}
+
+	private static final class Node {
+		final String recordId;
+		final Node left;
+		final Node right;
+		final int height;
+		final int size;
+
+		static Node usingRecordIdAndChildren(String recordId, Node left, Node right) {
+			return new Node(recordId, left, right);
+		}
+
+		private Node(String recordId, Node left, Node right) {
+			this.recordId = recordId;
+			this.left = left;
+			this.right = right;
+			height = Math.max(height(left), height(right)) + 1;
+			size = size(left) + size(right) + 1;
+		}
+	}
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+final class MappedRecordSegments {
+	static final String SEGMENTS_DIRECTORY = "segments";
+	private static final String SEGMENT_FILE_NAME_PREFIX = "segment";
+	private static final String SEGMENT_FILE_NAME_ENDING = ".bin";
+	private static final String MANIFEST_FILE_NAME = "manifest.bin";
+	private static final String TEMPORARY_MANIFEST_FILE_NAME = "manifest.bin.tmp";
+	private static final int FORMAT_VERSION = 3;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MIN_PERCENT_OF_USED_BYTES_IN_USE = 50;
+	private final Path segmentsPath;
+	private final Path manifestPath;
+	private final int segmentSize;
+	private final DataFileStamps dataFileStamps;
+	private final NavigableMap<Integer, MappedByteBuffer> segments = new TreeMap<>();
+	private int nextSegmentNumber;
+	private int positionInLastSegment;
+	private long noOfBytesInUse;
+	private boolean segmentSealedSinceManifest;
+
+	static MappedRecordSegments usingBasePathAndSegmentSize(String basePath, int segmentSize) {
+		return new MappedRecordSegments(basePath, segmentSize);
+	}
+
+	private MappedRecordSegments(String basePath, int segmentSize) {
+		this.segmentsPath = Paths.get(basePath, SEGMENTS_DIRECTORY);
+		this.manifestPath = segmentsPath.resolve(MANIFEST_FILE_NAME);
+		this.segmentSize = segmentSize;
+		dataFileStamps = DataFileStamps.usingBasePath(Paths.get(basePath));
+	}
+
+	Set<String> reopenIntoStorageIfUpToDateWithDataFiles(RecordStorageOnDisk recordStorage,
+			List<Path> pathsToDataFiles) {
+		Map<String, Map<String, DividerGroup>> reopenedRecords = tryToReopenSegments(
+				recordStorage, pathsToDataFiles);
+		if (null == reopenedRecords || reopenedRecords.isEmpty()) {
+			startWithoutSegments();
+			tryToRemoveSegmentsFromEarlierStart();
+			return Collections.emptySet();
+		}
+		tryToRemoveSegmentsNotInManifest();
+		storeReopenedRecordsInStorage(recordStorage, reopenedRecords);
+		return reopenedRecords.keySet();
+	}
+
+	private Map<String, Map<String, DividerGroup>> tryToReopenSegments(
+			RecordStorageOnDisk recordStorage, List<Path> pathsToDataFiles) {
+		if (!Files.exists(manifestPath)) {
+			return null;
+		}
+		try {
+			return reopenSegmentsForRecordTypesWithUnchangedDataFiles(recordStorage,
+					pathsToDataFiles);
+		} catch (IOException | RuntimeException e) {
+			// a manifest or segment that can not be read is rebuilt from the data files
+			return null;
+		}
+	}
+
+	private Map<String, Map<String, DividerGroup>> reopenSegmentsForRecordTypesWithUnchangedDataFiles(
+			RecordStorageOnDisk recordStorage, List<Path> pathsToDataFiles) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(manifestPath), BUFFER_SIZE))) {
+			BinaryDataElementReader elementReader = BinaryDataElementReader.usingInput(input);
+			if (input.readInt() != FORMAT_VERSION || input.readInt() != segmentSize) {
+				return null;
+			}
+			List<Integer> segmentNumbers = readSegmentNumbers(input);
+			int endPositionInLastSegment = input.readInt();
+			Set<Path> changedDataFiles = dataFileStamps.readAndCollectChangedDataFiles(input,
+					elementReader, pathsToDataFiles);
+			mapExistingSegments(segmentNumbers);
+			positionInLastSegment = endPositionInLastSegment;
+			Map<String, Map<String, DividerGroup>> reopenedRecords = readRecords(input,
+					elementReader);
+			removeRecordTypesOfChangedDataFiles(recordStorage, reopenedRecords,
+					changedDataFiles);
+			return keepIfEnoughOfUsedBytesAreInUse(reopenedRecords);
+		}
+	}
+
+	private List<Integer> readSegmentNumbers(DataInputStream input) throws IOException {
+		List<Integer> segmentNumbers = new ArrayList<>();
+		int noOfSegments = input.readInt();
+		for (int i = 0; i < noOfSegments; i++) {
+			segmentNumbers.add(input.readInt());
+		}
+		return segmentNumbers;
+	}
+
+	private void mapExistingSegments(List<Integer> segmentNumbers) throws IOException {
+		for (Integer segmentNumber : segmentNumbers) {
+			try (FileChannel channel = FileChannel.open(getSegmentPath(segmentNumber),
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				throwErrorIfSegmentHasWrongSize(channel);
+				segments.put(segmentNumber, channel.map(MapMode.READ_WRITE, 0, segmentSize));
+			}
+			nextSegmentNumber = segmentNumber + 1;
+		}
+	}
+
+	private void throwErrorIfSegmentHasWrongSize(FileChannel channel) throws IOException {
+		if (channel.size() != segmentSize) {
+			throw DataStorageException.withMessage("record segment has size " + channel.size()
+					+ " instead of " + segmentSize);
+		}
+	}
+
+	private Map<String, Map<String, DividerGroup>> readRecords(DataInputStream input,
+			BinaryDataElementReader elementReader) throws IOException {
+		Map<String, Map<String, DividerGroup>> reopenedRecords = new HashMap<>();
+		int noOfRecordTypes = input.readInt();
+		for (int i = 0; i < noOfRecordTypes; i++) {
+			String recordType = elementReader.readString();
+			Map<String, DividerGroup> recordsForRecordType = new HashMap<>();
+			int noOfRecords = input.readInt();
+			for (int j = 0; j < noOfRecords; j++) {
+				String recordId = elementReader.readString();
+				String dataDivider = elementReader.readString();
+				long mappedPosition = input.readLong();
+				recordsForRecordType.put(recordId,
+						createStoredRecordInSegment(dataDivider, mappedPosition));
+			}
+			reopenedRecords.put(recordType, recordsForRecordType);
+		}
+		return reopenedRecords;
+	}
+
+	private void removeRecordTypesOfChangedDataFiles(RecordStorageOnDisk recordStorage,
+			Map<String, Map<String, DividerGroup>> reopenedRecords, Set<Path> changedDataFiles) {
+		// records of types written after the manifest are read from their data files instead,
+		// they are appended after the end of the manifest overwriting what was written since
+		for (Path changedDataFile : changedDataFiles) {
+			reopenedRecords.remove(recordStorage.getTypeFromPath(changedDataFile));
+		}
+	}
+
+	private DividerGroup createStoredRecordInSegment(String dataDivider, long mappedPosition) {
+		MappedByteBuffer segment = segments.get((int) (mappedPosition / segmentSize));
+		if (null == segment) {
+			throw DataStorageException
+					.withMessage("no record segment for position " + mappedPosition);
+		}
+		return DividerGroup.withDataDividerAndMappedSegmentAndPosition(dataDivider, segment,
+				mappedPosition);
+	}
+
+	private Map<String, Map<String, DividerGroup>> keepIfEnoughOfUsedBytesAreInUse(
+			Map<String, Map<String, DividerGroup>> reopenedRecords) {
+		noOfBytesInUse = countBytesInUse(reopenedRecords);
+		if (tooFewOfUsedBytesAreInUse()) {
+			// compacting on start is done by storing all records again
+			return null;
+		}
+		return reopenedRecords;
+	}
+
+	private long countBytesInUse(Map<String, Map<String, DividerGroup>> reopenedRecords) {
+		long bytesInUse = 0;
+		for (Map<String, DividerGroup> recordsForRecordType : reopenedRecords.values()) {
+			for (DividerGroup storedRecord : recordsForRecordType.values()) {
+				bytesInUse += getEntrySize(storedRecord);
+			}
+		}
+		return bytesInUse;
+	}
+
+	private int getEntrySize(DividerGroup storedRecord) {
+		return Integer.BYTES
+				+ storedRecord.mappedSegment.getInt(getPositionInSegment(storedRecord));
+	}
+
+	private int getPositionInSegment(DividerGroup storedRecord) {
+		return (int) (storedRecord.mappedPosition % segmentSize);
+	}
+
+	private boolean tooFewOfUsedBytesAreInUse() {
+		return noOfBytesInUse * 100 < getNoOfUsedBytes() * MIN_PERCENT_OF_USED_BYTES_IN_USE;
+	}
+
+	private long getNoOfUsedBytes() {
+		if (segments.isEmpty()) {
+			return 0;
+		}
+		return (long) (segments.size() - 1) * segmentSize + positionInLastSegment;
+	}
+
+	private void startWithoutSegments() {
+		segments.clear();
+		nextSegmentNumber = 0;
+		positionInLastSegment = 0;
+		noOfBytesInUse = 0;
+	}
+
+	private void storeReopenedRecordsInStorage(RecordStorageOnDisk recordStorage,
+			Map<String, Map<String, DividerGroup>> reopenedRecords) {
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : reopenedRecords
+				.entrySet()) {
+			String recordType = recordTypeEntry.getKey();
+			recordStorage.ensureStorageExistsForRecordType(recordType);
+			for (Entry<String, DividerGroup> recordEntry : recordTypeEntry.getValue()
+					.entrySet()) {
+				recordStorage.storeStoredRecordByRecordTypeAndRecordId(recordType,
+						recordEntry.getKey(), recordEntry.getValue());
+			}
+		}
+	}
+
+	private void tryToRemoveSegmentsFromEarlierStart() {
+		try {
+			removeFilesInSegmentsDirectoryExcept(Collections.emptySet());
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not remove old record segments: " + e, e);
+		}
+	}
+
+	private void tryToRemoveSegmentsNotInManifest() {
+		// segments left by a compaction that was interrupted before they were removed
+		Set<Path> pathsToKeep = new HashSet<>();
+		pathsToKeep.add(manifestPath);
+		for (Integer segmentNumber : segments.keySet()) {
+			pathsToKeep.add(getSegmentPath(segmentNumber));
+		}
+		try {
+			removeFilesInSegmentsDirectoryExcept(pathsToKeep);
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not remove old record segments: " + e, e);
+		}
+	}
+
+	private void removeFilesInSegmentsDirectoryExcept(Set<Path> pathsToKeep) throws IOException {
+		Files.createDirectories(segmentsPath);
+		try (Stream<Path> list = Files.list(segmentsPath)) {
+			for (Path path : (Iterable<Path>) list::iterator) {
+				if (!pathsToKeep.contains(path)) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	synchronized DividerGroup append(String dataDivider, byte[] compactDataGroup) {
+		int entrySize = Integer.BYTES + compactDataGroup.length;
+		throwErrorIfEntryIsLargerThanSegment(entrySize);
+		if (segments.isEmpty() || positionInLastSegment + entrySize > segmentSize) {
+			mapNewSegment();
+		}
+		Entry<Integer, MappedByteBuffer> lastSegment = segments.lastEntry();
+		ByteBuffer entry = lastSegment.getValue().duplicate();
+		entry.position(positionInLastSegment);
+		entry.putInt(compactDataGroup.length);
+		entry.put(compactDataGroup);
+		long position = (long) lastSegment.getKey() * segmentSize + positionInLastSegment;
+		positionInLastSegment += entrySize;
+		noOfBytesInUse += entrySize;
+		return DividerGroup.withDataDividerAndMappedSegmentAndPosition(dataDivider,
+				lastSegment.getValue(), position);
+	}
+
+	private void throwErrorIfEntryIsLargerThanSegment(int entrySize) {
+		if (entrySize > segmentSize) {
+			throw DataStorageException.withMessage("can not store record of size " + entrySize
+					+ " in record segments of size " + segmentSize);
+		}
+	}
+
+	private void mapNewSegment() {
+		// segment numbers are not reused, as records read during a compaction can still use
+		// the mapping of a removed segment
+		Path segmentPath = getSegmentPath(nextSegmentNumber);
+		try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			segmentSealedSinceManifest |= !segments.isEmpty();
+			segments.put(nextSegmentNumber, channel.map(MapMode.READ_WRITE, 0, segmentSize));
+			nextSegmentNumber++;
+			positionInLastSegment = 0;
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not map record segment: " + e, e);
+		}
+	}
+
+	private Path getSegmentPath(int segmentNumber) {
+		return segmentsPath
+				.resolve(SEGMENT_FILE_NAME_PREFIX + segmentNumber + SEGMENT_FILE_NAME_ENDING);
+	}
+
+	byte[] read(DividerGroup storedRecord) {
+		ByteBuffer entry = storedRecord.mappedSegment.duplicate();
+		entry.position(getPositionInSegment(storedRecord));
+		byte[] compactDataGroup = new byte[entry.getInt()];
+		entry.get(compactDataGroup);
+		return compactDataGroup;
+	}
+
+	synchronized void recordIsNoLongerInUse(DividerGroup storedRecord) {
+		noOfBytesInUse -= getEntrySize(storedRecord);
+	}
+
+	synchronized void noRecordsAreInUse() {
+		noOfBytesInUse = 0;
+	}
+
+	synchronized boolean shouldBeCompacted() {
+		// the last segment is not compacted alone, as moving its records would not free space
+		return getNoOfUsedBytes() > segmentSize && tooFewOfUsedBytesAreInUse();
+	}
+
+	synchronized Set<Integer> startCompaction() {
+		Set<Integer> compactedSegments = new HashSet<>(segments.keySet());
+		positionInLastSegment = segmentSize;
+		noOfBytesInUse = 0;
+		return compactedSegments;
+	}
+
+	synchronized DividerGroup moveToNewSegment(DividerGroup storedRecord) {
+		return append(storedRecord.dataDivider, read(storedRecord));
+	}
+
+	synchronized void stopUsingSegments(Set<Integer> compactedSegments) {
+		for (Integer segmentNumber : compactedSegments) {
+			segments.remove(segmentNumber);
+		}
+	}
+
+	void removeSegments(Set<Integer> compactedSegments) {
+		for (Integer segmentNumber : compactedSegments) {
+			tryToRemoveSegment(segmentNumber);
+		}
+	}
+
+	private void tryToRemoveSegment(Integer segmentNumber) {
+		try {
+			Files.deleteIfExists(getSegmentPath(segmentNumber));
+		} catch (IOException e) {
+			// a segment not in the manifest is removed when the segments are reopened
+		}
+	}
+
+	synchronized boolean segmentIsSealedSinceManifest() {
+		return segmentSealedSinceManifest;
+	}
+
+	synchronized void writeManifestForRecordsAndDataFiles(
+			Map<String, Map<String, DividerGroup>> records, List<Path> pathsToDataFiles) {
+		try {
+			forceSegmentsToDisk();
+			writeManifest(records, pathsToDataFiles);
+			segmentSealedSinceManifest = false;
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not write record segments manifest: " + e, e);
+		}
+	}
+
+	private void forceSegmentsToDisk() {
+		for (MappedByteBuffer segment : segments.values()) {
+			segment.force();
+		}
+	}
+
+	private void writeManifest(Map<String, Map<String, DividerGroup>> records,
+			List<Path> pathsToDataFiles) throws IOException {
+		Path temporaryPath = manifestPath.resolveSibling(TEMPORARY_MANIFEST_FILE_NAME);
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temporaryPath), BUFFER_SIZE))) {
+			BinaryDataElementWriter elementWriter = BinaryDataElementWriter.usingOutput(output);
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(segmentSize);
+			writeSegmentNumbers(output);
+			output.writeInt(positionInLastSegment);
+			dataFileStamps.write(output, elementWriter, pathsToDataFiles);
+			writeMappedRecords(output, elementWriter, records);
+		}
+		forcePathToDisk(temporaryPath);
+		Files.move(temporaryPath, manifestPath, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void writeSegmentNumbers(DataOutputStream output) throws IOException {
+		output.writeInt(segments.size());
+		for (Integer segmentNumber : segments.keySet()) {
+			output.writeInt(segmentNumber);
+		}
+	}
+
+	private void writeMappedRecords(DataOutputStream output,
+			BinaryDataElementWriter elementWriter, Map<String, Map<String, DividerGroup>> records)
+			throws IOException {
+		Map<String, Map<String, DividerGroup>> mappedRecords = getRecordTypesWithAllRecordsMapped(
+				records);
+		output.writeInt(mappedRecords.size());
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : mappedRecords
+				.entrySet()) {
+			elementWriter.writeString(recordTypeEntry.getKey());
+			output.writeInt(recordTypeEntry.getValue().size());
+			for (Entry<String, DividerGroup> recordEntry : recordTypeEntry.getValue()
+					.entrySet()) {
+				elementWriter.writeString(recordEntry.getKey());
+				elementWriter.writeString(recordEntry.getValue().dataDivider);
+				output.writeLong(recordEntry.getValue().mappedPosition);
+			}
+		}
+	}
+
+	private Map<String, Map<String, DividerGroup>> getRecordTypesWithAllRecordsMapped(
+			Map<String, Map<String, DividerGroup>> records) {
+		Map<String, Map<String, DividerGroup>> mappedRecords = new HashMap<>();
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : records.entrySet()) {
+			Map<String, DividerGroup> recordsForRecordType = new HashMap<>(
+					recordTypeEntry.getValue());
+			if (allRecordsAreMapped(recordsForRecordType)) {
+				mappedRecords.put(recordTypeEntry.getKey(), recordsForRecordType);
+			}
+		}
+		return mappedRecords;
+	}
+
+	private boolean allRecordsAreMapped(Map<String, DividerGroup> recordsForRecordType) {
+		for (DividerGroup storedRecord : recordsForRecordType.values()) {
+			if (DividerGroup.NOT_MAPPED == storedRecord.mappedPosition) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void forcePathToDisk(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	synchronized int getNoOfSegments() {
+		// needed for test
+		return segments.size();
+	}
+
+	Path getManifestPath() {
+		// needed for test
+		return manifestPath;
+	}
+
+	Path getSegmentPathForPosition(long mappedPosition) {
+		// needed for test
+		return getSegmentPath((int) (mappedPosition / segmentSize));
+	}
+}
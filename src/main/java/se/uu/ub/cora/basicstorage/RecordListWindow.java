@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class RecordListWindow {
+	private static final String START = "start";
+	private static final String ROWS = "rows";
+	final int fromIndex;
+	final int maxNoOfRecords;
+
+	static RecordListWindow usingFilter(DataGroup filter) {
+		int start = getNumberFromFilterOrDefault(filter, START, 1);
+		int rows = getNumberFromFilterOrDefault(filter, ROWS, Integer.MAX_VALUE);
+		throwErrorIfNotPositive(START, start);
+		throwErrorIfNotPositive(ROWS, rows);
+		return new RecordListWindow(start - 1, rows);
+	}
+
+	private static int getNumberFromFilterOrDefault(DataGroup filter, String nameInData,
+			int defaultNumber) {
+		if (!filter.containsChildWithNameInData(nameInData)) {
+			return defaultNumber;
+		}
+		String number = filter.getFirstAtomicValueWithNameInData(nameInData);
+		try {
+			return Integer.parseInt(number);
+		} catch (NumberFormatException e) {
+			throw DataStorageException
+					.withMessageAndException(nameInData + " must be a number: " + number, e);
+		}
+	}
+
+	private static void throwErrorIfNotPositive(String nameInData, int number) {
+		if (number < 1) {
+			throw DataStorageException
+					.withMessage(nameInData + " must be larger than zero: " + number);
+		}
+	}
+
+	private RecordListWindow(int fromIndex, int maxNoOfRecords) {
+		this.fromIndex = fromIndex;
+		this.maxNoOfRecords = maxNoOfRecords;
+	}
+
+	int getStart() {
+		// start is reported as given in the filter, counted from one
+		return fromIndex + 1;
+	}
+
+	int getFromIndexForNoOfMatches(long noOfMatches) {
+		return (int) Math.min(fromIndex, noOfMatches);
+	}
+
+	int getToIndexForNoOfMatches(long noOfMatches) {
+		return (int) Math.min((long) fromIndex + maxNoOfRecords, noOfMatches);
+	}
+
+	RecordListWindow afterNoOfMatches(long noOfMatches) {
+		int noOfRecordsInWindow = getToIndexForNoOfMatches(noOfMatches)
+				- getFromIndexForNoOfMatches(noOfMatches);
+		return new RecordListWindow((int) Math.max(0, fromIndex - noOfMatches),
+				maxNoOfRecords - noOfRecordsInWindow);
+	}
+}
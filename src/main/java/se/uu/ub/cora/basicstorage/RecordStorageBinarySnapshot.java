@@ -0,0 +1,226 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class RecordStorageBinarySnapshot {
+	static final String SNAPSHOT_DIRECTORY = "snapshot";
+	private static final String SNAPSHOT_FILE_NAME = "snapshot.bin";
+	private static final String TEMPORARY_SNAPSHOT_FILE_NAME = "snapshot.bin.tmp";
+	private static final int FORMAT_VERSION = 2;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private Path snapshotPath;
+	private DataFileStamps dataFileStamps;
+	private BinaryDataElementReader elementReader;
+	private BinaryDataElementWriter elementWriter;
+
+	static RecordStorageBinarySnapshot usingBasePath(String basePath) {
+		return new RecordStorageBinarySnapshot(basePath);
+	}
+
+	private RecordStorageBinarySnapshot(String basePath) {
+		Path path = Paths.get(basePath);
+		snapshotPath = path.resolve(SNAPSHOT_DIRECTORY).resolve(SNAPSHOT_FILE_NAME);
+		dataFileStamps = DataFileStamps.usingBasePath(path);
+	}
+
+	boolean tryToReadIntoStorageIfUpToDateWithDataFiles(RecordStorageOnDisk recordStorage,
+			List<Path> pathsToDataFiles) throws IOException {
+		if (!Files.exists(snapshotPath)) {
+			return false;
+		}
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(snapshotPath), BUFFER_SIZE))) {
+			elementReader = BinaryDataElementReader.usingInput(input);
+			if (!snapshotIsUpToDateWithDataFiles(input, pathsToDataFiles)) {
+				return false;
+			}
+			readRecords(input, recordStorage);
+			readCollectedTerms(input, recordStorage.collectedTermsHolder);
+			readLinkLists(input, recordStorage);
+			return true;
+		}
+	}
+
+	private boolean snapshotIsUpToDateWithDataFiles(DataInputStream input,
+			List<Path> pathsToDataFiles) throws IOException {
+		if (input.readInt() != FORMAT_VERSION) {
+			return false;
+		}
+		return dataFileStamps.readAndCompareWithDataFiles(input, elementReader,
+				pathsToDataFiles);
+	}
+
+	private void readRecords(DataInputStream input, RecordStorageOnDisk recordStorage)
+			throws IOException {
+		int noOfRecordTypes = input.readInt();
+		for (int i = 0; i < noOfRecordTypes; i++) {
+			String recordType = elementReader.readString();
+			recordStorage.ensureStorageExistsForRecordType(recordType);
+			int noOfRecords = input.readInt();
+			for (int j = 0; j < noOfRecords; j++) {
+				String recordId = elementReader.readString();
+				String dataDivider = elementReader.readString();
+				DataGroup record = (DataGroup) elementReader.readElement();
+				recordStorage.storeRecordByRecordTypeAndRecordId(recordType, recordId, record,
+						dataDivider);
+			}
+		}
+	}
+
+	private void readCollectedTerms(DataInputStream input,
+			CollectedTermsInMemoryStorage collectedTermsHolder) throws IOException {
+		int noOfStorageTerms = input.readInt();
+		for (int i = 0; i < noOfStorageTerms; i++) {
+			String recordType = elementReader.readString();
+			String storageKey = elementReader.readString();
+			String recordId = elementReader.readString();
+			String value = elementReader.readString();
+			String dataDivider = elementReader.readString();
+			collectedTermsHolder.storeCollectedStorageTermData(recordType, storageKey, recordId,
+					StorageTermData.withValueAndDataDivider(value, dataDivider));
+		}
+	}
+
+	private void readLinkLists(DataInputStream input, RecordStorageOnDisk recordStorage)
+			throws IOException {
+		int noOfRecordTypes = input.readInt();
+		for (int i = 0; i < noOfRecordTypes; i++) {
+			String recordType = elementReader.readString();
+			recordStorage.ensureStorageExistsForRecordType(recordType);
+			int noOfLinkLists = input.readInt();
+			for (int j = 0; j < noOfLinkLists; j++) {
+				String recordId = elementReader.readString();
+				String dataDivider = elementReader.readString();
+				DataGroup linkList = (DataGroup) elementReader.readElement();
+				recordStorage.storeLinks(recordType, recordId, linkList, dataDivider);
+			}
+		}
+	}
+
+	void write(RecordStorageOnDisk recordStorage, List<Path> pathsToDataFiles)
+			throws IOException {
+		Files.createDirectories(snapshotPath.getParent());
+		Path temporaryPath = snapshotPath.resolveSibling(TEMPORARY_SNAPSHOT_FILE_NAME);
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temporaryPath), BUFFER_SIZE))) {
+			elementWriter = BinaryDataElementWriter.usingOutput(output);
+			writeDataFiles(output, pathsToDataFiles);
+			writeRecords(output, recordStorage);
+			writeCollectedTerms(output, recordStorage.collectedTermsHolder.getAllTerms());
+			writeLinkLists(output, recordStorage);
+		}
+		Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void writeDataFiles(DataOutputStream output, List<Path> pathsToDataFiles)
+			throws IOException {
+		output.writeInt(FORMAT_VERSION);
+		dataFileStamps.write(output, elementWriter, pathsToDataFiles);
+	}
+
+	private void writeRecords(DataOutputStream output, RecordStorageOnDisk recordStorage)
+			throws IOException {
+		Map<String, Map<String, DividerGroup>> records = recordStorage.records;
+		output.writeInt(records.size());
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : records.entrySet()) {
+			elementWriter.writeString(recordTypeEntry.getKey());
+			writeDividerGroups(output, recordTypeEntry.getValue(), recordStorage);
+		}
+	}
+
+	private void writeDividerGroups(DataOutputStream output,
+			Map<String, DividerGroup> dividerGroups, RecordStorageOnDisk recordStorage)
+			throws IOException {
+		output.writeInt(dividerGroups.size());
+		for (Entry<String, DividerGroup> recordEntry : dividerGroups.entrySet()) {
+			elementWriter.writeString(recordEntry.getKey());
+			DividerGroup dividerGroup = recordEntry.getValue();
+			elementWriter.writeString(dividerGroup.dataDivider);
+			elementWriter.writeElement(
+					recordStorage.getDataGroupFromStoredRecordWithoutCaching(dividerGroup));
+		}
+	}
+
+	private void writeCollectedTerms(DataOutputStream output,
+			Map<String, Map<String, Map<String, List<StorageTermData>>>> terms)
+			throws IOException {
+		output.writeInt(countStorageTerms(terms));
+		for (Entry<String, Map<String, Map<String, List<StorageTermData>>>> recordTypeEntry : terms
+				.entrySet()) {
+			for (Entry<String, Map<String, List<StorageTermData>>> keyEntry : recordTypeEntry
+					.getValue().entrySet()) {
+				for (Entry<String, List<StorageTermData>> idEntry : keyEntry.getValue()
+						.entrySet()) {
+					for (StorageTermData storageTermData : idEntry.getValue()) {
+						elementWriter.writeString(recordTypeEntry.getKey());
+						elementWriter.writeString(keyEntry.getKey());
+						elementWriter.writeString(idEntry.getKey());
+						elementWriter.writeString(storageTermData.value);
+						elementWriter.writeString(storageTermData.dataDivider);
+					}
+				}
+			}
+		}
+	}
+
+	private int countStorageTerms(
+			Map<String, Map<String, Map<String, List<StorageTermData>>>> terms) {
+		int noOfStorageTerms = 0;
+		for (Map<String, Map<String, List<StorageTermData>>> termsForRecordType : terms
+				.values()) {
+			for (Map<String, List<StorageTermData>> termsForKey : termsForRecordType.values()) {
+				for (List<StorageTermData> termsForId : termsForKey.values()) {
+					noOfStorageTerms += termsForId.size();
+				}
+			}
+		}
+		return noOfStorageTerms;
+	}
+
+	private void writeLinkLists(DataOutputStream output, RecordStorageOnDisk recordStorage)
+			throws IOException {
+		Map<String, Map<String, DividerGroup>> linkLists = recordStorage.linkLists;
+		output.writeInt(linkLists.size());
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : linkLists.entrySet()) {
+			elementWriter.writeString(recordTypeEntry.getKey());
+			writeDividerGroups(output, recordTypeEntry.getValue(), recordStorage);
+		}
+	}
+
+	Path getSnapshotPath() {
+		// needed for test
+		return snapshotPath;
+	}
+}
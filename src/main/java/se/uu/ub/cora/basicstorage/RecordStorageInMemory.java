@@ -22,10 +22,20 @@ package se.uu.ub.cora.basicstorage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import se.uu.ub.cora.data.DataElement;
 import se.uu.ub.cora.data.DataGroup;
@@ -43,12 +53,26 @@ import se.uu.ub.cora.storage.StorageReadResult;
 public class RecordStorageInMemory implements RecordStorage, MetadataStorage, SearchStorage {
 	private static final String RECORD_TYPE = "recordType";
 	private static final String NO_RECORDS_EXISTS_MESSAGE = "No records exists with recordType: ";
+	private static final int NO_OF_WRITE_LOCK_STRIPES = 64;
+	private static final long MIN_NANOS_TO_WAIT_BEFORE_NEXT_READ = 1_000;
+	private static final long MAX_NANOS_TO_WAIT_BEFORE_NEXT_READ = 1_000_000;
 
 	private DataGroup emptyFilter = DataGroupProvider.getDataGroupUsingNameInData("filter");
-	protected Map<String, Map<String, DividerGroup>> records = new HashMap<>();
+	protected Map<String, Map<String, DividerGroup>> records = new ConcurrentHashMap<>();
+	private Map<String, IndexedRecordIds> orderedRecordIds = new ConcurrentHashMap<>();
+	private Map<String, String> recordTypeByRecordId = new ConcurrentHashMap<>();
+	private Map<String, Set<String>> recordTypesByCollidingRecordId = new ConcurrentHashMap<>();
 	protected CollectedTermsInMemoryStorage collectedTermsHolder = new CollectedTermsInMemoryStorage();
-	protected Map<String, Map<String, DividerGroup>> linkLists = new HashMap<>();
-	protected Map<String, Map<String, Map<String, Map<String, List<DataGroup>>>>> incomingLinks = new HashMap<>();
+	protected Map<String, Map<String, DividerGroup>> linkLists = new ConcurrentHashMap<>();
+	protected Map<String, Map<String, Map<String, Map<String, List<DataGroup>>>>> incomingLinks = new ConcurrentHashMap<>();
+	protected final RecordTypeWriteLocks writeLocks = RecordTypeWriteLocks
+			.usingNoOfStripes(NO_OF_WRITE_LOCK_STRIPES);
+	private final RecordTypeWriteVersions writeVersions = RecordTypeWriteVersions
+			.startingWithNoWrites();
+	private volatile boolean copyEnteredData = true;
+	private volatile ExpandedRecordCache expandedRecordCache;
+	private final AtomicLong recordTypesVersion = new AtomicLong();
+	private volatile RecordTypeHierarchy recordTypeHierarchy;
 
 	public RecordStorageInMemory() {
 		// Make it possible to use default empty record storage
@@ -56,7 +80,17 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	RecordStorageInMemory(Map<String, Map<String, DividerGroup>> records) {
 		throwErrorIfConstructorArgumentIsNull(records);
-		this.records = records;
+		for (Entry<String, Map<String, DividerGroup>> recordTypeEntry : records.entrySet()) {
+			String recordType = recordTypeEntry.getKey();
+			Map<String, DividerGroup> recordsForRecordType = new ConcurrentHashMap<>(
+					recordTypeEntry.getValue());
+			this.records.put(recordType, recordsForRecordType);
+			orderedRecordIds.put(recordType,
+					IndexedRecordIds.usingRecordIds(recordsForRecordType.keySet()));
+			for (String recordId : recordsForRecordType.keySet()) {
+				addRecordTypeForRecordId(recordType, recordId);
+			}
+		}
 	}
 
 	private final void throwErrorIfConstructorArgumentIsNull(
@@ -66,14 +100,83 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 		}
 	}
 
+	public void takeOverEnteredDataInsteadOfCopying() {
+		copyEnteredData = false;
+	}
+
+	public void keepRecordsCompactUsingNoOfCachedRecords(int noOfCachedRecords) {
+		expandedRecordCache = ExpandedRecordCache.withMaxNoOfRecords(noOfCachedRecords);
+	}
+
 	@Override
 	public void create(String recordType, String recordId, DataGroup record,
 			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
-		ensureStorageExistsForRecordType(recordType);
-		checkNoConflictOnRecordId(recordType, recordId);
-		storeIndependentRecordByRecordTypeAndRecordId(recordType, recordId, record, dataDivider);
-		collectedTermsHolder.storeCollectedTerms(recordType, recordId, collectedTerms, dataDivider);
-		storeLinks(recordType, recordId, linkList, dataDivider);
+		ensureRecordsAreLoadedForRecordType(recordType);
+		startWriteForRecordType(recordType);
+		try {
+			ensureStorageExistsForRecordType(recordType);
+			checkNoConflictOnRecordId(recordType, recordId);
+			storeIndependentRecordByRecordTypeAndRecordId(recordType, recordId, record,
+					dataDivider);
+			collectedTermsHolder.storeCollectedTerms(recordType, recordId, collectedTerms,
+					dataDivider);
+			storeLinks(recordType, recordId, linkList, dataDivider);
+		} finally {
+			finishWriteForRecordType(recordType);
+		}
+	}
+
+	private void startWriteForRecordType(String recordType) {
+		writeLocks.lockRecordType(recordType);
+		writeVersions.startWriteForRecordType(recordType);
+	}
+
+	private void finishWriteForRecordType(String recordType) {
+		writeVersions.finishWriteForRecordType(recordType);
+		writeLocks.unlockRecordType(recordType);
+	}
+
+	private <T> T readUsingConsistentView(Supplier<List<String>> recordTypesToRead,
+			Supplier<T> reader) {
+		// reads never take the write locks, a read changed by a write is read again after
+		// waiting a bit longer each time, so writes are never blocked by reads
+		long nanosToWaitBeforeNextRead = MIN_NANOS_TO_WAIT_BEFORE_NEXT_READ;
+		while (true) {
+			List<String> recordTypes = recordTypesToRead.get();
+			long[] versions = writeVersions.getVersionsForRecordTypes(recordTypes);
+			if (RecordTypeWriteVersions.noWriteIsInProgress(versions)) {
+				try {
+					T result = reader.get();
+					if (readWasConsistent(recordTypesToRead, recordTypes, versions)) {
+						return result;
+					}
+				} catch (RuntimeException e) {
+					throwIfReadWasConsistent(e, recordTypesToRead, recordTypes, versions);
+				}
+			}
+			LockSupport.parkNanos(nanosToWaitBeforeNextRead);
+			nanosToWaitBeforeNextRead = Math.min(nanosToWaitBeforeNextRead * 2,
+					MAX_NANOS_TO_WAIT_BEFORE_NEXT_READ);
+		}
+	}
+
+	private boolean readWasConsistent(Supplier<List<String>> recordTypesToRead,
+			List<String> recordTypes, long[] versions) {
+		return writeVersions.versionsAreUnchanged(recordTypes, versions)
+				&& recordTypes.equals(recordTypesToRead.get());
+	}
+
+	private void throwIfReadWasConsistent(RuntimeException e,
+			Supplier<List<String>> recordTypesToRead, List<String> recordTypes,
+			long[] versions) {
+		if (readWasConsistent(recordTypesToRead, recordTypes, versions)) {
+			throw e;
+		}
+		// a write changed what was read, read again
+	}
+
+	protected void ensureRecordsAreLoadedForRecordType(String recordType) {
+		// all records are kept in memory
 	}
 
 	protected final void ensureStorageExistsForRecordType(String recordType) {
@@ -86,12 +189,24 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 		return !records.containsKey(recordType);
 	}
 
+	protected void clearStoredData() {
+		records.clear();
+		orderedRecordIds.clear();
+		recordTypeByRecordId.clear();
+		recordTypesByCollidingRecordId.clear();
+		collectedTermsHolder = new CollectedTermsInMemoryStorage();
+		linkLists.clear();
+		incomingLinks.clear();
+		recordTypesVersion.incrementAndGet();
+	}
+
 	private final void createHolderForRecordTypeInStorage(String recordType) {
-		records.put(recordType, new HashMap<String, DividerGroup>());
-		linkLists.put(recordType, new HashMap<String, DividerGroup>());
+		orderedRecordIds.put(recordType, IndexedRecordIds.usingNoRecordIds());
+		records.put(recordType, new ConcurrentHashMap<String, DividerGroup>());
+		linkLists.put(recordType, new ConcurrentHashMap<String, DividerGroup>());
 	}
 
-	private void checkNoConflictOnRecordId(String recordType, String recordId) {
+	protected final void checkNoConflictOnRecordId(String recordType, String recordId) {
 		if (recordIdExistsForRecordType(recordType, recordId)) {
 			throw new RecordConflictException(
 					"Record with recordId: " + recordId + " already exists");
@@ -100,26 +215,145 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	private void storeIndependentRecordByRecordTypeAndRecordId(String recordType, String recordId,
 			DataGroup record, String dataDivider) {
-		DataGroup recordIndependentOfEnteredRecord = createIndependentCopy(record);
+		DataGroup recordIndependentOfEnteredRecord = createIndependentCopyIfStoredExpanded(
+				recordType, record);
 		storeRecordByRecordTypeAndRecordId(recordType, recordId, recordIndependentOfEnteredRecord,
 				dataDivider);
 	}
 
+	private DataGroup createIndependentCopyIfStoredExpanded(String recordType, DataGroup record) {
+		if (recordIsKeptCompact(recordType)) {
+			return record;
+		}
+		return createIndependentCopyIfCopyingEnteredData(record);
+	}
+
+	private boolean recordIsKeptCompact(String recordType) {
+		return null != expandedRecordCache && !RECORD_TYPE.equals(recordType);
+	}
+
+	private DataGroup createIndependentCopyIfCopyingEnteredData(DataGroup dataGroup) {
+		if (copyEnteredData) {
+			return createIndependentCopy(dataGroup);
+		}
+		return dataGroup;
+	}
+
 	private DataGroup createIndependentCopy(DataGroup record) {
 		DataCopier dataCopier = DataCopierProvider.getDataCopierUsingDataElement(record);
 		return (DataGroup) dataCopier.copy();
 	}
 
-	protected void storeRecordByRecordTypeAndRecordId(String recordType, String recordId,
+	protected final void storeRecordByRecordTypeAndRecordId(String recordType, String recordId,
 			DataGroup recordIndependentOfEnteredRecord, String dataDivider) {
-		records.get(recordType).put(recordId, DividerGroup.withDataDividerAndDataGroup(dataDivider,
-				recordIndependentOfEnteredRecord));
+		storeStoredRecordByRecordTypeAndRecordId(recordType, recordId,
+				createStoredRecord(recordType, dataDivider, recordIndependentOfEnteredRecord));
+	}
+
+	protected void storeStoredRecordByRecordTypeAndRecordId(String recordType, String recordId,
+			DividerGroup storedRecord) {
+		records.get(recordType).put(recordId, storedRecord);
+		orderedRecordIds.get(recordType).add(recordId);
+		addRecordTypeForRecordId(recordType, recordId);
+		markRecordTypesAsChangedIfRecordType(recordType);
+	}
+
+	private void addRecordTypeForRecordId(String recordType, String recordId) {
+		// most ids are stored in one type only, so a set of types is only kept for ids stored in
+		// several types, changed while the id is locked by compute
+		recordTypeByRecordId.compute(recordId, (id, recordTypeForId) -> {
+			if (null == recordTypeForId || recordTypeForId.equals(recordType)) {
+				return recordType;
+			}
+			Set<String> recordTypesForId = new HashSet<>(
+					recordTypesByCollidingRecordId.getOrDefault(id, Set.of(recordTypeForId)));
+			recordTypesForId.add(recordType);
+			recordTypesByCollidingRecordId.put(id, Collections.unmodifiableSet(recordTypesForId));
+			return recordTypeForId;
+		});
+	}
+
+	private void removeRecordTypeForRecordId(String recordType, String recordId) {
+		recordTypeByRecordId.computeIfPresent(recordId, (id, recordTypeForId) -> {
+			Set<String> collidingRecordTypes = recordTypesByCollidingRecordId.get(id);
+			if (null == collidingRecordTypes) {
+				return recordTypeForId.equals(recordType) ? null : recordTypeForId;
+			}
+			Set<String> recordTypesForId = new HashSet<>(collidingRecordTypes);
+			recordTypesForId.remove(recordType);
+			return keepRemainingRecordTypesForRecordId(id, recordTypesForId);
+		});
+	}
+
+	private String keepRemainingRecordTypesForRecordId(String recordId,
+			Set<String> recordTypesForId) {
+		if (recordTypesForId.size() == 1) {
+			recordTypesByCollidingRecordId.remove(recordId);
+		} else {
+			recordTypesByCollidingRecordId.put(recordId,
+					Collections.unmodifiableSet(recordTypesForId));
+		}
+		return recordTypesForId.iterator().next();
+	}
+
+	private void markRecordTypesAsChangedIfRecordType(String recordType) {
+		if (RECORD_TYPE.equals(recordType)) {
+			recordTypesVersion.incrementAndGet();
+		}
+	}
+
+	private DividerGroup createStoredRecord(String recordType, String dataDivider,
+			DataGroup record) {
+		if (recordIsKeptCompact(recordType)) {
+			return createCompactStoredRecord(dataDivider, DataGroupCompactor.compact(record));
+		}
+		return DividerGroup.withDataDividerAndDataGroup(dataDivider, record);
+	}
+
+	protected DividerGroup createCompactStoredRecord(String dataDivider,
+			byte[] compactDataGroup) {
+		return DividerGroup.withDataDividerAndCompactDataGroup(dataDivider, compactDataGroup);
+	}
+
+	protected byte[] readCompactDataGroup(DividerGroup storedRecord) {
+		return storedRecord.compactDataGroup;
+	}
+
+	protected final DataGroup getDataGroupFromStoredRecord(DividerGroup storedRecord) {
+		if (null != storedRecord.dataGroup) {
+			return storedRecord.dataGroup;
+		}
+		DataGroup expandedDataGroup = expandedRecordCache
+				.getExpandedDataGroupOrNull(storedRecord);
+		if (null == expandedDataGroup) {
+			expandedDataGroup = expandStoredRecord(storedRecord);
+			expandedRecordCache.cacheExpandedDataGroup(storedRecord, expandedDataGroup);
+		}
+		return expandedDataGroup;
+	}
+
+	protected final DataGroup getDataGroupFromStoredRecordWithoutCaching(
+			DividerGroup storedRecord) {
+		if (null != storedRecord.dataGroup) {
+			return storedRecord.dataGroup;
+		}
+		DataGroup expandedDataGroup = expandedRecordCache
+				.getExpandedDataGroupOrNull(storedRecord);
+		if (null == expandedDataGroup) {
+			return expandStoredRecord(storedRecord);
+		}
+		return expandedDataGroup;
+	}
+
+	private DataGroup expandStoredRecord(DividerGroup storedRecord) {
+		return DataGroupCompactor.expand(readCompactDataGroup(storedRecord));
 	}
 
 	protected void storeLinks(String recordType, String recordId, DataGroup linkList,
 			String dataDivider) {
 		if (!linkList.getChildren().isEmpty()) {
-			DataGroup linkListIndependentFromEntered = createIndependentCopy(linkList);
+			DataGroup linkListIndependentFromEntered = createIndependentCopyIfCopyingEnteredData(
+					linkList);
 			storeLinkList(recordType, recordId, linkListIndependentFromEntered, dataDivider);
 			storeLinksInIncomingLinks(linkListIndependentFromEntered);
 		} else {
@@ -137,8 +371,10 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 	}
 
 	private void storeLinksInIncomingLinks(DataGroup incomingLinkList) {
-		for (DataElement linkElement : incomingLinkList.getChildren()) {
-			storeLinkInIncomingLinks((DataGroup) linkElement);
+		synchronized (incomingLinks) {
+			for (DataElement linkElement : incomingLinkList.getChildren()) {
+				storeLinkInIncomingLinks((DataGroup) linkElement);
+			}
 		}
 	}
 
@@ -169,10 +405,10 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	private void ensureInIncomingLinksHolderForRecordTypeAndRecordId(String toType, String toId) {
 		if (isIncomingLinksHolderForRecordTypeMissing(toType)) {
-			incomingLinks.put(toType, new HashMap<>());
+			incomingLinks.put(toType, new ConcurrentHashMap<>());
 		}
 		if (isIncomingLinksHolderForRecordIdMissing(toType, toId)) {
-			incomingLinks.get(toType).put(toId, new HashMap<>());
+			incomingLinks.get(toType).put(toId, new ConcurrentHashMap<>());
 		}
 	}
 
@@ -199,63 +435,118 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 	private void ensureIncomingLinksHolderExistsForFromRecordType(
 			Map<String, Map<String, List<DataGroup>>> toPartOfIncomingLinks, String fromType) {
 		if (!toPartOfIncomingLinks.containsKey(fromType)) {
-			toPartOfIncomingLinks.put(fromType, new HashMap<>());
+			toPartOfIncomingLinks.put(fromType, new ConcurrentHashMap<>());
 		}
 	}
 
 	private void ensureIncomingLinksHolderExistsForFromRecordId(
 			Map<String, List<DataGroup>> fromPartOfIncomingLinks, String fromId) {
 		if (!fromPartOfIncomingLinks.containsKey(fromId)) {
-			fromPartOfIncomingLinks.put(fromId, new ArrayList<>());
+			fromPartOfIncomingLinks.put(fromId, new CopyOnWriteArrayList<>());
 		}
 	}
 
 	@Override
 	public StorageReadResult readList(String type, DataGroup filter) {
+		RecordListWindow window = RecordListWindow.usingFilter(filter);
+		StorageReadResult readResult = readListUsingWindow(type, filter, window);
+		readResult.start = window.getStart();
+		return readResult;
+	}
+
+	private StorageReadResult readListUsingWindow(String type, DataGroup filter,
+			RecordListWindow window) {
+		ensureRecordsAreLoadedForRecordType(type);
 		Map<String, DividerGroup> typeDividerRecords = records.get(type);
 		throwErrorIfNoRecordOfType(type, typeDividerRecords);
+		if (filterIsEmpty(filter)) {
+			return readListWithoutFilter(type, typeDividerRecords, window);
+		}
+		return readListWithFilter(type, filter, window);
+	}
+
+	private StorageReadResult readListWithoutFilter(String type,
+			Map<String, DividerGroup> typeDividerRecords, RecordListWindow window) {
+		int noOfMatches = typeDividerRecords.size();
+		int noOfRecordsToSkip = window.getFromIndexForNoOfMatches(noOfMatches);
+		int noOfRecordsToRead = window.getToIndexForNoOfMatches(noOfMatches) - noOfRecordsToSkip;
+		List<DataGroup> readRecords = new ArrayList<>(noOfRecordsToRead);
+		Iterator<String> recordIds = getOrderedRecordIdsStartingAtIndex(type, noOfRecordsToSkip);
+		while (recordIds.hasNext() && readRecords.size() < noOfRecordsToRead) {
+			addStoredRecordIfNotDeleted(typeDividerRecords, recordIds.next(), readRecords);
+		}
+		return createStorageReadResult(readRecords, noOfMatches);
+	}
 
-		return getStorageReadResult(type, filter, typeDividerRecords);
+	private IndexedRecordIds getOrderedRecordIds(String type) {
+		IndexedRecordIds recordIds = orderedRecordIds.get(type);
+		if (null == recordIds) {
+			return IndexedRecordIds.usingNoRecordIds();
+		}
+		return recordIds;
 	}
 
-	private StorageReadResult getStorageReadResult(String type, DataGroup filter,
-			Map<String, DividerGroup> typeDividerRecords) {
-		StorageReadResult readResult = new StorageReadResult();
-		Collection<DataGroup> readFromList = readFromList(type, filter, typeDividerRecords);
-		readResult.listOfDataGroups = new ArrayList<>(readFromList);
-		readResult.totalNumberOfMatches = readFromList.size();
-		return readResult;
+	private Iterator<String> getOrderedRecordIdsStartingAtIndex(String type, int fromIndex) {
+		return getOrderedRecordIds(type).iteratorStartingAtIndex(fromIndex);
 	}
 
-	private Collection<DataGroup> readFromList(String type, DataGroup filter,
-			Map<String, DividerGroup> typeDividerRecords) {
-		if (filterIsEmpty(filter)) {
-			return readListWithoutFilter(typeDividerRecords);
+	private void addStoredRecordIfNotDeleted(Map<String, DividerGroup> typeDividerRecords,
+			String recordId, List<DataGroup> readRecords) {
+		DividerGroup storedRecord = typeDividerRecords.get(recordId);
+		if (null != storedRecord) {
+			readRecords.add(getDataGroupFromStoredRecordWithoutCaching(storedRecord));
 		}
-		return readListWithFilter(type, filter);
 	}
 
-	private Collection<DataGroup> readListWithoutFilter(
-			Map<String, DividerGroup> typeDividerRecords) {
-		Map<String, DataGroup> typeRecords = addDataGroupToRecordTypeList(typeDividerRecords);
-		return typeRecords.values();
+	private StorageReadResult createStorageReadResult(List<DataGroup> readRecords,
+			int noOfMatches) {
+		StorageReadResult readResult = new StorageReadResult();
+		readResult.listOfDataGroups = readRecords;
+		readResult.totalNumberOfMatches = noOfMatches;
+		return readResult;
 	}
 
-	private Collection<DataGroup> readListWithFilter(String type, DataGroup filter) {
+	private StorageReadResult readListWithFilter(String type, DataGroup filter,
+			RecordListWindow window) {
 		List<String> foundRecordIdsForFilter = collectedTermsHolder.findRecordIdsForFilter(type,
 				filter);
-		return readRecordsForTypeAndListOfIds(type, foundRecordIdsForFilter);
+		int noOfMatches = foundRecordIdsForFilter.size();
+		List<String> recordIdsInWindow = foundRecordIdsForFilter.subList(
+				window.getFromIndexForNoOfMatches(noOfMatches),
+				window.getToIndexForNoOfMatches(noOfMatches));
+		return createStorageReadResult(readRecordsForTypeAndListOfIds(type, recordIdsInWindow),
+				noOfMatches);
 	}
 
-	private Collection<DataGroup> readRecordsForTypeAndListOfIds(String type,
+	private List<DataGroup> readRecordsForTypeAndListOfIds(String type,
 			List<String> foundRecordIdsForFilter) {
 		List<DataGroup> foundRecords = new ArrayList<>(foundRecordIdsForFilter.size());
 		for (String foundRecordId : foundRecordIdsForFilter) {
-			foundRecords.add(read(type, foundRecordId));
+			DividerGroup storedRecord = getStoredRecordOrNull(type, foundRecordId);
+			if (null != storedRecord) {
+				foundRecords.add(getDataGroupFromStoredRecordWithoutCaching(storedRecord));
+			}
 		}
 		return foundRecords;
 	}
 
+	public Stream<DataGroup> readListAsStream(String type, DataGroup filter) {
+		RecordListWindow window = RecordListWindow.usingFilter(filter);
+		ensureRecordsAreLoadedForRecordType(type);
+		Map<String, DividerGroup> typeDividerRecords = records.get(type);
+		throwErrorIfNoRecordOfType(type, typeDividerRecords);
+		return getRecordIdsForTypeAndFilter(type, filter).stream().map(typeDividerRecords::get)
+				.filter(Objects::nonNull).skip(window.fromIndex).limit(window.maxNoOfRecords)
+				.map(this::getDataGroupFromStoredRecordWithoutCaching);
+	}
+
+	private Collection<String> getRecordIdsForTypeAndFilter(String type, DataGroup filter) {
+		if (filterIsEmpty(filter)) {
+			return getOrderedRecordIds(type);
+		}
+		return collectedTermsHolder.findRecordIdsForFilter(type, filter);
+	}
+
 	private void throwErrorIfNoRecordOfType(String type,
 			Map<String, DividerGroup> typeDividerRecords) {
 		if (null == typeDividerRecords) {
@@ -267,114 +558,129 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 		return !filter.containsChildWithNameInData("part");
 	}
 
-	private Map<String, DataGroup> addDataGroupToRecordTypeList(
-			Map<String, DividerGroup> typeDividerRecords) {
-		Map<String, DataGroup> typeRecords = new HashMap<>(typeDividerRecords.size());
-		for (Entry<String, DividerGroup> entry : typeDividerRecords.entrySet()) {
-			typeRecords.put(entry.getKey(), entry.getValue().dataGroup);
-		}
-		return typeRecords;
-	}
-
 	@Override
 	public StorageReadResult readAbstractList(String type, DataGroup filter) {
-		List<DataGroup> aggregatedRecordList = new ArrayList<>();
-		List<String> implementingChildRecordTypes = findImplementingChildRecordTypes(type);
-
-		addRecordsToAggregatedRecordList(aggregatedRecordList, implementingChildRecordTypes,
-				filter);
-		addRecordsForParentIfParentIsNotAbstract(type, filter, aggregatedRecordList);
-		throwErrorIfEmptyAggregatedList(type, aggregatedRecordList);
-		StorageReadResult readResult = new StorageReadResult();
-		readResult.listOfDataGroups = aggregatedRecordList;
-		readResult.totalNumberOfMatches = aggregatedRecordList.size();
-		return readResult;
+		return readUsingConsistentView(() -> getRecordTypesReadForAbstractType(type),
+				() -> readAbstractListForTypeAndFilter(type, filter));
 	}
 
-	private List<String> findImplementingChildRecordTypes(String type) {
-		Map<String, DividerGroup> allRecordTypes = records.get(RECORD_TYPE);
-		List<String> implementingRecordTypes = new ArrayList<>();
-		return findImplementingChildRecordTypesUsingTypeAndRecordTypeList(type, allRecordTypes,
-				implementingRecordTypes);
+	private List<String> getRecordTypesReadForAbstractType(String type) {
+		List<String> recordTypes = new ArrayList<>();
+		addRecordTypesReadForAbstractType(recordTypes, type);
+		return recordTypes;
 	}
 
-	private List<String> findImplementingChildRecordTypesUsingTypeAndRecordTypeList(String type,
-			Map<String, DividerGroup> allRecordTypes, List<String> implementingRecordTypes) {
-		for (Entry<String, DividerGroup> entry : allRecordTypes.entrySet()) {
-			checkIfChildAndAddToList(type, implementingRecordTypes, entry);
-		}
-		return implementingRecordTypes;
+	private void addRecordTypesReadForAbstractType(List<String> recordTypes, String type) {
+		recordTypes.add(RECORD_TYPE);
+		recordTypes.add(type);
+		recordTypes.addAll(findImplementingChildRecordTypes(type));
 	}
 
-	private void checkIfChildAndAddToList(String type, List<String> implementingRecordTypes,
-			Entry<String, DividerGroup> entry) {
-		DataGroup dataGroup = extractDataGroupFromDataDividerGroup(entry);
-		String recordTypeId = entry.getKey();
-
-		if (isImplementingChild(type, dataGroup)) {
-			implementingRecordTypes.add(recordTypeId);
-			findImplementingChildRecordTypesUsingTypeAndRecordTypeList(entry.getKey(),
-					records.get(RECORD_TYPE), implementingRecordTypes);
+	private StorageReadResult readAbstractListForTypeAndFilter(String type, DataGroup filter) {
+		StorageReadResult readResult = createStorageReadResult(new ArrayList<>(), 0);
+		RecordListWindow window = RecordListWindow.usingFilter(filter);
+		readResult.start = window.getStart();
+		for (String implementingRecordType : findImplementingChildRecordTypes(type)) {
+			window = readImplementingRecordTypeAndAddToResult(implementingRecordType, filter,
+					window, readResult);
 		}
+		addRecordsForParentIfParentIsNotAbstract(type, filter, window, readResult);
+		throwErrorIfNoMatches(type, readResult);
+		return readResult;
 	}
 
-	private DataGroup extractDataGroupFromDataDividerGroup(Entry<String, DividerGroup> entry) {
-		DividerGroup dividerGroup = entry.getValue();
-		return dividerGroup.dataGroup;
+	private List<String> findImplementingChildRecordTypes(String type) {
+		return getRecordTypeHierarchy().getImplementingRecordTypes(type);
 	}
 
-	private boolean isImplementingChild(String type, DataGroup dataGroup) {
-		if (dataGroup.containsChildWithNameInData("parentId")) {
-			String parentId = extractParentId(dataGroup);
-			if (parentId.equals(type)) {
-				return true;
-			}
+	private RecordTypeHierarchy getRecordTypeHierarchy() {
+		ensureRecordsAreLoadedForRecordType(RECORD_TYPE);
+		long version = recordTypesVersion.get();
+		RecordTypeHierarchy hierarchy = recordTypeHierarchy;
+		if (null == hierarchy || hierarchy.version != version) {
+			hierarchy = RecordTypeHierarchy.usingVersionAndRecordTypes(version,
+					readRecordTypesInOrder());
+			recordTypeHierarchy = hierarchy;
 		}
-		return false;
+		return hierarchy;
 	}
 
-	private String extractParentId(DataGroup dataGroup) {
-		DataGroup parent = dataGroup.getFirstGroupWithNameInData("parentId");
-		return parent.getFirstAtomicValueWithNameInData("linkedRecordId");
+	private Map<String, DataGroup> readRecordTypesInOrder() {
+		Map<String, DataGroup> recordTypes = new LinkedHashMap<>();
+		Map<String, DividerGroup> storedRecordTypes = records.getOrDefault(RECORD_TYPE,
+				Collections.emptyMap());
+		for (String recordTypeId : getOrderedRecordIds(RECORD_TYPE)) {
+			DividerGroup storedRecordType = storedRecordTypes.get(recordTypeId);
+			if (null != storedRecordType) {
+				recordTypes.put(recordTypeId, getDataGroupFromStoredRecord(storedRecordType));
+			}
+		}
+		return recordTypes;
 	}
 
-	private void addRecordsToAggregatedRecordList(List<DataGroup> aggregatedRecordList,
-			List<String> implementingChildRecordTypes, DataGroup filter) {
-		for (String implementingRecordType : implementingChildRecordTypes) {
-			try {
-				readRecordsForTypeAndFilterAndAddToList(implementingRecordType, filter,
-						aggregatedRecordList);
-			} catch (RecordNotFoundException e) {
-				// Do nothing, another implementing child might have records
-			}
+	private RecordListWindow readImplementingRecordTypeAndAddToResult(
+			String implementingRecordType, DataGroup filter, RecordListWindow window,
+			StorageReadResult readResult) {
+		if (recordsExistForRecordType(implementingRecordType)) {
+			return readRecordTypeAndAddToResult(implementingRecordType, filter, window,
+					readResult);
 		}
+		return window;
 	}
 
-	private void readRecordsForTypeAndFilterAndAddToList(String implementingRecordType,
-			DataGroup filter, List<DataGroup> aggregatedRecordList) {
-		Collection<DataGroup> readList = readList(implementingRecordType, filter).listOfDataGroups;
-		aggregatedRecordList.addAll(readList);
+	private RecordListWindow readRecordTypeAndAddToResult(String recordType, DataGroup filter,
+			RecordListWindow window, StorageReadResult readResult) {
+		StorageReadResult readResultForType = readListUsingWindow(recordType, filter, window);
+		readResult.listOfDataGroups.addAll(readResultForType.listOfDataGroups);
+		readResult.totalNumberOfMatches += readResultForType.totalNumberOfMatches;
+		return window.afterNoOfMatches(readResultForType.totalNumberOfMatches);
 	}
 
-	private boolean parentRecordTypeIsNotAbstract(DataGroup recordTypeDataGroup) {
-		return !recordTypeIsAbstract(recordTypeDataGroup);
+	private boolean parentRecordTypeIsNotAbstract(String recordType) {
+		return !recordTypeIsAbstract(recordType);
 	}
 
 	private void addRecordsForParentIfParentIsNotAbstract(String type, DataGroup filter,
-			List<DataGroup> aggregatedRecordList) {
-		DataGroup recordTypeDataGroup = read(RECORD_TYPE, type);
-		if (parentRecordTypeIsNotAbstract(recordTypeDataGroup)) {
-			readRecordsForTypeAndFilterAndAddToList(type, filter, aggregatedRecordList);
+			RecordListWindow window, StorageReadResult readResult) {
+		if (parentRecordTypeIsNotAbstract(type)) {
+			readRecordTypeAndAddToResult(type, filter, window, readResult);
 		}
 	}
 
-	private void throwErrorIfEmptyAggregatedList(String type,
-			List<DataGroup> aggregatedRecordList) {
-		if (aggregatedRecordList.isEmpty()) {
+	private void throwErrorIfNoMatches(String type, StorageReadResult readResult) {
+		if (readResult.totalNumberOfMatches == 0) {
 			throw new RecordNotFoundException(NO_RECORDS_EXISTS_MESSAGE + type);
 		}
 	}
 
+	public long countRecordsForType(String type, DataGroup filter) {
+		ensureRecordsAreLoadedForRecordType(type);
+		Map<String, DividerGroup> typeDividerRecords = records.get(type);
+		if (null == typeDividerRecords) {
+			return 0;
+		}
+		if (filterIsEmpty(filter)) {
+			return typeDividerRecords.size();
+		}
+		return collectedTermsHolder.countRecordIdsForFilter(type, filter);
+	}
+
+	public long countRecordsForAbstractType(String type, DataGroup filter) {
+		return readUsingConsistentView(() -> getRecordTypesReadForAbstractType(type),
+				() -> countRecordsForAbstractTypeAndFilter(type, filter));
+	}
+
+	private long countRecordsForAbstractTypeAndFilter(String type, DataGroup filter) {
+		long noOfRecords = 0;
+		for (String implementingRecordType : findImplementingChildRecordTypes(type)) {
+			noOfRecords += countRecordsForType(implementingRecordType, filter);
+		}
+		if (parentRecordTypeIsNotAbstract(type)) {
+			noOfRecords += countRecordsForType(type, filter);
+		}
+		return noOfRecords;
+	}
+
 	@Override
 	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String recordType,
 			String recordId) {
@@ -384,6 +690,7 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	@Override
 	public boolean recordsExistForRecordType(String type) {
+		ensureRecordsAreLoadedForRecordType(type);
 		return records.get(type) != null;
 	}
 
@@ -400,7 +707,8 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 	}
 
 	private boolean recordIdExistsForRecordType(String recordType, String recordId) {
-		return records.get(recordType).containsKey(recordId);
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		return null != recordsForRecordType && recordsForRecordType.containsKey(recordId);
 	}
 
 	private boolean recordTypeExistsAndIsAbstractAndRecordIdExistInImplementingChild(
@@ -417,13 +725,20 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	private boolean recordTypeIsAbstractAndRecordIdExistInImplementingChild(String recordType,
 			String recordId) {
-		DataGroup recordTypeDataGroup = read(RECORD_TYPE, recordType);
-		if (recordTypeIsAbstract(recordTypeDataGroup)) {
+		if (getRecordTypeHierarchy().isAbstract(recordType)) {
 			return checkIfRecordIdExistsInChildren(recordType, recordId);
 		}
 		return false;
 	}
 
+	private boolean recordTypeIsAbstract(String recordType) {
+		RecordTypeDescriptor descriptor = getRecordTypeHierarchy().getDescriptorOrNull(recordType);
+		if (null == descriptor) {
+			return recordTypeIsAbstract(returnRecordIfExisting(RECORD_TYPE, recordType));
+		}
+		return descriptor.isAbstract;
+	}
+
 	private boolean recordTypeIsAbstract(DataGroup recordTypeDataGroup) {
 		String abstractValue = recordTypeDataGroup.getFirstAtomicValueWithNameInData("abstract");
 		return valueIsAbstract(abstractValue);
@@ -434,20 +749,48 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 	}
 
 	private boolean checkIfRecordIdExistsInChildren(String recordType, String recordId) {
-		List<String> implementingChildRecordTypes = findImplementingChildRecordTypes(recordType);
-		for (String childType : implementingChildRecordTypes) {
-			if (recordsExistForRecordType(childType)
-					&& recordIdExistsForRecordType(childType, recordId)) {
-				return true;
+		return null != findImplementingRecordTypeForRecordIdOrNull(recordType, recordId);
+	}
+
+	private String findImplementingRecordTypeForRecordIdOrNull(String recordType,
+			String recordId) {
+		RecordTypeHierarchy hierarchy = getRecordTypeHierarchy();
+		ensureRecordsAreLoadedForImplementingRecordTypes(hierarchy, recordType);
+		String recordTypeForId = recordTypeByRecordId.get(recordId);
+		if (null == recordTypeForId) {
+			return null;
+		}
+		Set<String> collidingRecordTypes = recordTypesByCollidingRecordId.get(recordId);
+		if (null == collidingRecordTypes) {
+			return hierarchy.isImplementingRecordType(recordType, recordTypeForId) ? recordTypeForId
+					: null;
+		}
+		return findLastImplementingRecordTypeInOrNull(hierarchy, recordType,
+				collidingRecordTypes);
+	}
+
+	private String findLastImplementingRecordTypeInOrNull(RecordTypeHierarchy hierarchy,
+			String recordType, Set<String> recordTypesForId) {
+		// the last implementing type holding the id is read, as when each type was read in turn
+		List<String> implementingRecordTypes = hierarchy.getImplementingRecordTypes(recordType);
+		for (int i = implementingRecordTypes.size() - 1; i >= 0; i--) {
+			if (recordTypesForId.contains(implementingRecordTypes.get(i))) {
+				return implementingRecordTypes.get(i);
 			}
 		}
-		return false;
+		return null;
+	}
+
+	private void ensureRecordsAreLoadedForImplementingRecordTypes(RecordTypeHierarchy hierarchy,
+			String recordType) {
+		for (String implementingRecordType : hierarchy.getImplementingRecordTypes(recordType)) {
+			ensureRecordsAreLoadedForRecordType(implementingRecordType);
+		}
 	}
 
 	@Override
 	public DataGroup read(String recordType, String recordId) {
-		DataGroup recordTypeDataGroup = returnRecordIfExisting(RECORD_TYPE, recordType);
-		if (recordTypeIsAbstract(recordTypeDataGroup)) {
+		if (recordTypeIsAbstract(recordType)) {
 			return readRecordFromImplementingRecordTypes(recordType, recordId);
 		}
 		return returnRecordIfExisting(recordType, recordId);
@@ -463,56 +806,104 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	private DataGroup tryToReadRecordFromImplementingRecordTypes(String recordType,
 			String recordId) {
-		DataGroup readRecord = null;
-		List<String> implementingChildRecordTypes = findImplementingChildRecordTypes(recordType);
-		for (String implementingType : implementingChildRecordTypes) {
-			try {
-				readRecord = returnRecordIfExisting(implementingType, recordId);
-			} catch (RecordNotFoundException e) {
-				// Do nothing, another implementing child might have records
-			}
+		String implementingType = findImplementingRecordTypeForRecordIdOrNull(recordType,
+				recordId);
+		if (null == implementingType) {
+			return null;
 		}
-		return readRecord;
+		return readStoredRecordOrNull(implementingType, recordId);
+	}
+
+	public DataGroup readOrNull(String recordType, String recordId) {
+		RecordTypeDescriptor descriptor = getRecordTypeHierarchy().getDescriptorOrNull(recordType);
+		if (null == descriptor) {
+			return null;
+		}
+		if (descriptor.isAbstract) {
+			return tryToReadRecordFromImplementingRecordTypes(recordType, recordId);
+		}
+		return readStoredRecordOrNull(recordType, recordId);
+	}
+
+	private DataGroup readStoredRecordOrNull(String recordType, String recordId) {
+		DividerGroup storedRecord = getStoredRecordOrNull(recordType, recordId);
+		if (null == storedRecord) {
+			return null;
+		}
+		return getDataGroupFromStoredRecord(storedRecord);
+	}
+
+	private DividerGroup getStoredRecordOrNull(String recordType, String recordId) {
+		ensureRecordsAreLoadedForRecordType(recordType);
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		if (null == recordsForRecordType) {
+			return null;
+		}
+		return recordsForRecordType.get(recordId);
 	}
 
 	private DataGroup returnRecordIfExisting(String recordType, String recordId) {
-		checkRecordExists(recordType, recordId);
-		return records.get(recordType).get(recordId).dataGroup;
+		return getDataGroupFromStoredRecord(getExistingRecord(recordType, recordId));
 	}
 
-	private void checkRecordExists(String recordType, String recordId) {
-		if (holderForRecordTypeDoesNotExistInStorage(recordType)) {
+	protected final void checkRecordExists(String recordType, String recordId) {
+		getExistingRecord(recordType, recordId);
+	}
+
+	private DividerGroup getExistingRecord(String recordType, String recordId) {
+		ensureRecordsAreLoadedForRecordType(recordType);
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		if (null == recordsForRecordType) {
 			throw new RecordNotFoundException(NO_RECORDS_EXISTS_MESSAGE + recordType);
 		}
-		if (null == records.get(recordType).get(recordId)) {
+		DividerGroup storedRecord = recordsForRecordType.get(recordId);
+		if (null == storedRecord) {
 			throw new RecordNotFoundException("No record exists with recordId: " + recordId);
 		}
+		return storedRecord;
 	}
 
 	@Override
 	public DataGroup readLinkList(String recordType, String recordId) {
 		checkRecordExists(recordType, recordId);
-		if (linksMissingForRecord(recordType, recordId)) {
+		DividerGroup storedLinkList = getStoredLinkListOrNull(recordType, recordId);
+		if (null == storedLinkList) {
 			return DataGroupProvider.getDataGroupUsingNameInData("collectedDataLinks");
 		}
-		return linkLists.get(recordType).get(recordId).dataGroup;
+		return storedLinkList.dataGroup;
+	}
+
+	protected final DividerGroup getStoredLinkListOrNull(String recordType, String recordId) {
+		Map<String, DividerGroup> linkListsForRecordType = linkLists.get(recordType);
+		if (null == linkListsForRecordType) {
+			return null;
+		}
+		return linkListsForRecordType.get(recordId);
 	}
 
 	private boolean linksMissingForRecord(String recordType, String recordId) {
-		return !linkLists.get(recordType).containsKey(recordId);
+		return null == getStoredLinkListOrNull(recordType, recordId);
 	}
 
 	@Override
 	public void deleteByTypeAndId(String recordType, String recordId) {
-		checkRecordExists(recordType, recordId);
-		removeOldLinksStoredAsIncomingLinks(recordType, recordId);
-		removeFromLinkList(recordType, recordId);
-		collectedTermsHolder.removePreviousCollectedStorageTerms(recordType, recordId);
-		records.get(recordType).remove(recordId);
-		if (records.get(recordType).isEmpty()) {
-			records.remove(recordType);
+		startWriteForRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			removeOldLinksStoredAsIncomingLinks(recordType, recordId);
+			removeFromLinkList(recordType, recordId);
+			collectedTermsHolder.removePreviousCollectedStorageTerms(recordType, recordId);
+			records.get(recordType).remove(recordId);
+			orderedRecordIds.get(recordType).remove(recordId);
+			removeRecordTypeForRecordId(recordType, recordId);
+			markRecordTypesAsChangedIfRecordType(recordType);
+			if (records.get(recordType).isEmpty()) {
+				records.remove(recordType);
+				orderedRecordIds.remove(recordType);
+			}
+		} finally {
+			finishWriteForRecordType(recordType);
 		}
-
 	}
 
 	private void removeFromLinkList(String recordType, String recordId) {
@@ -526,16 +917,27 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	@Override
 	public Collection<DataGroup> generateLinkCollectionPointingToRecord(String type, String id) {
-		if (linksExistForRecord(type, id)) {
-			return generateLinkCollectionFromStoredLinks(type, id);
+		Map<String, Map<String, List<DataGroup>>> linkStorageForRecord = getIncomingLinksForRecordOrNull(
+				type, id);
+		if (null != linkStorageForRecord) {
+			return generateLinkCollectionFromStoredLinks(linkStorageForRecord);
 		}
 		return Collections.emptyList();
 	}
 
-	private Collection<DataGroup> generateLinkCollectionFromStoredLinks(String type, String id) {
+	private Map<String, Map<String, List<DataGroup>>> getIncomingLinksForRecordOrNull(String type,
+			String id) {
+		Map<String, Map<String, Map<String, List<DataGroup>>>> incomingLinksForRecordType = incomingLinks
+				.get(type);
+		if (null == incomingLinksForRecordType) {
+			return null;
+		}
+		return incomingLinksForRecordType.get(id);
+	}
+
+	private Collection<DataGroup> generateLinkCollectionFromStoredLinks(
+			Map<String, Map<String, List<DataGroup>>> linkStorageForRecord) {
 		List<DataGroup> generatedLinkList = new ArrayList<>();
-		Map<String, Map<String, List<DataGroup>>> linkStorageForRecord = incomingLinks.get(type)
-				.get(id);
 		addLinksForRecordFromAllRecordTypes(generatedLinkList, linkStorageForRecord);
 		return generatedLinkList;
 	}
@@ -556,8 +958,7 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	@Override
 	public boolean linksExistForRecord(String type, String id) {
-		return incomingLinkStorageForRecordTypeExists(type)
-				&& incomingLinksHolderForRecordIdExists(type, id);
+		return null != getIncomingLinksForRecordOrNull(type, id);
 	}
 
 	private boolean incomingLinksHolderForRecordIdExists(String type, String id) {
@@ -571,18 +972,27 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 	@Override
 	public void update(String recordType, String recordId, DataGroup record,
 			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
-		checkRecordExists(recordType, recordId);
-		removeOldLinksStoredAsIncomingLinks(recordType, recordId);
-		storeIndependentRecordByRecordTypeAndRecordId(recordType, recordId, record, dataDivider);
-		ensureStorageExistsForRecordType(recordType);
-		collectedTermsHolder.storeCollectedTerms(recordType, recordId, collectedTerms, dataDivider);
-		storeLinks(recordType, recordId, linkList, dataDivider);
+		startWriteForRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			removeOldLinksStoredAsIncomingLinks(recordType, recordId);
+			storeIndependentRecordByRecordTypeAndRecordId(recordType, recordId, record,
+					dataDivider);
+			ensureStorageExistsForRecordType(recordType);
+			collectedTermsHolder.storeCollectedTerms(recordType, recordId, collectedTerms,
+					dataDivider);
+			storeLinks(recordType, recordId, linkList, dataDivider);
+		} finally {
+			finishWriteForRecordType(recordType);
+		}
 	}
 
 	private void removeOldLinksStoredAsIncomingLinks(String recordType, String recordId) {
 		DataGroup oldLinkList = readLinkList(recordType, recordId);
-		for (DataElement linkElement : oldLinkList.getChildren()) {
-			removeOldLinkStoredAsIncomingLink((DataGroup) linkElement);
+		synchronized (incomingLinks) {
+			for (DataElement linkElement : oldLinkList.getChildren()) {
+				removeOldLinkStoredAsIncomingLink((DataGroup) linkElement);
+			}
 		}
 	}
 
@@ -642,6 +1052,19 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	@Override
 	public Collection<DataGroup> getMetadataElements() {
+		return readUsingConsistentView(this::getRecordTypesReadForMetadataElements,
+				this::readMetadataElements);
+	}
+
+	private List<String> getRecordTypesReadForMetadataElements() {
+		List<String> recordTypes = new ArrayList<>();
+		for (MetadataTypes metadataType : MetadataTypes.values()) {
+			addRecordTypesReadForAbstractType(recordTypes, metadataType.type);
+		}
+		return recordTypes;
+	}
+
+	private Collection<DataGroup> readMetadataElements() {
 		Collection<DataGroup> readDataGroups = new ArrayList<>();
 		for (MetadataTypes metadataType : MetadataTypes.values()) {
 			readListForMetadataType(readDataGroups, metadataType);
@@ -651,8 +1074,7 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 
 	private void readListForMetadataType(Collection<DataGroup> readDataGroups,
 			MetadataTypes metadataType) {
-		DataGroup recordTypeDataGroup = read(RECORD_TYPE, metadataType.type);
-		if (recordTypeIsAbstract(recordTypeDataGroup)) {
+		if (recordTypeIsAbstract(metadataType.type)) {
 			readDataGroups
 					.addAll(readAbstractList(metadataType.type, emptyFilter).listOfDataGroups);
 		} else {
@@ -690,4 +1112,14 @@ public class RecordStorageInMemory implements RecordStorage, MetadataStorage, Se
 		return read("collectIndexTerm", collectIndexTermId);
 	}
 
+	boolean isCopyingEnteredData() {
+		// needed for test
+		return copyEnteredData;
+	}
+
+	ExpandedRecordCache getExpandedRecordCache() {
+		// needed for test
+		return expandedRecordCache;
+	}
+
 }
@@ -34,7 +34,12 @@ public final class RecordStorageInMemoryReadFromDisk extends RecordStorageOnDisk
 	}
 
 	@Override
-	protected void writeDataToDisk(String recordType, String dataDivider) {
+	protected void writeDataToDisk(String recordType) {
+		// do not write to disk
+	}
+
+	@Override
+	public void writeBinarySnapshot() {
 		// do not write to disk
 	}
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataPart;
+import se.uu.ub.cora.data.converter.DataToJsonConverter;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverter;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.json.parser.JsonParser;
+import se.uu.ub.cora.json.parser.JsonValue;
+import se.uu.ub.cora.json.parser.org.OrgJsonParser;
+
+final class RecordStorageJournal {
+	static final String JOURNAL_DIRECTORY = "journal";
+	private static final String JOURNAL_FILE_NAME = "journal.json";
+	private Path journalPath;
+	private volatile int noOfEntries = 0;
+	private final ReentrantLock batchLock = new ReentrantLock();
+	private final Condition batchWritten = batchLock.newCondition();
+	private JournalBatch openBatch = new JournalBatch();
+	private boolean writingBatch = false;
+
+	static RecordStorageJournal usingBasePath(String basePath) {
+		return new RecordStorageJournal(basePath);
+	}
+
+	private RecordStorageJournal(String basePath) {
+		Path journalDirectory = Paths.get(basePath, JOURNAL_DIRECTORY);
+		ensureJournalDirectoryExists(journalDirectory);
+		journalPath = journalDirectory.resolve(JOURNAL_FILE_NAME);
+	}
+
+	private void ensureJournalDirectoryExists(Path journalDirectory) {
+		if (!Files.exists(journalDirectory)) {
+			tryToCreateJournalDirectory(journalDirectory);
+		}
+	}
+
+	private void tryToCreateJournalDirectory(Path journalDirectory) {
+		try {
+			Files.createDirectory(journalDirectory);
+		} catch (IOException e) {
+			throw DataStorageException.withMessageAndException(
+					"Could not make directory " + journalDirectory.toString(), e);
+		}
+	}
+
+	List<DataGroup> readEntries() {
+		if (!Files.exists(journalPath)) {
+			return Collections.emptyList();
+		}
+		List<String> lines = tryToReadLinesFromJournal();
+		List<DataGroup> entries = convertLinesToEntries(lines);
+		noOfEntries = entries.size();
+		return entries;
+	}
+
+	private List<String> tryToReadLinesFromJournal() {
+		try {
+			return Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not read journal from disk: " + e, e);
+		}
+	}
+
+	private List<DataGroup> convertLinesToEntries(List<String> lines) {
+		List<DataGroup> entries = new ArrayList<>(lines.size());
+		int lastLineNo = lines.size() - 1;
+		for (int lineNo = 0; lineNo <= lastLineNo; lineNo++) {
+			String line = lines.get(lineNo);
+			if (!line.isEmpty()) {
+				possiblyAddEntryFromLine(entries, line, lineNo == lastLineNo);
+			}
+		}
+		return entries;
+	}
+
+	private void possiblyAddEntryFromLine(List<DataGroup> entries, String line,
+			boolean isLastLine) {
+		try {
+			entries.add(convertJsonStringToDataGroup(line));
+		} catch (RuntimeException e) {
+			throwErrorIfNotLastLine(isLastLine, e);
+		}
+	}
+
+	private void throwErrorIfNotLastLine(boolean isLastLine, RuntimeException e) {
+		if (!isLastLine) {
+			throw DataStorageException
+					.withMessageAndException("can not read journal from disk: " + e, e);
+		}
+		// a partly written last entry is left from an interrupted write, and is skipped
+	}
+
+	private DataGroup convertJsonStringToDataGroup(String json) {
+		JsonParser jsonParser = new OrgJsonParser();
+		JsonValue jsonValue = jsonParser.parseString(json);
+		JsonToDataConverter jsonToDataConverter = JsonToDataConverterProvider
+				.getConverterUsingJsonObject(jsonValue);
+		DataPart dataPart = jsonToDataConverter.toInstance();
+		return (DataGroup) dataPart;
+	}
+
+	void appendEntry(DataGroup entry) {
+		// the entry is converted before waiting for other writers, so only writing waits
+		String json = convertDataGroupToJsonStringOnOneLine(entry);
+		ByteBuffer line = ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8));
+		JournalBatch batch = addLineToOpenBatchAndWaitUntilWritten(line);
+		throwErrorIfBatchCouldNotBeWritten(batch);
+	}
+
+	private String convertDataGroupToJsonStringOnOneLine(DataGroup dataGroup) {
+		DataToJsonConverter dataToJsonConverter = DataToJsonConverterProvider
+				.getConverterUsingDataPart(dataGroup);
+		String json = dataToJsonConverter.toJson();
+		return json.replace("\r", "").replace("\n", "");
+	}
+
+	private JournalBatch addLineToOpenBatchAndWaitUntilWritten(ByteBuffer line) {
+		batchLock.lock();
+		try {
+			JournalBatch batch = openBatch;
+			batch.lines.add(line);
+			while (!batch.written) {
+				waitForOrWriteOpenBatch();
+			}
+			return batch;
+		} finally {
+			batchLock.unlock();
+		}
+	}
+
+	private void waitForOrWriteOpenBatch() {
+		if (writingBatch) {
+			batchWritten.awaitUninterruptibly();
+		} else {
+			writeOpenBatch();
+		}
+	}
+
+	private void writeOpenBatch() {
+		// lines added while a batch is written are written as the next batch, with one force
+		JournalBatch batch = openBatch;
+		openBatch = new JournalBatch();
+		writingBatch = true;
+		batchLock.unlock();
+		try {
+			batch.error = tryToWriteLinesToJournal(batch.lines);
+		} finally {
+			batchLock.lock();
+			markBatchAsWritten(batch);
+		}
+	}
+
+	private Exception tryToWriteLinesToJournal(List<ByteBuffer> lines) {
+		try {
+			writeLinesToJournal(lines);
+			return null;
+		} catch (IOException | RuntimeException e) {
+			return e;
+		}
+	}
+
+	private void writeLinesToJournal(List<ByteBuffer> lines) throws IOException {
+		try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			for (ByteBuffer line : lines) {
+				while (line.hasRemaining()) {
+					channel.write(line);
+				}
+			}
+			channel.force(false);
+		}
+	}
+
+	private void markBatchAsWritten(JournalBatch batch) {
+		batch.written = true;
+		if (null == batch.error) {
+			noOfEntries += batch.lines.size();
+		}
+		writingBatch = false;
+		batchWritten.signalAll();
+	}
+
+	private void throwErrorIfBatchCouldNotBeWritten(JournalBatch batch) {
+		if (null != batch.error) {
+			throw DataStorageException.withMessageAndException(
+					"can not write journal to disk: " + batch.error, batch.error);
+		}
+	}
+
+	void clear() {
+		try {
+			Files.deleteIfExists(journalPath);
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not delete journal from disk: " + e, e);
+		}
+		noOfEntries = 0;
+	}
+
+	int getNoOfEntries() {
+		return noOfEntries;
+	}
+
+	Path getJournalPath() {
+		// needed for test
+		return journalPath;
+	}
+
+	private static final class JournalBatch {
+		private final List<ByteBuffer> lines = new ArrayList<>();
+		private boolean written = false;
+		private Exception error;
+	}
+}
@@ -20,19 +20,22 @@
 package se.uu.ub.cora.basicstorage;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -40,6 +43,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -47,14 +56,6 @@ import java.util.zip.GZIPOutputStream;
 import se.uu.ub.cora.data.DataElement;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.data.DataGroupProvider;
-import se.uu.ub.cora.data.DataPart;
-import se.uu.ub.cora.data.converter.DataToJsonConverter;
-import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
-import se.uu.ub.cora.data.converter.JsonToDataConverter;
-import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
-import se.uu.ub.cora.json.parser.JsonParser;
-import se.uu.ub.cora.json.parser.JsonValue;
-import se.uu.ub.cora.json.parser.org.OrgJsonParser;
 import se.uu.ub.cora.storage.MetadataStorage;
 import se.uu.ub.cora.storage.RecordStorage;
 
@@ -64,28 +65,71 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 	private static final String COLLECTED_DATA = "collectedData";
 	private static final String LINK_LISTS = "linkLists";
 	private static final String JSON_FILE_END = ".json";
+	private static final String TEMPORARY_FILE_ENDING = ".tmp";
 	private static final int FILE_EXTENSION_LENGTH = ".gz".length();
-	private Set<String> allSeenCollectedDataFileNames = new HashSet<>();
-	private String basePath;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	private static final int RECORDS_NOT_COMPACT = -1;
+	protected String basePath;
 	private List<Path> pathsToAllFilesInBasePath = new ArrayList<>();
+	private Map<String, Map<String, Set<String>>> recordIdsByTypeAndDataDivider = new ConcurrentHashMap<>();
+	private Map<String, Set<String>> changedDataDividersByRecordType = new ConcurrentHashMap<>();
+	private Map<String, Map<String, Set<String>>> linkListRecordIdsByDataDividerAndType = new HashMap<>();
+	private Set<String> changedLinkListDataDividers = new HashSet<>();
+	private Map<String, Object> directoryLocksByDataDivider = new ConcurrentHashMap<>();
+	private RecordStorageBinarySnapshot binarySnapshot;
+	private boolean loadRecordsWhenUsed;
+	private Map<String, List<Path>> pathsToNotLoadedRecordFilesByRecordType = new ConcurrentHashMap<>();
+	private final AtomicBoolean closing = new AtomicBoolean(false);
+	private boolean readFromBinarySnapshot = false;
 
 	protected RecordStorageOnDisk(String basePath) {
-		this.basePath = basePath;
+		this(basePath, false, RECORDS_NOT_COMPACT);
+	}
+
+	protected RecordStorageOnDisk(String basePath, int noOfCachedCompactRecords) {
+		// stored data is read by the subclass calling tryToReadStoredDataFromDisk once its own
+		// fields are set, as reading stored data calls methods the subclass overrides
+		setUpStorage(basePath, false, noOfCachedCompactRecords);
+	}
+
+	private RecordStorageOnDisk(String basePath, boolean loadRecordsWhenUsed,
+			int noOfCachedCompactRecords) {
+		setUpStorage(basePath, loadRecordsWhenUsed, noOfCachedCompactRecords);
 		tryToReadStoredDataFromDisk();
 	}
 
+	private void setUpStorage(String basePath, boolean loadRecordsWhenUsed,
+			int noOfCachedCompactRecords) {
+		this.basePath = basePath;
+		this.loadRecordsWhenUsed = loadRecordsWhenUsed;
+		if (noOfCachedCompactRecords != RECORDS_NOT_COMPACT) {
+			keepRecordsCompactUsingNoOfCachedRecords(noOfCachedCompactRecords);
+		}
+		binarySnapshot = RecordStorageBinarySnapshot.usingBasePath(basePath);
+	}
+
 	public static RecordStorageOnDisk createRecordStorageOnDiskWithBasePath(String basePath) {
 		return new RecordStorageOnDisk(basePath);
 	}
 
-	private final void tryToReadStoredDataFromDisk() {
+	public static RecordStorageOnDisk createRecordStorageOnDiskWithBasePathLoadingRecordsWhenUsed(
+			String basePath) {
+		return new RecordStorageOnDisk(basePath, true, RECORDS_NOT_COMPACT);
+	}
+
+	public static RecordStorageOnDisk createRecordStorageOnDiskWithBasePathKeepingRecordsCompact(
+			String basePath, int noOfCachedRecords) {
+		return new RecordStorageOnDisk(basePath, false, noOfCachedRecords);
+	}
+
+	protected final void tryToReadStoredDataFromDisk() {
 		Stream<Path> list = Stream.empty();
 		try {
 			list = Files.list(Paths.get(basePath));
-			collectPathsToAllFilesIncludingSubdirectoriesFromDisk(list);
-			for (Path path : pathsToAllFilesInBasePath) {
-				readFileAndParseFileByPath(path);
-			}
+			collectPathsToAllFilesIncludingSubdirectoriesFromDisk(list, pathsToAllFilesInBasePath);
+			readBinarySnapshotOrParseAllFiles();
+			changedLinkListDataDividers.clear();
 		} catch (IOException e) {
 			throw DataStorageException
 					.withMessageAndException("can not read files from disk on init: " + e, e);
@@ -94,111 +138,314 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 		}
 	}
 
-	private final void collectPathsToAllFilesIncludingSubdirectoriesFromDisk(Stream<Path> list)
-			throws IOException {
+	private final void collectPathsToAllFilesIncludingSubdirectoriesFromDisk(Stream<Path> list,
+			List<Path> paths) throws IOException {
 		Iterator<Path> iterator = list.iterator();
 		while (iterator.hasNext()) {
-			collectPathsToAllFilesIncludingSubdirectoriesIfNotStreamsDir(iterator);
+			collectPathsToAllFilesIncludingSubdirectoriesIfNotStreamsDir(iterator, paths);
 		}
 	}
 
 	private final void collectPathsToAllFilesIncludingSubdirectoriesIfNotStreamsDir(
-			Iterator<Path> iterator) throws IOException {
+			Iterator<Path> iterator, List<Path> paths) throws IOException {
 		Path path = iterator.next();
 		File file = path.toFile();
 		if (file.isDirectory()) {
-			if (!path.endsWith("streams/")) {
-				Stream<Path> list = Files.list(path);
-				collectPathsToAllFilesIncludingSubdirectoriesFromDisk(list);
+			if (directoryContainsRecordData(path)) {
+				try (Stream<Path> list = Files.list(path)) {
+					collectPathsToAllFilesIncludingSubdirectoriesFromDisk(list, paths);
+				}
 			}
-		} else {
+		} else if (!isTemporaryFile(path)) {
 			throwErrorIfPathIsSymbolicLinkWhereTargetDoesNotExist(path);
-			pathsToAllFilesInBasePath.add(path);
+			paths.add(path);
 		}
 	}
 
+	private final boolean isTemporaryFile(Path path) {
+		// temporary files are left by interrupted writes, and replaced on the next write
+		return path.toString().endsWith(TEMPORARY_FILE_ENDING);
+	}
+
+	private final boolean directoryContainsRecordData(Path path) {
+		return !path.endsWith("streams/")
+				&& !path.endsWith(RecordStorageJournal.JOURNAL_DIRECTORY)
+				&& !path.endsWith(RecordStorageBinarySnapshot.SNAPSHOT_DIRECTORY)
+				&& !path.endsWith(MappedRecordSegments.SEGMENTS_DIRECTORY);
+	}
+
 	private final void throwErrorIfPathIsSymbolicLinkWhereTargetDoesNotExist(Path path) {
 		if (!Files.exists(path)) {
 			throw DataStorageException.withMessage("Symbolic link points to missing path: " + path);
 		}
 	}
 
+	private final void readBinarySnapshotOrParseAllFiles() throws IOException {
+		if (loadRecordsWhenUsed) {
+			addRecordFilesToManifestAndParseOtherFiles();
+		} else {
+			reopenStoredRecordsAndReadBinarySnapshotOrParseAllFiles();
+		}
+	}
+
+	private final void reopenStoredRecordsAndReadBinarySnapshotOrParseAllFiles()
+			throws IOException {
+		Set<String> reopenedRecordTypes = reopenStoredRecordsForDataFiles(
+				pathsToAllFilesInBasePath);
+		if (!reopenedRecordTypes.isEmpty()) {
+			readAndParseFiles(getPathsToFilesNotInRecordTypes(reopenedRecordTypes));
+		} else if (tryToReadBinarySnapshotIfUpToDateWithDataFiles()) {
+			readFromBinarySnapshot = true;
+		} else {
+			readAndParseFiles(pathsToAllFilesInBasePath);
+		}
+	}
+
+	private final boolean tryToReadBinarySnapshotIfUpToDateWithDataFiles() {
+		try {
+			return binarySnapshot.tryToReadIntoStorageIfUpToDateWithDataFiles(this,
+					pathsToAllFilesInBasePath);
+		} catch (IOException | RuntimeException e) {
+			// a truncated or corrupt snapshot is replaced by reading the data files
+			clearStoredData();
+			return false;
+		}
+	}
+
+	@Override
+	protected void clearStoredData() {
+		super.clearStoredData();
+		recordIdsByTypeAndDataDivider.clear();
+		changedDataDividersByRecordType.clear();
+		linkListRecordIdsByDataDividerAndType.clear();
+		changedLinkListDataDividers.clear();
+	}
+
+	protected Set<String> reopenStoredRecordsForDataFiles(List<Path> pathsToDataFiles) {
+		// only storages keeping records outside the heap can reopen them
+		return Collections.emptySet();
+	}
+
+	private final List<Path> getPathsToFilesNotInRecordTypes(Set<String> recordTypes) {
+		List<Path> pathsToFiles = new ArrayList<>();
+		for (Path path : pathsToAllFilesInBasePath) {
+			if (!recordTypes.contains(getTypeFromPath(path))) {
+				pathsToFiles.add(path);
+			}
+		}
+		return pathsToFiles;
+	}
+
+	private final void addRecordFilesToManifestAndParseOtherFiles() throws IOException {
+		List<Path> pathsToOtherFiles = new ArrayList<>();
+		for (Path path : pathsToAllFilesInBasePath) {
+			String fileNameTypePart = getTypeFromPath(path);
+			if (fileContainsRecords(fileNameTypePart)) {
+				pathsToNotLoadedRecordFilesByRecordType
+						.computeIfAbsent(fileNameTypePart, key -> new ArrayList<>()).add(path);
+			} else {
+				pathsToOtherFiles.add(path);
+			}
+		}
+		readAndParseFiles(pathsToOtherFiles);
+	}
+
+	@Override
+	protected void ensureRecordsAreLoadedForRecordType(String recordType) {
+		if (pathsToNotLoadedRecordFilesByRecordType.containsKey(recordType)) {
+			possiblyLoadRecordsForRecordType(recordType);
+		}
+	}
+
+	private void possiblyLoadRecordsForRecordType(String recordType) {
+		synchronized (pathsToNotLoadedRecordFilesByRecordType) {
+			List<Path> pathsToRecordFiles = pathsToNotLoadedRecordFilesByRecordType
+					.get(recordType);
+			if (null != pathsToRecordFiles) {
+				tryToReadAndParseRecordFiles(pathsToRecordFiles);
+				pathsToNotLoadedRecordFilesByRecordType.remove(recordType);
+			}
+		}
+	}
+
+	private void tryToReadAndParseRecordFiles(List<Path> pathsToRecordFiles) {
+		try {
+			readAndParseFilesInline(pathsToRecordFiles);
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not read files from disk: " + e, e);
+		}
+	}
+
+	private void loadAllNotLoadedRecordTypes() {
+		for (String recordType : new ArrayList<>(
+				pathsToNotLoadedRecordFilesByRecordType.keySet())) {
+			possiblyLoadRecordsForRecordType(recordType);
+		}
+	}
+
+	private final void readAndParseFiles(List<Path> paths) throws IOException {
+		int noOfReadingThreads = Math.min(getMaxNoOfThreadsForReadingFiles(), paths.size());
+		if (noOfReadingThreads > 1) {
+			readFilesInParallelUsingNoOfThreads(paths, noOfReadingThreads);
+		} else {
+			readAndParseFilesInline(paths);
+		}
+	}
+
+	protected int getMaxNoOfThreadsForReadingFiles() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private final void readAndParseFilesInline(List<Path> paths) throws IOException {
+		// a record type loaded when first used is read by the thread using it, without a pool
+		for (Path path : paths) {
+			readFileAndParseFileByPath(path);
+		}
+	}
+
 	private final void readFileAndParseFileByPath(Path path) throws IOException {
 		String fileNameTypePart = getTypeFromPath(path);
 		String dataDivider = getDataDividerFromPath(path);
-		List<DataElement> recordsFromFile = extractChildrenFromFileByPath(path);
-
-		if (fileContainsLinkLists(fileNameTypePart)) {
-			parseAndStoreDataLinksInMemory(dataDivider, recordsFromFile);
-		} else if (COLLECTED_DATA.equals(fileNameTypePart)) {
-			allSeenCollectedDataFileNames.add(dataDivider);
-			parseAndStoreCollectedStorageTermsInMemory(recordsFromFile);
-		} else {
-			parseAndStoreRecordsInMemory(fileNameTypePart, dataDivider, recordsFromFile);
+		ensureStorageExistsIfFileContainsRecords(fileNameTypePart);
+		try (Reader reader = openReaderForPath(path)) {
+			DataGroupJsonStreamReader streamReader = DataGroupJsonStreamReader
+					.usingReader(reader);
+			DataGroup child = streamReader.readNextChild();
+			while (null != child) {
+				parseAndStoreChildInMemory(fileNameTypePart, dataDivider, child);
+				child = streamReader.readNextChild();
+			}
 		}
 	}
 
-	private final String getTypeFromPath(Path path) {
-		String fileName = path.getFileName().toString();
-		return fileName.substring(0, fileName.lastIndexOf('_'));
+	private final void ensureStorageExistsIfFileContainsRecords(String fileNameTypePart) {
+		if (fileContainsRecords(fileNameTypePart)) {
+			ensureStorageExistsForRecordType(fileNameTypePart);
+		}
 	}
 
-	private final String getDataDividerFromPath(Path path) {
-		String fileName2 = path.getFileName().toString();
-		return fileName2.substring(fileName2.lastIndexOf('_') + 1, fileName2.indexOf('.'));
+	private final void readFilesInParallelUsingNoOfThreads(List<Path> paths,
+			int noOfReadingThreads) throws IOException {
+		ExecutorService fileReaders = Executors.newFixedThreadPool(noOfReadingThreads,
+				this::createFileReaderThread);
+		try {
+			readFilesUsingFileReadersAndStoreInPathOrder(paths, fileReaders, noOfReadingThreads);
+		} finally {
+			fileReaders.shutdownNow();
+		}
 	}
 
-	private final List<DataElement> extractChildrenFromFileByPath(Path path) throws IOException {
-		String json = readJsonFileByPath(path);
-		DataGroup recordList = convertJsonStringToDataGroup(json);
-		return recordList.getChildren();
+	private Thread createFileReaderThread(Runnable runnable) {
+		Thread fileReaderThread = new Thread(runnable, "recordStorageOnDiskFileReader");
+		fileReaderThread.setDaemon(true);
+		return fileReaderThread;
 	}
 
-	private String readJsonFileByPath(Path path) throws IOException {
-		if (path.toString().endsWith(GZ_ENDING)) {
-			try (InputStream newInputStream = Files.newInputStream(path);
-					InputStreamReader inputStreamReader = new java.io.InputStreamReader(
-							new GZIPInputStream(newInputStream), StandardCharsets.UTF_8);
-					BufferedReader bufferedReader = new BufferedReader(inputStreamReader);) {
-				return readContentFromReaderAsJsonString(bufferedReader);
+	private final void readFilesUsingFileReadersAndStoreInPathOrder(List<Path> paths,
+			ExecutorService fileReaders, int noOfReadingThreads) throws IOException {
+		int noOfPaths = paths.size();
+		int maxNoOfFilesReadAhead = 2 * noOfReadingThreads;
+		List<Future<List<DataGroup>>> filesBeingRead = new ArrayList<>(noOfPaths);
+		for (int index = 0; index < noOfPaths; index++) {
+			while (filesBeingRead.size() < noOfPaths
+					&& filesBeingRead.size() <= index + maxNoOfFilesReadAhead) {
+				Path pathToRead = paths.get(filesBeingRead.size());
+				filesBeingRead.add(fileReaders.submit(() -> readChildrenFromFile(pathToRead)));
 			}
+			List<DataGroup> children = waitForChildrenFromFile(filesBeingRead.get(index));
+			filesBeingRead.set(index, null);
+			storeChildrenFromFileInMemory(paths.get(index), children);
 		}
-		try (BufferedReader bufferedReader = Files.newBufferedReader(path,
-				StandardCharsets.UTF_8)) {
-			return readContentFromReaderAsJsonString(bufferedReader);
+	}
+
+	private List<DataGroup> readChildrenFromFile(Path path) throws IOException {
+		List<DataGroup> children = new ArrayList<>();
+		try (Reader reader = openReaderForPath(path)) {
+			DataGroupJsonStreamReader streamReader = DataGroupJsonStreamReader
+					.usingReader(reader);
+			DataGroup child = streamReader.readNextChild();
+			while (null != child) {
+				children.add(child);
+				child = streamReader.readNextChild();
+			}
 		}
+		return children;
 	}
 
-	private String readContentFromReaderAsJsonString(BufferedReader bufferedReader)
+	private List<DataGroup> waitForChildrenFromFile(Future<List<DataGroup>> fileBeingRead)
 			throws IOException {
-		StringBuilder jsonBuilder = new StringBuilder();
-		String line = null;
-		while ((line = bufferedReader.readLine()) != null) {
-			jsonBuilder.append(line);
+		try {
+			return fileBeingRead.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw DataStorageException.withMessageAndException(
+					"can not read files from disk on init: " + e, e);
+		} catch (ExecutionException e) {
+			throw unwrapExceptionFromFileReader(e);
 		}
-		return jsonBuilder.toString();
 	}
 
-	private DataGroup convertJsonStringToDataGroup(String jsonRecord) {
-		JsonParser jsonParser = new OrgJsonParser();
-		JsonValue jsonValue = jsonParser.parseString(jsonRecord);
-		JsonToDataConverter jsonToDataConverter = JsonToDataConverterProvider
-				.getConverterUsingJsonObject(jsonValue);
-		DataPart dataPart = jsonToDataConverter.toInstance();
-		return (DataGroup) dataPart;
+	private IOException unwrapExceptionFromFileReader(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		throw DataStorageException.withMessageAndException(
+				"can not read files from disk on init: " + cause, e);
 	}
 
-	private final boolean fileContainsLinkLists(String fileNameTypePart) {
-		return LINK_LISTS.equals(fileNameTypePart);
+	private void storeChildrenFromFileInMemory(Path path, List<DataGroup> children) {
+		String fileNameTypePart = getTypeFromPath(path);
+		String dataDivider = getDataDividerFromPath(path);
+		ensureStorageExistsIfFileContainsRecords(fileNameTypePart);
+		for (DataGroup child : children) {
+			parseAndStoreChildInMemory(fileNameTypePart, dataDivider, child);
+		}
+	}
+
+	private final boolean fileContainsRecords(String fileNameTypePart) {
+		return !fileContainsLinkLists(fileNameTypePart)
+				&& !COLLECTED_DATA.equals(fileNameTypePart);
+	}
+
+	private Reader openReaderForPath(Path path) throws IOException {
+		InputStream inputStream = Files.newInputStream(path);
+		if (path.toString().endsWith(GZ_ENDING)) {
+			inputStream = new GZIPInputStream(inputStream, READ_BUFFER_SIZE);
+		}
+		return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8),
+				READ_BUFFER_SIZE);
 	}
 
-	private final void parseAndStoreDataLinksInMemory(String dataDivider,
-			List<DataElement> recordTypes) {
-		for (DataElement typesElement : recordTypes) {
-			parseAndStoreRecordTypeDataLinksInMemory(dataDivider, (DataGroup) typesElement);
+	private final void parseAndStoreChildInMemory(String fileNameTypePart, String dataDivider,
+			DataGroup child) {
+		if (fileContainsLinkLists(fileNameTypePart)) {
+			parseAndStoreRecordTypeDataLinksInMemory(dataDivider, child);
+		} else if (COLLECTED_DATA.equals(fileNameTypePart)) {
+			parseAndStoreCollectedStorageTermInMemory(child);
+		} else {
+			parseAndStoreRecordInMemory(fileNameTypePart, dataDivider, child);
 		}
 	}
 
+	final String getTypeFromPath(Path path) {
+		String fileName = path.getFileName().toString();
+		return fileName.substring(0, fileName.lastIndexOf('_'));
+	}
+
+	private final String getDataDividerFromPath(Path path) {
+		String fileName2 = path.getFileName().toString();
+		return fileName2.substring(fileName2.lastIndexOf('_') + 1, fileName2.indexOf('.'));
+	}
+
+	private final boolean fileContainsLinkLists(String fileNameTypePart) {
+		return LINK_LISTS.equals(fileNameTypePart);
+	}
+
 	private void parseAndStoreRecordTypeDataLinksInMemory(String dataDivider,
 			DataGroup recordType) {
 		String recordTypeName = recordType.getNameInData();
@@ -219,13 +466,6 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 		storeLinks(recordTypeName, recordId, collectedDataLinks, dataDivider);
 	}
 
-	private final void parseAndStoreCollectedStorageTermsInMemory(
-			List<DataElement> recordsFromFile) {
-		for (DataElement storageTerm : recordsFromFile) {
-			parseAndStoreCollectedStorageTermInMemory((DataGroup) storageTerm);
-		}
-	}
-
 	private void parseAndStoreCollectedStorageTermInMemory(DataGroup storageTerm) {
 		String type = storageTerm.getFirstAtomicValueWithNameInData("type");
 		String key = storageTerm.getFirstAtomicValueWithNameInData("key");
@@ -240,15 +480,6 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 		return StorageTermData.withValueAndDataDivider(value, dataDivider);
 	}
 
-	private final void parseAndStoreRecordsInMemory(String fileNameTypePart, String dataDivider,
-			List<DataElement> recordTypes) {
-		ensureStorageExistsForRecordType(fileNameTypePart);
-
-		for (DataElement dataElement : recordTypes) {
-			parseAndStoreRecordInMemory(fileNameTypePart, dataDivider, (DataGroup) dataElement);
-		}
-	}
-
 	private void parseAndStoreRecordInMemory(String fileNameTypePart, String dataDivider,
 			DataGroup record) {
 
@@ -259,62 +490,293 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 	}
 
 	@Override
-	public synchronized void create(String recordType, String recordId, DataGroup record,
+	protected void storeStoredRecordByRecordTypeAndRecordId(String recordType, String recordId,
+			DividerGroup storedRecord) {
+		possiblyRemoveRecordFromDataDividerPartition(recordType, recordId);
+		super.storeStoredRecordByRecordTypeAndRecordId(recordType, recordId, storedRecord);
+		addRecordToDataDividerPartition(recordType, recordId, storedRecord.dataDivider);
+	}
+
+	private void possiblyRemoveRecordFromDataDividerPartition(String recordType,
+			String recordId) {
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		if (null != recordsForRecordType && recordsForRecordType.containsKey(recordId)) {
+			String previousDataDivider = recordsForRecordType.get(recordId).dataDivider;
+			removeRecordFromDataDividerPartition(recordType, recordId, previousDataDivider);
+		}
+	}
+
+	private void removeRecordFromDataDividerPartition(String recordType, String recordId,
+			String dataDivider) {
+		Map<String, Set<String>> dataDividersForRecordType = recordIdsByTypeAndDataDivider
+				.get(recordType);
+		Set<String> recordIdsInDataDivider = dataDividersForRecordType.get(dataDivider);
+		recordIdsInDataDivider.remove(recordId);
+		if (recordIdsInDataDivider.isEmpty()) {
+			dataDividersForRecordType.remove(dataDivider);
+		}
+		if (dataDividersForRecordType.isEmpty()) {
+			recordIdsByTypeAndDataDivider.remove(recordType);
+		}
+	}
+
+	private void addRecordToDataDividerPartition(String recordType, String recordId,
+			String dataDivider) {
+		ensureDataDividerPartitionExists(recordType, dataDivider);
+		recordIdsByTypeAndDataDivider.get(recordType).get(dataDivider).add(recordId);
+	}
+
+	private void ensureDataDividerPartitionExists(String recordType, String dataDivider) {
+		if (!recordIdsByTypeAndDataDivider.containsKey(recordType)) {
+			recordIdsByTypeAndDataDivider.put(recordType, new ConcurrentHashMap<>());
+		}
+		Map<String, Set<String>> dataDividersForRecordType = recordIdsByTypeAndDataDivider
+				.get(recordType);
+		if (!dataDividersForRecordType.containsKey(dataDivider)) {
+			dataDividersForRecordType.put(dataDivider, ConcurrentHashMap.newKeySet());
+		}
+	}
+
+	@Override
+	public void create(String recordType, String recordId, DataGroup record,
 			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
-		super.create(recordType, recordId, record, collectedTerms, linkList, dataDivider);
-		writeDataToDisk(recordType, dataDivider);
+		ensureRecordsAreLoadedForRecordType(recordType);
+		writeLocks.lockRecordType(recordType);
+		try {
+			super.create(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+			markDataDividerAsChangedForRecordType(recordType, dataDivider);
+			writeDataToDisk(recordType);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+	}
+
+	private void markDataDividerAsChangedForRecordType(String recordType, String dataDivider) {
+		if (!changedDataDividersByRecordType.containsKey(recordType)) {
+			changedDataDividersByRecordType.put(recordType, new HashSet<>());
+		}
+		changedDataDividersByRecordType.get(recordType).add(dataDivider);
 	}
 
-	protected void writeDataToDisk(String recordType, String dataDivider) {
-		writeRecordsToDisk(recordType, dataDivider);
-		writeCollectedDataToDisk();
-		writeLinkListToDisk(dataDivider);
+	protected void writeDataToDisk(String recordType) {
+		writeChangedRecordsToDisk(recordType, false);
+		writeCollectedDataAndLinkListsToDisk();
 	}
 
-	private void writeCollectedDataToDisk() {
-		Map<String, DataGroup> collectedDataByDataDivider = collectedTermsHolder
-				.structureCollectedTermsForDisk();
-		removePreviousCollectedDataFiles();
-		if (!collectedDataByDataDivider.isEmpty()) {
-			writeCollectedDataForDataDividersToDisk(collectedDataByDataDivider);
+	public void close() {
+		// close is called both explicitly and on shutdown, only the first one closes
+		if (closing.compareAndSet(false, true)) {
+			RecordStoragesClosedOnShutdown.stopClosingOnShutdown(this);
+			writeNotWrittenChangesOnClose();
+			possiblyWriteBinarySnapshotOnClose();
 		}
 	}
 
-	private void removePreviousCollectedDataFiles() {
-		for (String dataDivider : allSeenCollectedDataFileNames) {
-			String collectedDataFileName = COLLECTED_DATA + "_" + dataDivider + JSON_FILE_END;
-			Path path = Paths.get(basePath, dataDivider, collectedDataFileName);
-			if (path.toFile().exists()) {
-				removeFileFromDisk(COLLECTED_DATA, dataDivider);
-			} else {
-				path = Paths.get(basePath, dataDivider, collectedDataFileName + GZ_ENDING);
-				if (path.toFile().exists()) {
-					removeFileFromDisk(COLLECTED_DATA, dataDivider);
-				}
+	protected void writeNotWrittenChangesOnClose() {
+		// changes are written to disk when they are made
+	}
+
+	private void possiblyWriteBinarySnapshotOnClose() {
+		// a storage loading records when used does not read the snapshot, so it is not written
+		if (!loadRecordsWhenUsed) {
+			writeBinarySnapshot();
+		}
+	}
+
+	public void writeBinarySnapshot() {
+		loadAllNotLoadedRecordTypes();
+		writeLocks.lockAllRecordTypes();
+		try {
+			writeAllChangedDataToDisk();
+			writeBinarySnapshotForDataFilesOnDisk();
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	private void writeBinarySnapshotForDataFilesOnDisk() {
+		List<Path> pathsToDataFiles;
+		try {
+			pathsToDataFiles = collectPathsToDataFilesOnDisk();
+			binarySnapshot.write(this, pathsToDataFiles);
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not write binary snapshot to disk: " + e, e);
+		}
+		writeManifestOfStoredRecordsForDataFiles(pathsToDataFiles);
+	}
+
+	protected final List<Path> collectPathsToDataFilesOnDisk() throws IOException {
+		List<Path> pathsToDataFiles = new ArrayList<>();
+		try (Stream<Path> list = Files.list(Paths.get(basePath))) {
+			collectPathsToAllFilesIncludingSubdirectoriesFromDisk(list, pathsToDataFiles);
+		}
+		return pathsToDataFiles;
+	}
+
+	protected void writeManifestOfStoredRecordsForDataFiles(List<Path> pathsToDataFiles) {
+		// only storages keeping records outside the heap write a manifest of them
+	}
+
+	protected final void writeAllChangedDataToDisk() {
+		writeChangedDataToDisk(false);
+	}
+
+	protected final void writeChangedDataToDiskRemovingOnlyExistingFiles() {
+		writeChangedDataToDisk(true);
+	}
+
+	private void writeChangedDataToDisk(boolean removeOnlyExistingFiles) {
+		for (String recordType : changedDataDividersByRecordType.keySet()) {
+			writeChangedRecordsToDiskUsingWriteLock(recordType, removeOnlyExistingFiles);
+		}
+		writeCollectedDataAndLinkListsToDisk();
+	}
+
+	private void writeChangedRecordsToDiskUsingWriteLock(String recordType,
+			boolean removeOnlyExistingFiles) {
+		writeLocks.lockRecordType(recordType);
+		try {
+			writeChangedRecordsToDisk(recordType, removeOnlyExistingFiles);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+	}
+
+	private void writeChangedRecordsToDisk(String recordType, boolean removeOnlyExistingFiles) {
+		Set<String> dataDividers = changedDataDividersByRecordType.get(recordType);
+		if (null != dataDividers) {
+			writeChangedDataDividersToDisk(recordType, dataDividers, removeOnlyExistingFiles);
+			changedDataDividersByRecordType.remove(recordType);
+		}
+	}
+
+	private void writeChangedDataDividersToDisk(String recordType, Set<String> dataDividers,
+			boolean removeOnlyExistingFiles) {
+		for (String dataDivider : dataDividers) {
+			synchronized (getDirectoryLockForDataDivider(dataDivider)) {
+				writeRecordFileInDataDividerToDisk(recordType, dataDivider,
+						removeOnlyExistingFiles);
+				writeCollectedDataAndLinkListsForDataDividerToDisk(dataDivider);
 			}
 		}
 	}
 
-	private void writeCollectedDataForDataDividersToDisk(
-			Map<String, DataGroup> collectedDataByDataDivider) {
-		for (Entry<String, DataGroup> entry : collectedDataByDataDivider.entrySet()) {
-			String dataDivider = entry.getKey();
-			Path path = Paths.get(basePath, dataDivider,
-					"collectedData_" + dataDivider + JSON_FILE_END + GZ_ENDING);
-			tryToWriteDataGroupToDiskAsJson(path, entry.getValue());
-			allSeenCollectedDataFileNames.add(dataDivider);
+	private void writeRecordFileInDataDividerToDisk(String recordType, String dataDivider,
+			boolean removeOnlyExistingFiles) {
+		Set<String> recordIdsInDataDivider = getRecordIdsForRecordTypeAndDataDivider(recordType,
+				dataDivider);
+		if (recordIdsInDataDivider.isEmpty()) {
+			removeRecordFileFromDisk(recordType, dataDivider, removeOnlyExistingFiles);
+		} else {
+			writeRecordsInDataDividerToDisk(recordType, dataDivider, recordIdsInDataDivider);
 		}
 	}
 
-	private void writeRecordsToDisk(String recordType, String dataDivider) {
-		if (recordsExistForRecordType(recordType)) {
-			writeRecordsToDiskWhereRecordTypeExists(recordType, dataDivider);
+	private Set<String> getRecordIdsForRecordTypeAndDataDivider(String recordType,
+			String dataDivider) {
+		Map<String, Set<String>> dataDividersForRecordType = recordIdsByTypeAndDataDivider
+				.get(recordType);
+		if (null == dataDividersForRecordType
+				|| !dataDividersForRecordType.containsKey(dataDivider)) {
+			return Collections.emptySet();
+		}
+		return dataDividersForRecordType.get(dataDivider);
+	}
+
+	private void removeRecordFileFromDisk(String recordType, String dataDivider,
+			boolean removeOnlyExistingFiles) {
+		if (removeOnlyExistingFiles) {
+			possiblyRemoveFileFromDisk(recordType, dataDivider);
 		} else {
 			removeFileFromDisk(recordType, dataDivider);
 		}
 	}
 
+	private void possiblyRemoveFileFromDisk(String recordType, String dataDivider) {
+		String recordTypeFileName = recordType + "_" + dataDivider + JSON_FILE_END;
+		synchronized (getDirectoryLockForDataDivider(dataDivider)) {
+			if (Files.exists(Paths.get(basePath, dataDivider, recordTypeFileName)) || Files
+					.exists(Paths.get(basePath, dataDivider, recordTypeFileName + GZ_ENDING))) {
+				removeFileFromDisk(recordType, dataDivider);
+			}
+		}
+	}
+
+	private Object getDirectoryLockForDataDivider(String dataDivider) {
+		// files for different record types share the directory, that is removed when empty
+		return directoryLocksByDataDivider.computeIfAbsent(dataDivider, key -> new Object());
+	}
+
+	private void writeRecordsInDataDividerToDisk(String recordType, String dataDivider,
+			Set<String> recordIdsInDataDivider) {
+		DataGroup recordList = DataGroupProvider.getDataGroupUsingNameInData("recordList");
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		for (String recordId : recordIdsInDataDivider) {
+			recordList.addChild(
+					getDataGroupFromStoredRecordWithoutCaching(recordsForRecordType.get(recordId)));
+		}
+		writeDataGroupToFileInDataDivider(recordType, dataDivider, recordList);
+	}
+
+	private void writeDataGroupToFileInDataDivider(String fileNameTypePart, String dataDivider,
+			DataGroup dataGroup) {
+		Path path = Paths.get(basePath, dataDivider,
+				fileNameTypePart + "_" + dataDivider + JSON_FILE_END + GZ_ENDING);
+		synchronized (getDirectoryLockForDataDivider(dataDivider)) {
+			possiblyCreateFolderForDataDivider(dataDivider);
+			tryToWriteDataGroupToDiskAsJson(path, dataGroup);
+		}
+	}
+
+	private void writeCollectedDataAndLinkListsToDisk() {
+		for (String dataDivider : getDataDividersWithChangedCollectedDataOrLinkLists()) {
+			synchronized (getDirectoryLockForDataDivider(dataDivider)) {
+				writeCollectedDataAndLinkListsForDataDividerToDisk(dataDivider);
+			}
+		}
+	}
+
+	private Set<String> getDataDividersWithChangedCollectedDataOrLinkLists() {
+		Set<String> dataDividers = collectedTermsHolder.getChangedDataDividers();
+		synchronized (linkListRecordIdsByDataDividerAndType) {
+			dataDividers.addAll(changedLinkListDataDividers);
+		}
+		return dataDividers;
+	}
+
+	private void writeCollectedDataAndLinkListsForDataDividerToDisk(String dataDivider) {
+		// the files shared by all types in a data divider are structured and written holding its
+		// directory lock, together with the record file of the written type and in the order
+		// they are structured
+		DataGroup collectedData = collectedTermsHolder
+				.structureCollectedTermsForDiskIfChanged(dataDivider);
+		if (null != collectedData) {
+			writeCollectedDataForDataDividerToDisk(dataDivider, collectedData);
+		}
+		DataGroup linkListsGroup = structureLinkListsForDiskIfChanged(dataDivider);
+		if (null != linkListsGroup) {
+			writeLinkListForDataDividerToDisk(dataDivider, linkListsGroup);
+		}
+	}
+
+	private void writeCollectedDataForDataDividerToDisk(String dataDivider,
+			DataGroup collectedData) {
+		if (collectedData.getChildren().isEmpty()) {
+			possiblyRemoveFileFromDisk(COLLECTED_DATA, dataDivider);
+		} else {
+			writeDataGroupToFileInDataDivider(COLLECTED_DATA, dataDivider, collectedData);
+		}
+	}
+
 	private void removeFileFromDisk(String recordType, String dataDivider) {
+		synchronized (getDirectoryLockForDataDivider(dataDivider)) {
+			tryToRemoveFileAndEmptyDirectoryFromDisk(recordType, dataDivider);
+		}
+	}
+
+	private void tryToRemoveFileAndEmptyDirectoryFromDisk(String recordType,
+			String dataDivider) {
 		String recordTypeFileName = recordType + "_" + dataDivider + JSON_FILE_END;
 		try {
 			Path path = Paths.get(basePath, dataDivider, recordTypeFileName);
@@ -324,6 +786,7 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 				path = Paths.get(basePath, dataDivider, recordTypeFileName + GZ_ENDING);
 				Files.delete(path);
 			}
+			fileRemovedFromDisk(path);
 			deleteDirectoryIfEmpty(dataDivider);
 		} catch (IOException e) {
 			throw DataStorageException
@@ -347,50 +810,6 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 		}
 	}
 
-	private void writeRecordsToDiskWhereRecordTypeExists(String recordType, String dataDivider) {
-		Map<String, DataGroup> recordLists = divideRecordTypeDataByDataDivider(recordType);
-		writeDividedRecordsToDisk(recordType, recordLists);
-		possiblyRemoveOldDataDividerFile(recordType, dataDivider, recordLists);
-	}
-
-	private Map<String, DataGroup> divideRecordTypeDataByDataDivider(String recordType) {
-		Map<String, DividerGroup> mapOfRecordsOfRecordType = records.get(recordType);
-		Map<String, DataGroup> mapOfRecordsByDataDivider = new HashMap<>();
-		for (Entry<String, DividerGroup> dividerEntry : mapOfRecordsOfRecordType.entrySet()) {
-			addRecordToListBasedOnDataDivider(mapOfRecordsByDataDivider, dividerEntry);
-		}
-		return mapOfRecordsByDataDivider;
-	}
-
-	private void addRecordToListBasedOnDataDivider(Map<String, DataGroup> mapOfRecordsByDataDivider,
-			Entry<String, DividerGroup> dividerEntry) {
-		DividerGroup dividerGroup = dividerEntry.getValue();
-		String currentDataDivider = dividerGroup.dataDivider;
-		DataGroup currentDataGroup = dividerGroup.dataGroup;
-		ensureListForDataDivider(mapOfRecordsByDataDivider, currentDataDivider);
-		mapOfRecordsByDataDivider.get(currentDataDivider).addChild(currentDataGroup);
-	}
-
-	private void ensureListForDataDivider(Map<String, DataGroup> recordLists,
-			String currentDataDivider) {
-		if (!recordLists.containsKey(currentDataDivider)) {
-			recordLists.put(currentDataDivider,
-					DataGroupProvider.getDataGroupUsingNameInData("recordList"));
-		}
-	}
-
-	private void writeDividedRecordsToDisk(String recordType, Map<String, DataGroup> recordLists) {
-		for (Entry<String, DataGroup> recordListEntry : recordLists.entrySet()) {
-			String dataDivider = recordListEntry.getKey();
-			DataGroup dataGroupRecord = recordListEntry.getValue();
-
-			possiblyCreateFolderForDataDivider(dataDivider);
-			Path path = Paths.get(basePath, dataDivider,
-					recordType + "_" + dataDivider + JSON_FILE_END + GZ_ENDING);
-			tryToWriteDataGroupToDiskAsJson(path, dataGroupRecord);
-		}
-	}
-
 	private void possiblyCreateFolderForDataDivider(String dataDivider) {
 		Path pathIncludingDataDivider = Paths.get(basePath, dataDivider);
 		File newPath = pathIncludingDataDivider.toFile();
@@ -404,163 +823,217 @@ public class RecordStorageOnDisk extends RecordStorageInMemory
 	}
 
 	private void tryToWriteDataGroupToDiskAsJson(Path path, DataGroup dataGroup) {
-		String json = convertDataGroupToJsonString(dataGroup);
 		try {
-			writeDataGroupToDiskAsJson(path, json);
+			writeDataGroupToDiskAsJson(path, dataGroup);
 		} catch (IOException | NullPointerException e) {
 			throw DataStorageException.withMessageAndException("can not write files to disk: " + e,
 					e);
 		}
 	}
 
-	private void writeDataGroupToDiskAsJson(Path path, String json) throws IOException {
+	private void writeDataGroupToDiskAsJson(Path path, DataGroup dataGroup) throws IOException {
+		Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_FILE_ENDING);
+		writeDataGroupAsJsonToGZippedFileOnDisk(temporaryPath, dataGroup);
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
 		possiblyRemoveOldNonZippedFile(path);
-		possiblyRemoveOldZippedFile(path);
-		writeJsonToGZippedFileOnDisk(path, json);
+		fileWrittenToDisk(path);
 	}
 
-	private void writeJsonToGZippedFileOnDisk(Path path, String json) throws IOException {
-		try (OutputStream newOutputStream = Files.newOutputStream(path, StandardOpenOption.CREATE);
-				Writer writer = new OutputStreamWriter(new GZIPOutputStream(newOutputStream),
-						StandardCharsets.UTF_8);) {
-			writer.write(json, 0, json.length());
+	private void writeDataGroupAsJsonToGZippedFileOnDisk(Path path, DataGroup dataGroup)
+			throws IOException {
+		try (OutputStream newOutputStream = Files.newOutputStream(path);
+				Writer writer = new BufferedWriter(new OutputStreamWriter(
+						new GZIPOutputStream(newOutputStream, WRITE_BUFFER_SIZE),
+						StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);) {
+			DataGroupJsonStreamWriter.usingWriter(writer).writeDataGroup(dataGroup);
 			writer.flush();
 		}
 	}
 
-	private void possiblyRemoveOldZippedFile(Path path) throws IOException {
-		if (path.toFile().exists()) {
-			Files.delete(path);
-		}
+	protected void fileWrittenToDisk(Path path) {
+		// files are only forced to disk by storages that write changes later
+	}
+
+	protected void fileRemovedFromDisk(Path path) {
+		// directories are only forced to disk by storages that write changes later
 	}
 
 	private void possiblyRemoveOldNonZippedFile(Path path) throws IOException {
 		String pathWithoutGZ = path.toString().substring(0,
 				path.toString().length() - FILE_EXTENSION_LENGTH);
 		Path oldFileName = Paths.get(pathWithoutGZ);
-		possiblyRemoveOldZippedFile(oldFileName);
-	}
-
-	private String convertDataGroupToJsonString(DataGroup dataGroup) {
-		DataToJsonConverter dataToJsonConverter = createDataGroupToJsonConvert(dataGroup);
-		return dataToJsonConverter.toJson();
-	}
-
-	private DataToJsonConverter createDataGroupToJsonConvert(DataGroup dataGroup) {
-		return DataToJsonConverterProvider.getConverterUsingDataPart(dataGroup);
+		if (oldFileName.toFile().exists()) {
+			Files.delete(oldFileName);
+		}
 	}
 
-	private void possiblyRemoveOldDataDividerFile(String recordType, String dataDivider,
-			Map<String, DataGroup> recordLists) {
-		if (!recordLists.containsKey(dataDivider)) {
-			removeFileFromDisk(recordType, dataDivider);
+	@Override
+	protected void storeLinks(String recordType, String recordId, DataGroup linkList,
+			String dataDivider) {
+		synchronized (linkListRecordIdsByDataDividerAndType) {
+			DividerGroup previousLinkList = getStoredLinkListOrNull(recordType, recordId);
+			super.storeLinks(recordType, recordId, linkList, dataDivider);
+			if (null != previousLinkList) {
+				removeLinkListFromDataDivider(recordType, recordId, previousLinkList.dataDivider);
+			}
+			if (!linkList.getChildren().isEmpty()) {
+				addLinkListToDataDivider(recordType, recordId, dataDivider);
+			}
+			possiblyMarkLinkListsAsChanged(previousLinkList, linkList, dataDivider);
 		}
 	}
 
-	private void writeLinkListToDisk(String dataDivider) {
-		Map<String, DataGroup> linkListsGroups = new HashMap<>();
-		divideLinkListsByDataDivider(linkListsGroups);
-		writeDividedLinkListsToDisk(linkListsGroups);
-		possiblyRemoveOldDataDividerLinkListFile(dataDivider, linkListsGroups);
+	private void removeLinkListFromDataDivider(String recordType, String recordId,
+			String dataDivider) {
+		Map<String, Set<String>> recordIdsByRecordType = linkListRecordIdsByDataDividerAndType
+				.get(dataDivider);
+		Set<String> recordIds = recordIdsByRecordType.get(recordType);
+		recordIds.remove(recordId);
+		if (recordIds.isEmpty()) {
+			recordIdsByRecordType.remove(recordType);
+		}
 	}
 
-	private void divideLinkListsByDataDivider(Map<String, DataGroup> linkListsGroups) {
-		for (Entry<String, Map<String, DividerGroup>> recordType : linkLists.entrySet()) {
-			addLinkListsForRecordTypeBasedOnDataDivider(linkListsGroups, recordType);
+	private void addLinkListToDataDivider(String recordType, String recordId,
+			String dataDivider) {
+		if (!linkListRecordIdsByDataDividerAndType.containsKey(dataDivider)) {
+			linkListRecordIdsByDataDividerAndType.put(dataDivider, new HashMap<>());
+		}
+		Map<String, Set<String>> recordIdsByRecordType = linkListRecordIdsByDataDividerAndType
+				.get(dataDivider);
+		if (!recordIdsByRecordType.containsKey(recordType)) {
+			recordIdsByRecordType.put(recordType, new HashSet<>());
 		}
+		recordIdsByRecordType.get(recordType).add(recordId);
 	}
 
-	private void addLinkListsForRecordTypeBasedOnDataDivider(Map<String, DataGroup> linkListsGroups,
-			Entry<String, Map<String, DividerGroup>> recordType) {
-		Map<String, DividerGroup> recordGroupMap = recordType.getValue();
-		for (Entry<String, DividerGroup> recordEntry : recordGroupMap.entrySet()) {
-			addLinkListsForRecordToListBasedOnDataDivider(linkListsGroups, recordType, recordEntry);
+	private void possiblyMarkLinkListsAsChanged(DividerGroup previousLinkList,
+			DataGroup linkList, String dataDivider) {
+		if (null == previousLinkList) {
+			if (!linkList.getChildren().isEmpty()) {
+				changedLinkListDataDividers.add(dataDivider);
+			}
+		} else if (linkListHasChanged(previousLinkList, linkList, dataDivider)) {
+			changedLinkListDataDividers.add(previousLinkList.dataDivider);
+			changedLinkListDataDividers.add(dataDivider);
 		}
 	}
 
-	private void addLinkListsForRecordToListBasedOnDataDivider(
-			Map<String, DataGroup> linkListsGroups,
-			Entry<String, Map<String, DividerGroup>> recordType,
-			Entry<String, DividerGroup> recordEntry) {
-		DividerGroup dataDividerGroup = recordEntry.getValue();
-		String currentDataDivider = dataDividerGroup.dataDivider;
-		ensureLinkListForDataDivider(linkListsGroups, currentDataDivider);
-		ensureLinkListForRecordType(linkListsGroups, recordType, currentDataDivider);
-
-		DataGroup recordTypeChild = (DataGroup) linkListsGroups.get(currentDataDivider)
-				.getFirstChildWithNameInData(recordType.getKey());
-		addLinkListsForRecord(recordEntry, dataDividerGroup, recordTypeChild);
+	private boolean linkListHasChanged(DividerGroup previousLinkList, DataGroup linkList,
+			String dataDivider) {
+		if (!previousLinkList.dataDivider.equals(dataDivider)) {
+			return true;
+		}
+		return !DataGroupComparer.dataGroupsAreEqual(previousLinkList.dataGroup, linkList);
 	}
 
-	private void ensureLinkListForDataDivider(Map<String, DataGroup> linkListsGroups,
-			String currentDataDivider) {
-		if (!linkListsGroups.containsKey(currentDataDivider)) {
-			linkListsGroups.put(currentDataDivider,
-					DataGroupProvider.getDataGroupUsingNameInData(LINK_LISTS));
+	private void removeLinkListsFromDataDividerMarkingAsChanged(String recordType,
+			String recordId) {
+		synchronized (linkListRecordIdsByDataDividerAndType) {
+			DividerGroup previousLinkList = getStoredLinkListOrNull(recordType, recordId);
+			if (null != previousLinkList) {
+				removeLinkListFromDataDivider(recordType, recordId, previousLinkList.dataDivider);
+				changedLinkListDataDividers.add(previousLinkList.dataDivider);
+			}
 		}
 	}
 
-	private void ensureLinkListForRecordType(Map<String, DataGroup> linkListsGroups,
-			Entry<String, Map<String, DividerGroup>> recordType, String currentDataDivider) {
-		if (!linkListsGroups.get(currentDataDivider)
-				.containsChildWithNameInData(recordType.getKey())) {
-			DataGroup recordTypeGroup = DataGroupProvider
-					.getDataGroupUsingNameInData(recordType.getKey());
-			linkListsGroups.get(currentDataDivider).addChild(recordTypeGroup);
+	private DataGroup structureLinkListsForDiskIfChanged(String dataDivider) {
+		synchronized (linkListRecordIdsByDataDividerAndType) {
+			if (changedLinkListDataDividers.remove(dataDivider)) {
+				return structureLinkListsForDataDivider(dataDivider);
+			}
+			return null;
 		}
 	}
 
-	private void addLinkListsForRecord(Entry<String, DividerGroup> recordEntry,
-			DividerGroup dataDividerGroup, DataGroup recordTypeChild) {
-		DataGroup recordIdGroup = DataGroupProvider
-				.getDataGroupUsingNameInData(recordEntry.getKey());
-		recordIdGroup.addChild(dataDividerGroup.dataGroup);
+	private DataGroup structureLinkListsForDataDivider(String dataDivider) {
+		Map<String, Set<String>> recordIdsByRecordType = linkListRecordIdsByDataDividerAndType
+				.getOrDefault(dataDivider, Collections.emptyMap());
+		return createLinkListsForDataDivider(recordIdsByRecordType);
+	}
 
-		recordTypeChild.addChild(recordIdGroup);
+	private void writeLinkListForDataDividerToDisk(String dataDivider,
+			DataGroup linkListsGroup) {
+		if (linkListsGroup.getChildren().isEmpty()) {
+			possiblyRemoveFileFromDisk(LINK_LISTS, dataDivider);
+		} else {
+			writeDataGroupToFileInDataDivider(LINK_LISTS, dataDivider, linkListsGroup);
+		}
 	}
 
-	private void writeDividedLinkListsToDisk(Map<String, DataGroup> linkListsGroups) {
-		for (Entry<String, DataGroup> recordListEntry : linkListsGroups.entrySet()) {
-			String dataDivider = recordListEntry.getKey();
-			Path path = Paths.get(basePath, dataDivider,
-					"linkLists_" + dataDivider + JSON_FILE_END + GZ_ENDING);
-			tryToWriteDataGroupToDiskAsJson(path, recordListEntry.getValue());
+	private DataGroup createLinkListsForDataDivider(
+			Map<String, Set<String>> recordIdsByRecordType) {
+		DataGroup linkListsGroup = DataGroupProvider.getDataGroupUsingNameInData(LINK_LISTS);
+		for (Entry<String, Set<String>> entry : recordIdsByRecordType.entrySet()) {
+			linkListsGroup.addChild(createLinkListsForRecordType(entry.getKey(), entry.getValue()));
 		}
+		return linkListsGroup;
 	}
 
-	private void possiblyRemoveOldDataDividerLinkListFile(String dataDivider,
-			Map<String, DataGroup> linkListsGroups) {
-		if (!linkListsGroups.containsKey(dataDivider)) {
-			String linkListFileName = "linkLists_" + dataDivider + JSON_FILE_END;
-			Path path = Paths.get(basePath, dataDivider, linkListFileName);
-			if (path.toFile().exists()) {
-				removeFileFromDisk(LINK_LISTS, dataDivider);
-			} else {
-				path = Paths.get(basePath, dataDivider, linkListFileName + GZ_ENDING);
-				if (path.toFile().exists()) {
-					removeFileFromDisk(LINK_LISTS, dataDivider);
-				}
-			}
+	private DataGroup createLinkListsForRecordType(String recordType, Set<String> recordIds) {
+		DataGroup recordTypeGroup = DataGroupProvider.getDataGroupUsingNameInData(recordType);
+		Map<String, DividerGroup> linkListsForRecordType = linkLists.get(recordType);
+		for (String recordId : recordIds) {
+			DataGroup recordIdGroup = DataGroupProvider.getDataGroupUsingNameInData(recordId);
+			recordIdGroup.addChild(linkListsForRecordType.get(recordId).dataGroup);
+			recordTypeGroup.addChild(recordIdGroup);
 		}
+		return recordTypeGroup;
 	}
 
 	@Override
-	public synchronized void update(String recordType, String recordId, DataGroup record,
+	public void update(String recordType, String recordId, DataGroup record,
 			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
-		String previousDataDivider = records.get(recordType).get(recordId).dataDivider;
-		super.update(recordType, recordId, record, collectedTerms, linkList, dataDivider);
-		writeDataToDisk(recordType, previousDataDivider);
+		ensureRecordsAreLoadedForRecordType(recordType);
+		writeLocks.lockRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			String previousDataDivider = records.get(recordType).get(recordId).dataDivider;
+			super.update(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+			markDataDividerAsChangedForRecordType(recordType, previousDataDivider);
+			markDataDividerAsChangedForRecordType(recordType, dataDivider);
+			writeDataToDisk(recordType);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
 	}
 
 	@Override
-	public synchronized void deleteByTypeAndId(String recordType, String recordId) {
-		String previousDataDivider = records.get(recordType).get(recordId).dataDivider;
-		super.deleteByTypeAndId(recordType, recordId);
-		writeDataToDisk(recordType, previousDataDivider);
+	public void deleteByTypeAndId(String recordType, String recordId) {
+		ensureRecordsAreLoadedForRecordType(recordType);
+		writeLocks.lockRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			String previousDataDivider = records.get(recordType).get(recordId).dataDivider;
+			removeLinkListsFromDataDividerMarkingAsChanged(recordType, recordId);
+			super.deleteByTypeAndId(recordType, recordId);
+			removeRecordFromDataDividerPartition(recordType, recordId, previousDataDivider);
+			markDataDividerAsChangedForRecordType(recordType, previousDataDivider);
+			writeDataToDisk(recordType);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
 	}
 
 	public String getBasePath() {
 		// needed for test
 		return basePath;
 	}
+
+	boolean isLoadingRecordsWhenUsed() {
+		// needed for test
+		return loadRecordsWhenUsed;
+	}
+
+	boolean isReadFromBinarySnapshot() {
+		// needed for test
+		return readFromBinarySnapshot;
+	}
+
+	Set<String> getNotLoadedRecordTypes() {
+		// needed for test
+		return pathsToNotLoadedRecordFilesByRecordType.keySet();
+	}
 }
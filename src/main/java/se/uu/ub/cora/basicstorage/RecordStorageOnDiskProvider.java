@@ -18,6 +18,8 @@
  */
 package se.uu.ub.cora.basicstorage;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import se.uu.ub.cora.logger.Logger;
@@ -28,6 +30,14 @@ import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.RecordStorageProvider;
 
 public class RecordStorageOnDiskProvider implements RecordStorageProvider, MetadataStorageProvider {
+	private static final String STORAGE_DURABILITY = "storageDurability";
+	private static final String STORAGE_LOADING = "storageLoading";
+	private static final String STORAGE_ENTERED_DATA = "storageEnteredData";
+	private static final String STORAGE_RECORD_FORM = "storageRecordForm";
+	private static final String STORAGE_TYPE = "storageType";
+	private static final String MAPPED = "mapped";
+	private static final String COMPACT = "compact";
+	private static final String WHEN_USED = "whenUsed";
 	private Logger log = LoggerProvider.getLoggerForClass(RecordStorageOnDiskProvider.class);
 	private Map<String, String> initInfo;
 
@@ -57,13 +67,124 @@ public class RecordStorageOnDiskProvider implements RecordStorageProvider, Metad
 	}
 
 	private void startNewRecordStorageOnDiskInstance() {
+		RecordStorageOnDisk recordStorage = createRecordStorageOnDisk();
+		possiblyTakeOverEnteredData(recordStorage);
+		RecordStoragesClosedOnShutdown.closeOnShutdown(recordStorage);
+		setStaticInstance(recordStorage);
+	}
+
+	private RecordStorageOnDisk createRecordStorageOnDisk() {
 		String basePath = tryToGetInitParameter("storageOnDiskBasePath");
-		String type = tryToGetInitParameter("storageType");
+		String type = tryToGetInitParameter(STORAGE_TYPE);
+		throwErrorIfMoreThanOneStorageVariantIsChosen(type);
 		if ("memory".equals(type)) {
-			setStaticInstance(RecordStorageInMemoryReadFromDisk
-					.createRecordStorageOnDiskWithBasePath(basePath));
+			return RecordStorageInMemoryReadFromDisk
+					.createRecordStorageOnDiskWithBasePath(basePath);
+		}
+		if ("journal".equals(type)) {
+			return RecordStorageOnDiskWithJournal.createRecordStorageOnDiskWithBasePath(basePath);
+		}
+		if (MAPPED.equals(type)) {
+			return RecordStorageOnDiskWithMappedRecords
+					.createRecordStorageOnDiskWithBasePathAndNoOfCachedRecords(basePath,
+							getNoOfCachedRecords());
+		}
+		if (initInfo.containsKey(STORAGE_DURABILITY)) {
+			return createRecordStorageOnDiskUsingDurability(basePath);
+		}
+		return createRecordStorageOnDiskUsingLoading(basePath);
+	}
+
+	private void throwErrorIfMoreThanOneStorageVariantIsChosen(String type) {
+		List<String> chosenVariants = getChosenStorageVariants(type);
+		if (chosenVariants.size() > 1) {
+			String errorMessage = "Storage options can not be combined: "
+					+ String.join(", ", chosenVariants);
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessage(errorMessage);
+		}
+	}
+
+	private List<String> getChosenStorageVariants(String type) {
+		List<String> chosenVariants = new ArrayList<>();
+		if ("memory".equals(type) || "journal".equals(type) || MAPPED.equals(type)) {
+			chosenVariants.add(STORAGE_TYPE + " " + type);
+		}
+		possiblyAddChosenVariant(chosenVariants, STORAGE_DURABILITY,
+				!"synchronous".equals(initInfo.get(STORAGE_DURABILITY)));
+		possiblyAddChosenVariant(chosenVariants, STORAGE_LOADING,
+				WHEN_USED.equals(initInfo.get(STORAGE_LOADING)));
+		possiblyAddChosenVariant(chosenVariants, STORAGE_RECORD_FORM,
+				COMPACT.equals(initInfo.get(STORAGE_RECORD_FORM)) && !MAPPED.equals(type));
+		return chosenVariants;
+	}
+
+	private void possiblyAddChosenVariant(List<String> chosenVariants, String parameterName,
+			boolean variantIsChosen) {
+		if (initInfo.containsKey(parameterName) && variantIsChosen) {
+			chosenVariants.add(parameterName + " " + initInfo.get(parameterName));
+		}
+	}
+
+	private RecordStorageOnDisk createRecordStorageOnDiskUsingDurability(String basePath) {
+		String durability = tryToGetInitParameter(STORAGE_DURABILITY);
+		if ("synchronous".equals(durability)) {
+			return createRecordStorageOnDiskUsingLoading(basePath);
+		} else if ("interval".equals(durability)) {
+			long flushInterval = getFlushIntervalInMilliseconds();
+			return RecordStorageOnDiskWithWriteBehind
+					.createRecordStorageOnDiskWithBasePathAndFlushInterval(basePath,
+							flushInterval);
+		} else if ("onShutdown".equals(durability)) {
+			return RecordStorageOnDiskWithWriteBehind
+					.createRecordStorageOnDiskWithBasePathFlushingOnClose(basePath);
 		} else {
-			setStaticInstance(RecordStorageOnDisk.createRecordStorageOnDiskWithBasePath(basePath));
+			String errorMessage = "Unknown " + STORAGE_DURABILITY + ": " + durability;
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessage(errorMessage);
+		}
+	}
+
+	private RecordStorageOnDisk createRecordStorageOnDiskUsingLoading(String basePath) {
+		if (initInfo.containsKey(STORAGE_LOADING)
+				&& WHEN_USED.equals(tryToGetInitParameter(STORAGE_LOADING))) {
+			return RecordStorageOnDisk
+					.createRecordStorageOnDiskWithBasePathLoadingRecordsWhenUsed(basePath);
+		}
+		if (initInfo.containsKey(STORAGE_RECORD_FORM)
+				&& COMPACT.equals(tryToGetInitParameter(STORAGE_RECORD_FORM))) {
+			return RecordStorageOnDisk.createRecordStorageOnDiskWithBasePathKeepingRecordsCompact(
+					basePath, getNoOfCachedRecords());
+		}
+		return RecordStorageOnDisk.createRecordStorageOnDiskWithBasePath(basePath);
+	}
+
+	private int getNoOfCachedRecords() {
+		String noOfCachedRecords = tryToGetInitParameter("storageNoOfCachedRecords");
+		try {
+			return Integer.parseInt(noOfCachedRecords);
+		} catch (NumberFormatException e) {
+			String errorMessage = "storageNoOfCachedRecords must be a number";
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessageAndException(errorMessage, e);
+		}
+	}
+
+	private void possiblyTakeOverEnteredData(RecordStorageOnDisk recordStorage) {
+		if (initInfo.containsKey(STORAGE_ENTERED_DATA)
+				&& "takeOver".equals(tryToGetInitParameter(STORAGE_ENTERED_DATA))) {
+			recordStorage.takeOverEnteredDataInsteadOfCopying();
+		}
+	}
+
+	private long getFlushIntervalInMilliseconds() {
+		String flushInterval = tryToGetInitParameter("storageFlushIntervalInMilliseconds");
+		try {
+			return Long.parseLong(flushInterval);
+		} catch (NumberFormatException e) {
+			String errorMessage = "storageFlushIntervalInMilliseconds must be a number";
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessageAndException(errorMessage, e);
 		}
 	}
 
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.storage.MetadataStorage;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public final class RecordStorageOnDiskWithJournal extends RecordStorageOnDisk
+		implements RecordStorage, MetadataStorage {
+	private static final int NO_OF_JOURNAL_ENTRIES_BEFORE_SNAPSHOT = 1000;
+	private static final String JOURNAL_ENTRY = "journalEntry";
+	private static final String OPERATION = "operation";
+	private static final String CREATE = "create";
+	private static final String UPDATE = "update";
+	private static final String DELETE = "delete";
+	private static final String TYPE = "type";
+	private static final String ID = "id";
+	private static final String DATA_DIVIDER = "dataDivider";
+	private static final String RECORD = "record";
+	private static final String COLLECTED_TERMS = "collectedTerms";
+	private static final String LINK_LIST = "linkList";
+	private RecordStorageJournal journal;
+	private FilesToForceToDisk filesToForceToDisk;
+
+	public static RecordStorageOnDiskWithJournal createRecordStorageOnDiskWithBasePath(
+			String basePath) {
+		return new RecordStorageOnDiskWithJournal(basePath);
+	}
+
+	private RecordStorageOnDiskWithJournal(String basePath) {
+		super(basePath);
+		filesToForceToDisk = FilesToForceToDisk.usingBasePath(basePath);
+		journal = RecordStorageJournal.usingBasePath(basePath);
+		replayJournal();
+	}
+
+	private void replayJournal() {
+		List<DataGroup> entries = journal.readEntries();
+		for (DataGroup entry : entries) {
+			replayEntry(entry);
+		}
+		if (!entries.isEmpty()) {
+			writeBinarySnapshot();
+		}
+	}
+
+	private void replayEntry(DataGroup entry) {
+		String operation = entry.getFirstAtomicValueWithNameInData(OPERATION);
+		String recordType = entry.getFirstAtomicValueWithNameInData(TYPE);
+		String recordId = entry.getFirstAtomicValueWithNameInData(ID);
+		if (DELETE.equals(operation)) {
+			replayDelete(recordType, recordId);
+		} else {
+			replayCreateOrUpdate(entry, recordType, recordId);
+		}
+	}
+
+	private void replayDelete(String recordType, String recordId) {
+		if (recordExistsInMemory(recordType, recordId)) {
+			super.deleteByTypeAndId(recordType, recordId);
+		}
+	}
+
+	private boolean recordExistsInMemory(String recordType, String recordId) {
+		return recordsExistForRecordType(recordType)
+				&& records.get(recordType).containsKey(recordId);
+	}
+
+	private void replayCreateOrUpdate(DataGroup entry, String recordType, String recordId) {
+		String dataDivider = entry.getFirstAtomicValueWithNameInData(DATA_DIVIDER);
+		DataGroup record = extractWrappedDataGroup(entry, RECORD);
+		DataGroup collectedTerms = extractWrappedDataGroup(entry, COLLECTED_TERMS);
+		DataGroup linkList = extractWrappedDataGroup(entry, LINK_LIST);
+		if (recordExistsInMemory(recordType, recordId)) {
+			super.update(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		} else {
+			super.create(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		}
+	}
+
+	private DataGroup extractWrappedDataGroup(DataGroup entry, String nameInData) {
+		DataGroup wrapper = entry.getFirstGroupWithNameInData(nameInData);
+		return (DataGroup) wrapper.getChildren().get(0);
+	}
+
+	@Override
+	public void create(String recordType, String recordId, DataGroup record,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		// writes to different record types wait for the journal together, sharing one force
+		writeLocks.lockRecordType(recordType);
+		try {
+			checkNoConflictOnRecordId(recordType, recordId);
+			journal.appendEntry(createJournalEntryForCreateOrUpdate(CREATE, recordType,
+					recordId, record, collectedTerms, linkList, dataDivider));
+			super.create(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+		possiblyWriteSnapshot();
+	}
+
+	private DataGroup createJournalEntryForCreateOrUpdate(String operation, String recordType,
+			String recordId, DataGroup record, DataGroup collectedTerms, DataGroup linkList,
+			String dataDivider) {
+		DataGroup entry = createJournalEntry(operation, recordType, recordId);
+		entry.addChild(
+				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(DATA_DIVIDER, dataDivider));
+		entry.addChild(wrapDataGroup(RECORD, record));
+		entry.addChild(wrapDataGroup(COLLECTED_TERMS, collectedTerms));
+		entry.addChild(wrapDataGroup(LINK_LIST, linkList));
+		return entry;
+	}
+
+	private DataGroup createJournalEntry(String operation, String recordType, String recordId) {
+		DataGroup entry = DataGroupProvider.getDataGroupUsingNameInData(JOURNAL_ENTRY);
+		entry.addChild(
+				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(OPERATION, operation));
+		entry.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(TYPE, recordType));
+		entry.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(ID, recordId));
+		return entry;
+	}
+
+	private DataGroup wrapDataGroup(String nameInData, DataGroup dataGroup) {
+		DataGroup wrapper = DataGroupProvider.getDataGroupUsingNameInData(nameInData);
+		wrapper.addChild(dataGroup);
+		return wrapper;
+	}
+
+	private void possiblyWriteSnapshot() {
+		if (journalIsFull()) {
+			writeSnapshotIfJournalIsFull();
+		}
+	}
+
+	private boolean journalIsFull() {
+		return journal.getNoOfEntries() >= NO_OF_JOURNAL_ENTRIES_BEFORE_SNAPSHOT;
+	}
+
+	private void writeSnapshotIfJournalIsFull() {
+		writeLocks.lockAllRecordTypes();
+		try {
+			if (journalIsFull()) {
+				// the binary snapshot is written with the data files, for a fast next start
+				writeBinarySnapshot();
+			}
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	public void writeSnapshot() {
+		// no write is between its journal entry and its change in memory while all are locked
+		writeLocks.lockAllRecordTypes();
+		try {
+			writeChangedDataToDiskRemovingOnlyExistingFiles();
+			filesToForceToDisk.forceToDisk();
+			journal.clear();
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	@Override
+	protected void fileWrittenToDisk(Path path) {
+		filesToForceToDisk.addWrittenFile(path);
+	}
+
+	@Override
+	protected void fileRemovedFromDisk(Path path) {
+		filesToForceToDisk.addRemovedFile(path);
+	}
+
+	@Override
+	protected void writeDataToDisk(String recordType) {
+		// changes are written to the journal, and to the data files when a snapshot is written
+	}
+
+	@Override
+	public void writeBinarySnapshot() {
+		writeLocks.lockAllRecordTypes();
+		try {
+			writeSnapshot();
+			super.writeBinarySnapshot();
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	@Override
+	public void update(String recordType, String recordId, DataGroup record,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		writeLocks.lockRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			journal.appendEntry(createJournalEntryForCreateOrUpdate(UPDATE, recordType,
+					recordId, record, collectedTerms, linkList, dataDivider));
+			super.update(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+		possiblyWriteSnapshot();
+	}
+
+	@Override
+	public void deleteByTypeAndId(String recordType, String recordId) {
+		writeLocks.lockRecordType(recordType);
+		try {
+			checkRecordExists(recordType, recordId);
+			journal.appendEntry(createJournalEntry(DELETE, recordType, recordId));
+			super.deleteByTypeAndId(recordType, recordId);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+		possiblyWriteSnapshot();
+	}
+
+	int getNoOfJournalEntries() {
+		// needed for test
+		return journal.getNoOfEntries();
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.MetadataStorage;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public final class RecordStorageOnDiskWithMappedRecords extends RecordStorageOnDisk
+		implements RecordStorage, MetadataStorage {
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	private final MappedRecordSegments recordSegments;
+
+	public static RecordStorageOnDiskWithMappedRecords createRecordStorageOnDiskWithBasePathAndNoOfCachedRecords(
+			String basePath, int noOfCachedRecords) {
+		return new RecordStorageOnDiskWithMappedRecords(basePath, noOfCachedRecords,
+				SEGMENT_SIZE);
+	}
+
+	static RecordStorageOnDiskWithMappedRecords createRecordStorageOnDiskWithBasePathAndNoOfCachedRecordsAndSegmentSize(
+			String basePath, int noOfCachedRecords, int segmentSize) {
+		// needed for test
+		return new RecordStorageOnDiskWithMappedRecords(basePath, noOfCachedRecords,
+				segmentSize);
+	}
+
+	private RecordStorageOnDiskWithMappedRecords(String basePath, int noOfCachedRecords,
+			int segmentSize) {
+		super(basePath, noOfCachedRecords);
+		recordSegments = MappedRecordSegments.usingBasePathAndSegmentSize(basePath,
+				segmentSize);
+		tryToReadStoredDataFromDisk();
+	}
+
+	@Override
+	protected Set<String> reopenStoredRecordsForDataFiles(List<Path> pathsToDataFiles) {
+		return recordSegments.reopenIntoStorageIfUpToDateWithDataFiles(this, pathsToDataFiles);
+	}
+
+	@Override
+	protected void clearStoredData() {
+		super.clearStoredData();
+		recordSegments.noRecordsAreInUse();
+	}
+
+	@Override
+	protected DividerGroup createCompactStoredRecord(String dataDivider,
+			byte[] compactDataGroup) {
+		return recordSegments.append(dataDivider, compactDataGroup);
+	}
+
+	@Override
+	protected byte[] readCompactDataGroup(DividerGroup storedRecord) {
+		return recordSegments.read(storedRecord);
+	}
+
+	@Override
+	protected void storeStoredRecordByRecordTypeAndRecordId(String recordType, String recordId,
+			DividerGroup storedRecord) {
+		DividerGroup previousStoredRecord = getStoredRecordOrNull(recordType, recordId);
+		super.storeStoredRecordByRecordTypeAndRecordId(recordType, recordId, storedRecord);
+		possiblyMarkAsNoLongerInUse(previousStoredRecord);
+	}
+
+	private DividerGroup getStoredRecordOrNull(String recordType, String recordId) {
+		Map<String, DividerGroup> recordsForRecordType = records.get(recordType);
+		if (null == recordsForRecordType) {
+			return null;
+		}
+		return recordsForRecordType.get(recordId);
+	}
+
+	private void possiblyMarkAsNoLongerInUse(DividerGroup storedRecord) {
+		if (null != storedRecord && DividerGroup.NOT_MAPPED != storedRecord.mappedPosition) {
+			recordSegments.recordIsNoLongerInUse(storedRecord);
+		}
+	}
+
+	@Override
+	public void create(String recordType, String recordId, DataGroup record,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		super.create(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		possiblyCompactSegmentsOrWriteManifest();
+	}
+
+	@Override
+	public void update(String recordType, String recordId, DataGroup record,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		super.update(recordType, recordId, record, collectedTerms, linkList, dataDivider);
+		possiblyCompactSegmentsOrWriteManifest();
+	}
+
+	@Override
+	public void deleteByTypeAndId(String recordType, String recordId) {
+		deleteUsingWriteLock(recordType, recordId);
+		possiblyCompactSegmentsOrWriteManifest();
+	}
+
+	private void deleteUsingWriteLock(String recordType, String recordId) {
+		writeLocks.lockRecordType(recordType);
+		try {
+			DividerGroup storedRecord = getStoredRecordOrNull(recordType, recordId);
+			super.deleteByTypeAndId(recordType, recordId);
+			possiblyMarkAsNoLongerInUse(storedRecord);
+		} finally {
+			writeLocks.unlockRecordType(recordType);
+		}
+	}
+
+	private void possiblyCompactSegmentsOrWriteManifest() {
+		// called without holding any write lock, as both take the write locks for all types
+		if (recordSegments.shouldBeCompacted()) {
+			compactSegmentsUsingAllWriteLocks();
+		} else if (recordSegments.segmentIsSealedSinceManifest()) {
+			writeManifestUsingAllWriteLocks();
+		}
+	}
+
+	private void compactSegmentsUsingAllWriteLocks() {
+		writeLocks.lockAllRecordTypes();
+		try {
+			possiblyCompactSegments();
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	private void possiblyCompactSegments() {
+		if (recordSegments.shouldBeCompacted()) {
+			Set<Integer> compactedSegments = recordSegments.startCompaction();
+			moveMappedRecordsToNewSegments();
+			recordSegments.stopUsingSegments(compactedSegments);
+			writeManifest();
+			recordSegments.removeSegments(compactedSegments);
+		}
+	}
+
+	private void moveMappedRecordsToNewSegments() {
+		for (Map<String, DividerGroup> recordsForRecordType : records.values()) {
+			for (Entry<String, DividerGroup> recordEntry : recordsForRecordType.entrySet()) {
+				DividerGroup storedRecord = recordEntry.getValue();
+				if (DividerGroup.NOT_MAPPED != storedRecord.mappedPosition) {
+					recordsForRecordType.put(recordEntry.getKey(),
+							recordSegments.moveToNewSegment(storedRecord));
+				}
+			}
+		}
+	}
+
+	private void writeManifestUsingAllWriteLocks() {
+		writeLocks.lockAllRecordTypes();
+		try {
+			if (recordSegments.segmentIsSealedSinceManifest()) {
+				writeManifest();
+			}
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	private void writeManifest() {
+		writeAllChangedDataToDisk();
+		try {
+			writeManifestOfStoredRecordsForDataFiles(collectPathsToDataFilesOnDisk());
+		} catch (IOException e) {
+			throw DataStorageException
+					.withMessageAndException("can not write record segments manifest: " + e, e);
+		}
+	}
+
+	@Override
+	protected void writeManifestOfStoredRecordsForDataFiles(List<Path> pathsToDataFiles) {
+		recordSegments.writeManifestForRecordsAndDataFiles(records, pathsToDataFiles);
+	}
+
+	MappedRecordSegments getRecordSegments() {
+		// needed for test
+		return recordSegments;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.MetadataStorage;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public final class RecordStorageOnDiskWithWriteBehind extends RecordStorageOnDisk
+		implements RecordStorage, MetadataStorage {
+	private static final String FLUSHER_THREAD_NAME = "recordStorageOnDiskFlusher";
+	private static final long SECONDS_TO_WAIT_FOR_FLUSHER_ON_CLOSE = 60;
+	private ScheduledExecutorService flusher;
+	private volatile boolean closed = false;
+	private final FilesToForceToDisk filesToForceToDisk;
+
+	public static RecordStorageOnDiskWithWriteBehind createRecordStorageOnDiskWithBasePathAndFlushInterval(
+			String basePath, long flushIntervalInMilliseconds) {
+		RecordStorageOnDiskWithWriteBehind recordStorage = new RecordStorageOnDiskWithWriteBehind(
+				basePath);
+		recordStorage.startFlusherUsingInterval(flushIntervalInMilliseconds);
+		return recordStorage;
+	}
+
+	public static RecordStorageOnDiskWithWriteBehind createRecordStorageOnDiskWithBasePathFlushingOnClose(
+			String basePath) {
+		return new RecordStorageOnDiskWithWriteBehind(basePath);
+	}
+
+	private RecordStorageOnDiskWithWriteBehind(String basePath) {
+		super(basePath);
+		filesToForceToDisk = FilesToForceToDisk.usingBasePath(basePath);
+		RecordStoragesClosedOnShutdown.closeOnShutdown(this);
+	}
+
+	private void startFlusherUsingInterval(long flushIntervalInMilliseconds) {
+		flusher = Executors.newSingleThreadScheduledExecutor(this::createFlusherThread);
+		flusher.scheduleWithFixedDelay(this::tryToFlush, flushIntervalInMilliseconds,
+				flushIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+	}
+
+	private Thread createFlusherThread(Runnable runnable) {
+		Thread flusherThread = new Thread(runnable, FLUSHER_THREAD_NAME);
+		flusherThread.setDaemon(true);
+		return flusherThread;
+	}
+
+	private void tryToFlush() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			// the changes are kept and written on the next flush
+			LoggerProvider.getLoggerForClass(RecordStorageOnDiskWithWriteBehind.class)
+					.logErrorUsingMessageAndException("can not flush changes to disk", e);
+		}
+	}
+
+	@Override
+	protected void writeDataToDisk(String recordType) {
+		if (closed) {
+			super.writeDataToDisk(recordType);
+			filesToForceToDisk.forceToDisk();
+		}
+		// changes are written to disk by the flusher, on flush or on close
+	}
+
+	public void flush() {
+		writeChangedDataToDiskRemovingOnlyExistingFiles();
+		filesToForceToDisk.forceToDisk();
+	}
+
+	@Override
+	protected void fileWrittenToDisk(Path path) {
+		filesToForceToDisk.addWrittenFile(path);
+	}
+
+	@Override
+	protected void fileRemovedFromDisk(Path path) {
+		filesToForceToDisk.addRemovedFile(path);
+	}
+
+	@Override
+	public void writeBinarySnapshot() {
+		flush();
+		super.writeBinarySnapshot();
+	}
+
+	@Override
+	protected void writeNotWrittenChangesOnClose() {
+		stopFlusher();
+		flushAndMarkAsClosed();
+	}
+
+	private void stopFlusher() {
+		if (null != flusher) {
+			flusher.shutdown();
+			waitForRunningFlushToFinish();
+		}
+	}
+
+	private void waitForRunningFlushToFinish() {
+		try {
+			flusher.awaitTermination(SECONDS_TO_WAIT_FOR_FLUSHER_ON_CLOSE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flushAndMarkAsClosed() {
+		writeLocks.lockAllRecordTypes();
+		try {
+			closed = true;
+			flush();
+		} finally {
+			writeLocks.unlockAllRecordTypes();
+		}
+	}
+
+	Set<Path> getPathsToForceToDisk() {
+		// needed for test
+		return filesToForceToDisk.getPathsToForceToDisk();
+	}
+
+	boolean isFlusherRunning() {
+		// needed for test
+		return null != flusher && !flusher.isShutdown();
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+
+final class RecordStoragesClosedOnShutdown {
+	private static final String SHUTDOWN_HOOK_THREAD_NAME = "recordStorageShutdownHook";
+	// storages are weakly referenced, so a storage no longer in use is not kept until shutdown
+	private static final Set<RecordStorageOnDisk> recordStorages = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	private static final AtomicBoolean shutdownHookAdded = new AtomicBoolean(false);
+
+	private RecordStoragesClosedOnShutdown() {
+		throw new UnsupportedOperationException();
+	}
+
+	static void closeOnShutdown(RecordStorageOnDisk recordStorage) {
+		addShutdownHookOnce();
+		recordStorages.add(recordStorage);
+	}
+
+	private static void addShutdownHookOnce() {
+		if (shutdownHookAdded.compareAndSet(false, true)) {
+			Runtime.getRuntime().addShutdownHook(new Thread(
+					RecordStoragesClosedOnShutdown::closeAll, SHUTDOWN_HOOK_THREAD_NAME));
+		}
+	}
+
+	static void stopClosingOnShutdown(RecordStorageOnDisk recordStorage) {
+		recordStorages.remove(recordStorage);
+	}
+
+	private static void closeAll() {
+		for (RecordStorageOnDisk recordStorage : copyRecordStorages()) {
+			tryToClose(recordStorage);
+		}
+	}
+
+	private static List<RecordStorageOnDisk> copyRecordStorages() {
+		synchronized (recordStorages) {
+			return new ArrayList<>(recordStorages);
+		}
+	}
+
+	private static void tryToClose(RecordStorageOnDisk recordStorage) {
+		try {
+			recordStorage.close();
+		} catch (RuntimeException e) {
+			LoggerProvider.getLoggerForClass(RecordStoragesClosedOnShutdown.class)
+					.logErrorUsingMessageAndException("can not close record storage on shutdown",
+							e);
+		}
+	}
+
+	static boolean isClosedOnShutdown(RecordStorageOnDisk recordStorage) {
+		// needed for test
+		return recordStorages.contains(recordStorage);
+	}
+}
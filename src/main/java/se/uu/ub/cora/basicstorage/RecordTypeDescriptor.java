@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+final class RecordTypeDescriptor {
+	final String parentId;
+	final boolean isAbstract;
+	final List<String> implementingRecordTypes;
+	private final Set<String> implementingRecordTypeSet;
+
+	static RecordTypeDescriptor withParentIdAndAbstractAndImplementingRecordTypes(
+			String parentId, boolean isAbstract, List<String> implementingRecordTypes) {
+		return new RecordTypeDescriptor(parentId, isAbstract, implementingRecordTypes);
+	}
+
+	private RecordTypeDescriptor(String parentId, boolean isAbstract,
+			List<String> implementingRecordTypes) {
+		this.parentId = parentId;
+		this.isAbstract = isAbstract;
+		this.implementingRecordTypes = Collections.unmodifiableList(implementingRecordTypes);
+		implementingRecordTypeSet = new HashSet<>(implementingRecordTypes);
+	}
+
+	boolean hasImplementingRecordType(String recordType) {
+		return implementingRecordTypeSet.contains(recordType);
+	}
+}
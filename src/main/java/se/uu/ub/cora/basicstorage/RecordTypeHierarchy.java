@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class RecordTypeHierarchy {
+	private static final String PARENT_ID = "parentId";
+	private static final String ABSTRACT = "abstract";
+	final long version;
+	private final Map<String, String> parentIdsByRecordType = new HashMap<>();
+	private final Map<String, List<String>> childRecordTypesByParent = new HashMap<>();
+	private final Set<String> abstractRecordTypes = new HashSet<>();
+	private final Map<String, RecordTypeDescriptor> descriptorsByRecordType = new HashMap<>();
+
+	static RecordTypeHierarchy usingVersionAndRecordTypes(long version,
+			Map<String, DataGroup> recordTypes) {
+		return new RecordTypeHierarchy(version, recordTypes);
+	}
+
+	private RecordTypeHierarchy(long version, Map<String, DataGroup> recordTypes) {
+		this.version = version;
+		for (Entry<String, DataGroup> recordTypeEntry : recordTypes.entrySet()) {
+			addRecordType(recordTypeEntry.getKey(), recordTypeEntry.getValue());
+		}
+		for (String recordType : recordTypes.keySet()) {
+			descriptorsByRecordType.put(recordType, createDescriptor(recordType));
+		}
+	}
+
+	private void addRecordType(String recordType, DataGroup recordTypeDataGroup) {
+		if (recordTypeDataGroup.containsChildWithNameInData(PARENT_ID)) {
+			String parentId = extractParentId(recordTypeDataGroup);
+			parentIdsByRecordType.put(recordType, parentId);
+			childRecordTypesByParent.computeIfAbsent(parentId, key -> new ArrayList<>())
+					.add(recordType);
+		}
+		if (recordTypeDataGroupIsAbstract(recordTypeDataGroup)) {
+			abstractRecordTypes.add(recordType);
+		}
+	}
+
+	private String extractParentId(DataGroup recordTypeDataGroup) {
+		DataGroup parent = recordTypeDataGroup.getFirstGroupWithNameInData(PARENT_ID);
+		return parent.getFirstAtomicValueWithNameInData("linkedRecordId");
+	}
+
+	private boolean recordTypeDataGroupIsAbstract(DataGroup recordTypeDataGroup) {
+		return recordTypeDataGroup.containsChildWithNameInData(ABSTRACT) && "true"
+				.equals(recordTypeDataGroup.getFirstAtomicValueWithNameInData(ABSTRACT));
+	}
+
+	private RecordTypeDescriptor createDescriptor(String recordType) {
+		return RecordTypeDescriptor.withParentIdAndAbstractAndImplementingRecordTypes(
+				parentIdsByRecordType.get(recordType), abstractRecordTypes.contains(recordType),
+				collectImplementingRecordTypes(recordType));
+	}
+
+	private List<String> collectImplementingRecordTypes(String parentRecordType) {
+		Set<String> implementingRecordTypes = new LinkedHashSet<>();
+		addChildRecordTypesAndTheirChildren(parentRecordType, implementingRecordTypes);
+		return new ArrayList<>(implementingRecordTypes);
+	}
+
+	private void addChildRecordTypesAndTheirChildren(String parentRecordType,
+			Set<String> implementingRecordTypes) {
+		for (String childRecordType : childRecordTypesByParent
+				.getOrDefault(parentRecordType, Collections.emptyList())) {
+			if (implementingRecordTypes.add(childRecordType)) {
+				addChildRecordTypesAndTheirChildren(childRecordType, implementingRecordTypes);
+			}
+		}
+	}
+
+	RecordTypeDescriptor getDescriptorOrNull(String recordType) {
+		return descriptorsByRecordType.get(recordType);
+	}
+
+	List<String> getImplementingRecordTypes(String recordType) {
+		RecordTypeDescriptor descriptor = descriptorsByRecordType.get(recordType);
+		if (null == descriptor) {
+			return Collections.emptyList();
+		}
+		return descriptor.implementingRecordTypes;
+	}
+
+	boolean isImplementingRecordType(String recordType, String implementingRecordType) {
+		RecordTypeDescriptor descriptor = descriptorsByRecordType.get(recordType);
+		return null != descriptor && descriptor.hasImplementingRecordType(implementingRecordType);
+	}
+
+	boolean isAbstract(String recordType) {
+		RecordTypeDescriptor descriptor = descriptorsByRecordType.get(recordType);
+		return null != descriptor && descriptor.isAbstract;
+	}
+}
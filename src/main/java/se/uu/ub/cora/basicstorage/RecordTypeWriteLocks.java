@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+final class RecordTypeWriteLocks {
+	private final ReentrantLock[] locks;
+
+	static RecordTypeWriteLocks usingNoOfStripes(int noOfStripes) {
+		return new RecordTypeWriteLocks(noOfStripes);
+	}
+
+	private RecordTypeWriteLocks(int noOfStripes) {
+		locks = new ReentrantLock[noOfStripes];
+		for (int index = 0; index < noOfStripes; index++) {
+			locks[index] = new ReentrantLock();
+		}
+	}
+
+	void lockRecordType(String recordType) {
+		getLockForRecordType(recordType).lock();
+	}
+
+	void unlockRecordType(String recordType) {
+		getLockForRecordType(recordType).unlock();
+	}
+
+	private ReentrantLock getLockForRecordType(String recordType) {
+		return locks[getStripeForRecordType(recordType)];
+	}
+
+	private int getStripeForRecordType(String recordType) {
+		return Math.floorMod(recordType.hashCode(), locks.length);
+	}
+
+	void lockAllRecordTypes() {
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+	}
+
+	void unlockAllRecordTypes() {
+		for (int index = locks.length - 1; index >= 0; index--) {
+			locks[index].unlock();
+		}
+	}
+
+	boolean isRecordTypeLockedByCurrentThread(String recordType) {
+		// needed for test
+		return getLockForRecordType(recordType).isHeldByCurrentThread();
+	}
+}
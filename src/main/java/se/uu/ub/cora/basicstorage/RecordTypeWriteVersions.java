@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class RecordTypeWriteVersions {
+	private final Map<String, AtomicLong> versionsByRecordType = new ConcurrentHashMap<>();
+
+	static RecordTypeWriteVersions startingWithNoWrites() {
+		return new RecordTypeWriteVersions();
+	}
+
+	private RecordTypeWriteVersions() {
+	}
+
+	void startWriteForRecordType(String recordType) {
+		getVersionForRecordType(recordType).incrementAndGet();
+	}
+
+	void finishWriteForRecordType(String recordType) {
+		getVersionForRecordType(recordType).incrementAndGet();
+	}
+
+	private AtomicLong getVersionForRecordType(String recordType) {
+		return versionsByRecordType.computeIfAbsent(recordType, key -> new AtomicLong());
+	}
+
+	long[] getVersionsForRecordTypes(List<String> recordTypes) {
+		long[] versions = new long[recordTypes.size()];
+		for (int index = 0; index < versions.length; index++) {
+			versions[index] = getVersionForRecordType(recordTypes.get(index)).get();
+		}
+		return versions;
+	}
+
+	static boolean noWriteIsInProgress(long[] versions) {
+		for (long version : versions) {
+			if (writeIsInProgressForVersion(version)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean writeIsInProgressForVersion(long version) {
+		return version % 2 != 0;
+	}
+
+	boolean versionsAreUnchanged(List<String> recordTypes, long[] versions) {
+		for (int index = 0; index < versions.length; index++) {
+			if (getVersionForRecordType(recordTypes.get(index)).get() != versions[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -53,10 +53,9 @@ public class UserStorageImp extends SecurityStorage implements UserStorage {
 	private DataGroup findUser(String userId) {
 		DataGroup user = null;
 		for (String userRecordTypeName : userRecordTypeNames) {
-			try {
-				user = recordStorage.read(userRecordTypeName, userId);
-			} catch (RecordNotFoundException e) {
-				// do nothing
+			DataGroup userForRecordType = recordStorage.readOrNull(userRecordTypeName, userId);
+			if (null != userForRecordType) {
+				user = userForRecordType;
 			}
 		}
 		return user;
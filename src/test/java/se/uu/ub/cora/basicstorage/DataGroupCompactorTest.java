@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public class DataGroupCompactorTest {
+
+	@BeforeMethod
+	public void setUp() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+	}
+
+	@Test
+	public void testPrivateConstructor() throws Exception {
+		Constructor<DataGroupCompactor> constructor = DataGroupCompactor.class
+				.getDeclaredConstructor();
+		assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+	}
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructorInvoke() throws Exception {
+		Constructor<DataGroupCompactor> constructor = DataGroupCompactor.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testCompactAndExpand() {
+		DataGroup dataGroup = new DataGroupSpy("authority");
+		dataGroup.addAttributeByIdWithValue("type", "place");
+		DataGroup repeatedGroup = new DataGroupSpy("repeatedGroup");
+		repeatedGroup.setRepeatId("1");
+		dataGroup.addChild(repeatedGroup);
+		DataAtomic name = new DataAtomicSpy("name", "Uppsala");
+		name.setRepeatId("2");
+		repeatedGroup.addChild(name);
+		repeatedGroup.addChild(new DataAtomicSpy("otherName", "Uppsala"));
+
+		DataGroup expanded = DataGroupCompactor.expand(DataGroupCompactor.compact(dataGroup));
+
+		assertEquals(expanded.getNameInData(), "authority");
+		assertNull(expanded.getRepeatId());
+		assertEquals(expanded.getAttributes().get("type"), "place");
+		DataGroup expandedRepeatedGroup = expanded.getFirstGroupWithNameInData("repeatedGroup");
+		assertEquals(expandedRepeatedGroup.getRepeatId(), "1");
+		assertEquals(expandedRepeatedGroup.getChildren().size(), 2);
+		DataAtomic expandedName = (DataAtomic) expandedRepeatedGroup
+				.getFirstChildWithNameInData("name");
+		assertEquals(expandedName.getValue(), "Uppsala");
+		assertEquals(expandedName.getRepeatId(), "2");
+		assertEquals(expandedRepeatedGroup.getFirstAtomicValueWithNameInData("otherName"),
+				"Uppsala");
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "can not expand record: .*")
+	public void testExpandBrokenCompactDataGroup() {
+		DataGroupCompactor.expand(new byte[] { 1, 2, 3 });
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public class DataGroupComparerTest {
+
+	@Test
+	public void testPrivateConstructor() throws Exception {
+		Constructor<DataGroupComparer> constructor = DataGroupComparer.class
+				.getDeclaredConstructor();
+		assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+	}
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructorInvoke() throws Exception {
+		Constructor<DataGroupComparer> constructor = DataGroupComparer.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testEqualLinkLists() {
+		assertTrue(DataGroupComparer.dataGroupsAreEqual(createLinkListWithLinkToId("place:0001"),
+				createLinkListWithLinkToId("place:0001")));
+	}
+
+	private DataGroup createLinkListWithLinkToId(String toRecordId) {
+		DataGroupSpy linkList = new DataGroupSpy("collectedDataLinks");
+		DataGroupSpy link = new DataGroupSpy("recordToRecordLink");
+		link.repeatId = "0";
+		link.addAttributeByIdWithValue("type", "someType");
+		DataGroupSpy to = new DataGroupSpy("to");
+		to.addChild(new DataAtomicSpy("linkedRecordType", "place"));
+		to.addChild(new DataAtomicSpy("linkedRecordId", toRecordId));
+		link.addChild(to);
+		linkList.addChild(link);
+		return linkList;
+	}
+
+	@Test
+	public void testDifferentAtomicValue() {
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(createLinkListWithLinkToId("place:0001"),
+				createLinkListWithLinkToId("place:0002")));
+	}
+
+	@Test
+	public void testDifferentNameInData() {
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(new DataGroupSpy("collectedDataLinks"),
+				new DataGroupSpy("otherName")));
+	}
+
+	@Test
+	public void testDifferentRepeatId() {
+		DataGroup linkList = createLinkListWithLinkToId("place:0001");
+		DataGroupSpy otherLinkList = (DataGroupSpy) createLinkListWithLinkToId("place:0001");
+		((DataGroupSpy) otherLinkList.children.get(0)).repeatId = "1";
+
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(linkList, otherLinkList));
+	}
+
+	@Test
+	public void testDifferentAttributes() {
+		DataGroup linkList = createLinkListWithLinkToId("place:0001");
+		DataGroupSpy otherLinkList = (DataGroupSpy) createLinkListWithLinkToId("place:0001");
+		((DataGroupSpy) otherLinkList.children.get(0)).addAttributeByIdWithValue("type",
+				"otherType");
+
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(linkList, otherLinkList));
+	}
+
+	@Test
+	public void testDifferentNoOfChildren() {
+		DataGroup linkList = createLinkListWithLinkToId("place:0001");
+		DataGroupSpy otherLinkList = (DataGroupSpy) createLinkListWithLinkToId("place:0001");
+		otherLinkList.addChild(new DataGroupSpy("recordToRecordLink"));
+
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(linkList, otherLinkList));
+	}
+
+	@Test
+	public void testAtomicAndGroupWithSameName() {
+		DataGroupSpy linkList = new DataGroupSpy("collectedDataLinks");
+		linkList.addChild(new DataAtomicSpy("link", "value"));
+		DataGroupSpy otherLinkList = new DataGroupSpy("collectedDataLinks");
+		otherLinkList.addChild(new DataGroupSpy("link"));
+
+		assertFalse(DataGroupComparer.dataGroupsAreEqual(linkList, otherLinkList));
+	}
+}
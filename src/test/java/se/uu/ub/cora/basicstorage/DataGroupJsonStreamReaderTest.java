@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+
+public class DataGroupJsonStreamReaderTest {
+
+	@BeforeMethod
+	public void setUp() {
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+	}
+
+	private DataGroupJsonStreamReader createReaderForJson(String json) {
+		return DataGroupJsonStreamReader.usingReader(new StringReader(json));
+	}
+
+	@Test
+	public void testReadChildrenOneByOne() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson("{\"children\": [\n"
+				+ "    {\"children\": [{\"name\": \"id\", \"value\": \"place:0001\"}],"
+				+ " \"name\": \"authority\"},\n"
+				+ "    {\"children\": [{\"name\": \"id\", \"value\": \"pl}a]c\\\"e\"}],"
+				+ " \"name\": \"authority\"}\n" + "], \"name\": \"recordList\"}");
+
+		DataGroup first = reader.readNextChild();
+		assertEquals(first.getFirstAtomicValueWithNameInData("id"), "place:0001");
+		DataGroup second = reader.readNextChild();
+		assertEquals(second.getFirstAtomicValueWithNameInData("id"), "pl}a]c\"e");
+		assertNull(reader.readNextChild());
+		assertNull(reader.readNextChild());
+	}
+
+	@Test
+	public void testReadChildrenWhenNameIsBeforeChildren() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson("{\"name\": \"recordList\","
+				+ " \"children\": [{\"children\": [{\"name\": \"id\", \"value\": \"1\"}],"
+				+ " \"name\": \"authority\"}]}");
+
+		assertEquals(reader.readNextChild().getNameInData(), "authority");
+		assertNull(reader.readNextChild());
+	}
+
+	@Test
+	public void testReadEmptyChildren() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson(
+				"{\"children\": [ ], \"name\": \"recordList\"}");
+
+		assertNull(reader.readNextChild());
+	}
+
+	@Test
+	public void testReadNoChildren() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson("{\"name\": \"recordList\"}");
+
+		assertNull(reader.readNextChild());
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "can not read json: unexpected end of stream")
+	public void testUnexpectedEndOfStream() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson(
+				"{\"children\": [{\"name\": \"authority\"");
+
+		reader.readNextChild();
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "can not read json: unexpected character x")
+	public void testUnexpectedCharacter() throws IOException {
+		DataGroupJsonStreamReader reader = createReaderForJson(
+				"{\"children\": [{\"children\": [{\"name\": \"id\", \"value\": \"1\"}],"
+						+ " \"name\": \"authority\"} x");
+
+		reader.readNextChild();
+		reader.readNextChild();
+	}
+}
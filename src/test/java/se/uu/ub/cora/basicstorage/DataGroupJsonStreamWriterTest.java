@@ -0,0 +1,254 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.json.parser.JsonArray;
+import se.uu.ub.cora.json.parser.JsonObject;
+import se.uu.ub.cora.json.parser.JsonString;
+import se.uu.ub.cora.json.parser.JsonValue;
+import se.uu.ub.cora.json.parser.JsonValueType;
+import se.uu.ub.cora.json.parser.org.OrgJsonParser;
+
+public class DataGroupJsonStreamWriterTest {
+
+	@BeforeMethod
+	public void setUp() {
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+	}
+
+	private void assertWrittenJsonIsSameAsConvertedJson(DataGroup dataGroup) throws IOException {
+		String convertedJson = DataToJsonConverterProvider.getConverterUsingDataPart(dataGroup)
+				.toJson();
+		assertEquals(toJsonWithSortedKeys(writeDataGroup(dataGroup)),
+				toJsonWithSortedKeys(convertedJson));
+	}
+
+	private String writeDataGroup(DataGroup dataGroup) throws IOException {
+		StringWriter writer = new StringWriter();
+		DataGroupJsonStreamWriter.usingWriter(writer).writeDataGroup(dataGroup);
+		return writer.toString();
+	}
+
+	private String toJsonWithSortedKeys(String json) {
+		// the written and converted json are compared as structures, not by their key order
+		return toJsonWithSortedKeys(new OrgJsonParser().parseString(json));
+	}
+
+	private String toJsonWithSortedKeys(JsonValue jsonValue) {
+		if (JsonValueType.OBJECT == jsonValue.getValueType()) {
+			return toJsonObjectWithSortedKeys((JsonObject) jsonValue);
+		}
+		if (JsonValueType.ARRAY == jsonValue.getValueType()) {
+			return toJsonArrayWithSortedKeys((JsonArray) jsonValue);
+		}
+		return "\"" + ((JsonString) jsonValue).getStringValue() + "\"";
+	}
+
+	private String toJsonObjectWithSortedKeys(JsonObject jsonObject) {
+		StringJoiner joiner = new StringJoiner(", ", "{", "}");
+		for (String key : new TreeSet<>(jsonObject.keySet())) {
+			joiner.add("\"" + key + "\": " + toJsonWithSortedKeys(jsonObject.getValue(key)));
+		}
+		return joiner.toString();
+	}
+
+	private String toJsonArrayWithSortedKeys(JsonArray jsonArray) {
+		StringJoiner joiner = new StringJoiner(", ", "[", "]");
+		for (JsonValue jsonValue : jsonArray) {
+			joiner.add(toJsonWithSortedKeys(jsonValue));
+		}
+		return joiner.toString();
+	}
+
+	@Test
+	public void testGroupWithoutChildren() throws IOException {
+		assertWrittenJsonIsSameAsConvertedJson(new DataGroupSpy("recordList"));
+	}
+
+	@Test
+	public void testGroupWithOneAtomicChild() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("recordList");
+		dataGroup.addChild(new DataAtomicSpy("id", "place:0001"));
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testGroupWithOneGroupChild() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("recordList");
+		dataGroup.addChild(createRecordWithId("place:0001"));
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	private DataGroup createRecordWithId(String id) {
+		DataGroup record = new DataGroupSpy("authority");
+		DataGroup recordInfo = new DataGroupSpy("recordInfo");
+		record.addChild(recordInfo);
+		recordInfo.addChild(new DataAtomicSpy("type", "place"));
+		recordInfo.addChild(new DataAtomicSpy("id", id));
+		DataGroup emptyGroup = new DataGroupSpy("emptyGroup");
+		record.addChild(emptyGroup);
+		return record;
+	}
+
+	@Test
+	public void testGroupWithSeveralGroupChildren() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("recordList");
+		dataGroup.addChild(createRecordWithId("place:0001"));
+		dataGroup.addChild(createRecordWithId("place:0002"));
+		dataGroup.addChild(createRecordWithId("place:0003"));
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testChildrenWithRepeatIdAndAttributes() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("collectedData");
+		DataGroupSpy storageTerm = new DataGroupSpy("storageTerm");
+		storageTerm.repeatId = "0";
+		storageTerm.addChild(new DataAtomicSpy("key", "placeName"));
+		dataGroup.addChild(storageTerm);
+		DataGroupSpy groupWithAttribute = new DataGroupSpy("groupWithAttribute");
+		groupWithAttribute.addAttributeByIdWithValue("type", "someType");
+		groupWithAttribute.addChild(new DataAtomicSpy("key", "placeName"));
+		dataGroup.addChild(groupWithAttribute);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testNameThatNeedsEscaping() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("linkLists");
+		DataGroup recordType = new DataGroupSpy("some\"type</\\\u0001 ");
+		recordType.addChild(new DataAtomicSpy("id", "place:0001"));
+		dataGroup.addChild(recordType);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testAtomicChildrenWithRepeatId() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("storageTerm");
+		DataAtomicSpy firstValue = new DataAtomicSpy("value", "Uppsala");
+		firstValue.repeatId = "0";
+		dataGroup.addChild(firstValue);
+		DataAtomicSpy secondValue = new DataAtomicSpy("value", "Stockholm");
+		secondValue.repeatId = "1";
+		dataGroup.addChild(secondValue);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testOnlyAtomicChildWithRepeatId() throws IOException {
+		DataGroup dataGroup = new DataGroupSpy("storageTerm");
+		DataAtomicSpy value = new DataAtomicSpy("value", "Uppsala");
+		value.repeatId = "0";
+		dataGroup.addChild(value);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testGroupWithRepeatIdAndAttributesAndChildren() throws IOException {
+		DataGroupSpy dataGroup = new DataGroupSpy("recordList");
+		DataGroupSpy child = new DataGroupSpy("permissionRulePart");
+		child.repeatId = "3";
+		child.addAttributeByIdWithValue("type", "organisation");
+		child.addChild(new DataAtomicSpy("permissionRulePartValue", "system."));
+		child.addChild(createRecordWithId("place:0001"));
+		dataGroup.addChild(child);
+		dataGroup.addChild(createRecordWithId("place:0002"));
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testGroupWithSeveralAttributes() throws IOException {
+		DataGroupSpy dataGroup = new DataGroupSpy("recordList");
+		DataGroupSpy child = new DataGroupSpy("groupWithAttributes");
+		child.addAttributeByIdWithValue("type", "someType");
+		child.addAttributeByIdWithValue("language", "sv");
+		child.addAttributeByIdWithValue("a", "first");
+		child.addAttributeByIdWithValue("q", "collidesWithA");
+		child.addChild(new DataAtomicSpy("key", "placeName"));
+		dataGroup.addChild(child);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testSeveralAttributesAreWrittenSortedByNameAndIndentedByDepth()
+			throws IOException {
+		DataGroupSpy dataGroup = new DataGroupSpy("groupWithAttributes");
+		dataGroup.addAttributeByIdWithValue("type", "someType");
+		dataGroup.addAttributeByIdWithValue("language", "sv");
+		dataGroup.addAttributeByIdWithValue("a", "first");
+		dataGroup.addChild(new DataAtomicSpy("key", "placeName"));
+
+		assertEquals(writeDataGroup(dataGroup), "{\n" + "    \"children\": [{\n"
+				+ "        \"name\": \"key\",\n" + "        \"value\": \"placeName\"\n"
+				+ "    }],\n" + "    \"name\": \"groupWithAttributes\",\n"
+				+ "    \"attributes\": {\n" + "        \"a\": \"first\",\n"
+				+ "        \"language\": \"sv\",\n" + "        \"type\": \"someType\"\n"
+				+ "    }\n" + "}");
+	}
+
+	@Test
+	public void testGroupsWithoutChildrenButWithRepeatIdOrAttributes() throws IOException {
+		DataGroupSpy dataGroup = new DataGroupSpy("recordList");
+		DataGroupSpy groupWithRepeatId = new DataGroupSpy("groupWithRepeatId");
+		groupWithRepeatId.repeatId = "0";
+		dataGroup.addChild(groupWithRepeatId);
+		DataGroupSpy groupWithAttribute = new DataGroupSpy("groupWithAttribute");
+		groupWithAttribute.addAttributeByIdWithValue("type", "someType");
+		dataGroup.addChild(groupWithAttribute);
+		dataGroup.addChild(new DataGroupSpy("groupWithOnlyName"));
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+
+	@Test
+	public void testValuesAndAttributesThatNeedEscaping() throws IOException {
+		DataGroupSpy dataGroup = new DataGroupSpy("recordList");
+		DataGroupSpy child = new DataGroupSpy("some\"group");
+		child.repeatId = "re\\peat\"";
+		child.addAttributeByIdWithValue("ty\"pe", "</script>\t\u0085\u2028");
+		child.addChild(new DataAtomicSpy("text",
+				"line\nbreak\r\f\b \"quoted\" \\ </ \u001f \u00e5"));
+		dataGroup.addChild(child);
+
+		assertWrittenJsonIsSameAsConvertedJson(dataGroup);
+	}
+}
@@ -20,6 +20,10 @@
 package se.uu.ub.cora.basicstorage;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.nio.ByteBuffer;
 
 import org.testng.annotations.Test;
 
@@ -34,6 +38,33 @@ public class DividerGroupTest {
 				dataGroup);
 		assertEquals(dividerGroup.dataDivider, "cora");
 		assertEquals(dividerGroup.dataGroup, dataGroup);
+		assertNull(dividerGroup.compactDataGroup);
+		assertNull(dividerGroup.mappedSegment);
+		assertEquals(dividerGroup.mappedPosition, DividerGroup.NOT_MAPPED);
+
+	}
 
+	@Test
+	public void testInitCompact() {
+		byte[] compactDataGroup = new byte[] { 1, 2, 3 };
+		DividerGroup dividerGroup = DividerGroup.withDataDividerAndCompactDataGroup("cora",
+				compactDataGroup);
+		assertEquals(dividerGroup.dataDivider, "cora");
+		assertNull(dividerGroup.dataGroup);
+		assertEquals(dividerGroup.compactDataGroup, compactDataGroup);
+		assertNull(dividerGroup.mappedSegment);
+		assertEquals(dividerGroup.mappedPosition, DividerGroup.NOT_MAPPED);
+	}
+
+	@Test
+	public void testInitMapped() {
+		ByteBuffer mappedSegment = ByteBuffer.allocate(64);
+		DividerGroup dividerGroup = DividerGroup
+				.withDataDividerAndMappedSegmentAndPosition("cora", mappedSegment, 42);
+		assertEquals(dividerGroup.dataDivider, "cora");
+		assertNull(dividerGroup.dataGroup);
+		assertNull(dividerGroup.compactDataGroup);
+		assertSame(dividerGroup.mappedSegment, mappedSegment);
+		assertEquals(dividerGroup.mappedPosition, 42);
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public class ExpandedRecordCacheTest {
+	private ExpandedRecordCache cache;
+
+	@BeforeMethod
+	public void setUp() {
+		cache = ExpandedRecordCache.withMaxNoOfRecords(2);
+	}
+
+	private DividerGroup createCompactRecord() {
+		return DividerGroup.withDataDividerAndCompactDataGroup("cora", new byte[] { 1 });
+	}
+
+	@Test
+	public void testNotCachedRecordIsNull() {
+		assertNull(cache.getExpandedDataGroupOrNull(createCompactRecord()));
+	}
+
+	@Test
+	public void testExpandedDataGroupIsCached() {
+		DividerGroup compactRecord = createCompactRecord();
+		DataGroup expanded = new DataGroupSpy("first");
+
+		cache.cacheExpandedDataGroup(compactRecord, expanded);
+
+		assertSame(cache.getExpandedDataGroupOrNull(compactRecord), expanded);
+		assertEquals(cache.getNoOfCachedRecords(), 1);
+	}
+
+	@Test
+	public void testFirstCachedDataGroupIsKept() {
+		DividerGroup compactRecord = createCompactRecord();
+		DataGroup expanded = new DataGroupSpy("first");
+		cache.cacheExpandedDataGroup(compactRecord, expanded);
+
+		cache.cacheExpandedDataGroup(compactRecord, new DataGroupSpy("first"));
+
+		assertSame(cache.getExpandedDataGroupOrNull(compactRecord), expanded);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsRemovedWhenFull() {
+		DividerGroup first = createCompactRecord();
+		DividerGroup second = createCompactRecord();
+		DividerGroup third = createCompactRecord();
+		cache.cacheExpandedDataGroup(first, new DataGroupSpy("first"));
+		cache.cacheExpandedDataGroup(second, new DataGroupSpy("second"));
+		cache.getExpandedDataGroupOrNull(first);
+
+		cache.cacheExpandedDataGroup(third, new DataGroupSpy("third"));
+
+		assertEquals(cache.getNoOfCachedRecords(), 2);
+		assertEquals(cache.getExpandedDataGroupOrNull(first).getNameInData(), "first");
+		assertNull(cache.getExpandedDataGroupOrNull(second));
+		assertEquals(cache.getExpandedDataGroupOrNull(third).getNameInData(), "third");
+	}
+
+	@Test
+	public void testSmallCacheUsesOneStripe() {
+		assertEquals(cache.getNoOfStripes(), 1);
+		assertEquals(ExpandedRecordCache.withMaxNoOfRecords(127).getNoOfStripes(), 1);
+	}
+
+	@Test
+	public void testLargeCacheUsesSeveralStripes() {
+		assertEquals(ExpandedRecordCache.withMaxNoOfRecords(256).getNoOfStripes(), 4);
+		assertEquals(ExpandedRecordCache.withMaxNoOfRecords(100000).getNoOfStripes(), 16);
+	}
+
+	@Test
+	public void testStripedCacheDoesNotKeepMoreThanMaxNoOfRecords() {
+		ExpandedRecordCache stripedCache = ExpandedRecordCache.withMaxNoOfRecords(256);
+
+		for (int i = 0; i < 1000; i++) {
+			stripedCache.cacheExpandedDataGroup(createCompactRecord(), new DataGroupSpy("some"));
+		}
+
+		assertTrue(stripedCache.getNoOfCachedRecords() <= 256);
+		assertTrue(stripedCache.getNoOfCachedRecords() > 0);
+	}
+}
+
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IndexedRecordIdsTest {
+	private IndexedRecordIds recordIds;
+
+	@BeforeMethod
+	public void setUp() {
+		recordIds = IndexedRecordIds.usingNoRecordIds();
+	}
+
+	private List<String> readAll(Iterator<String> iterator) {
+		List<String> readRecordIds = new ArrayList<>();
+		iterator.forEachRemaining(readRecordIds::add);
+		return readRecordIds;
+	}
+
+	@Test
+	public void testNoRecordIds() {
+		assertEquals(recordIds.size(), 0);
+		assertFalse(recordIds.iterator().hasNext());
+		assertFalse(recordIds.iteratorStartingAtIndex(3).hasNext());
+	}
+
+	@Test
+	public void testRecordIdsAreIteratedInOrder() {
+		recordIds.add("place:0003");
+		recordIds.add("place:0001");
+		recordIds.add("place:0002");
+
+		assertEquals(readAll(recordIds.iterator()),
+				Arrays.asList("place:0001", "place:0002", "place:0003"));
+	}
+
+	@Test
+	public void testRecordIdIsOnlyAddedOnce() {
+		assertTrue(recordIds.add("place:0001"));
+		assertFalse(recordIds.add("place:0001"));
+
+		assertEquals(recordIds.size(), 1);
+	}
+
+	@Test
+	public void testRemoveRecordId() {
+		recordIds.add("place:0001");
+		recordIds.add("place:0002");
+
+		assertTrue(recordIds.remove("place:0001"));
+		assertFalse(recordIds.remove("place:0001"));
+
+		assertEquals(readAll(recordIds.iterator()), Arrays.asList("place:0002"));
+		assertFalse(recordIds.contains("place:0001"));
+		assertTrue(recordIds.contains("place:0002"));
+	}
+
+	@Test
+	public void testIteratorStartingAtIndex() {
+		recordIds = IndexedRecordIds.usingRecordIds(
+				Arrays.asList("place:0004", "place:0002", "place:0001", "place:0003"));
+
+		assertEquals(readAll(recordIds.iteratorStartingAtIndex(2)),
+				Arrays.asList("place:0003", "place:0004"));
+		assertFalse(recordIds.iteratorStartingAtIndex(4).hasNext());
+	}
+
+	@Test
+	public void testIteratorStartingAtEachIndexAfterManyAddsAndRemoves() {
+		TreeSet<String> expectedRecordIds = new TreeSet<>();
+		for (int i = 0; i < 500; i++) {
+			String recordId = "place:" + ((i * 7919) % 1000);
+			recordIds.add(recordId);
+			expectedRecordIds.add(recordId);
+		}
+		for (int i = 0; i < 1000; i += 3) {
+			recordIds.remove("place:" + i);
+			expectedRecordIds.remove("place:" + i);
+		}
+
+		List<String> expected = new ArrayList<>(expectedRecordIds);
+		assertEquals(recordIds.size(), expected.size());
+		for (int index = 0; index <= expected.size(); index++) {
+			assertEquals(readAll(recordIds.iteratorStartingAtIndex(index)),
+					expected.subList(index, expected.size()));
+		}
+	}
+
+	@Test
+	public void testIteratorIsNotChangedByLaterWrites() {
+		recordIds.add("place:0001");
+		recordIds.add("place:0003");
+		Iterator<String> iterator = recordIds.iterator();
+
+		recordIds.add("place:0002");
+		recordIds.remove("place:0003");
+
+		assertEquals(readAll(iterator), Arrays.asList("place:0001", "place:0003"));
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MappedRecordSegmentsTest {
+	private String basePath = "/tmp/mappedRecordSegmentsTemp/";
+	private MappedRecordSegments segments;
+
+	@BeforeMethod
+	public void setUp() {
+		segments = createSegmentsRemovingSegmentsFromEarlierStart();
+	}
+
+	private MappedRecordSegments createSegmentsRemovingSegmentsFromEarlierStart() {
+		MappedRecordSegments recordSegments = MappedRecordSegments
+				.usingBasePathAndSegmentSize(basePath, 16);
+		recordSegments.reopenIntoStorageIfUpToDateWithDataFiles(null, Collections.emptyList());
+		return recordSegments;
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		Path segmentsPath = Paths.get(basePath, "segments");
+		try (Stream<Path> list = Files.list(segmentsPath)) {
+			for (Path path : (Iterable<Path>) list::iterator) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(segmentsPath);
+		Files.delete(Paths.get(basePath));
+	}
+
+	@Test
+	public void testAppendAndRead() {
+		DividerGroup first = segments.append("cora", new byte[] { 1, 2, 3 });
+		DividerGroup second = segments.append("cora", new byte[] { 4, 5 });
+
+		assertEquals(first.dataDivider, "cora");
+		assertEquals(segments.read(first), new byte[] { 1, 2, 3 });
+		assertEquals(segments.read(second), new byte[] { 4, 5 });
+		assertEquals(segments.getNoOfSegments(), 1);
+	}
+
+	@Test
+	public void testNewSegmentIsMappedWhenLastSegmentIsFull() {
+		segments.append("cora", new byte[10]);
+		DividerGroup second = segments.append("cora", new byte[] { 4, 5, 6, 7, 8, 9, 10, 11 });
+
+		assertEquals(segments.getNoOfSegments(), 2);
+		assertEquals(second.mappedPosition, 16);
+		assertEquals(segments.read(second), new byte[] { 4, 5, 6, 7, 8, 9, 10, 11 });
+	}
+
+	@Test
+	public void testSegmentIsSealedSinceManifestUntilManifestIsWritten() {
+		segments.append("cora", new byte[10]);
+		assertFalse(segments.segmentIsSealedSinceManifest());
+
+		segments.append("cora", new byte[10]);
+		assertTrue(segments.segmentIsSealedSinceManifest());
+
+		segments.writeManifestForRecordsAndDataFiles(Collections.emptyMap(),
+				Collections.emptyList());
+		assertFalse(segments.segmentIsSealedSinceManifest());
+	}
+
+	@Test
+	public void testShouldBeCompactedWhenLessThanHalfOfUsedBytesAreInUse() {
+		DividerGroup first = segments.append("cora", new byte[10]);
+		segments.append("cora", new byte[10]);
+		assertFalse(segments.shouldBeCompacted());
+
+		segments.recordIsNoLongerInUse(first);
+
+		assertTrue(segments.shouldBeCompacted());
+	}
+
+	@Test
+	public void testLastSegmentAloneIsNotCompacted() {
+		DividerGroup first = segments.append("cora", new byte[10]);
+
+		segments.recordIsNoLongerInUse(first);
+
+		assertFalse(segments.shouldBeCompacted());
+	}
+
+	@Test
+	public void testCompactionMovesRecordsToNewSegmentsAndRemovesOldSegments() {
+		DividerGroup first = segments.append("cora", new byte[] { 1, 2, 3 });
+		segments.append("cora", new byte[10]);
+
+		Set<Integer> compactedSegments = segments.startCompaction();
+		DividerGroup moved = segments.moveToNewSegment(first);
+		segments.stopUsingSegments(compactedSegments);
+		segments.removeSegments(compactedSegments);
+
+		assertEquals(compactedSegments, new HashSet<>(Arrays.asList(0, 1)));
+		assertEquals(moved.mappedPosition, 32);
+		assertEquals(segments.read(moved), new byte[] { 1, 2, 3 });
+		assertEquals(segments.getNoOfSegments(), 1);
+		assertFalse(Files.exists(segments.getSegmentPathForPosition(first.mappedPosition)));
+		assertFalse(segments.shouldBeCompacted());
+	}
+
+	@Test
+	public void testRecordInRemovedSegmentCanStillBeRead() {
+		DividerGroup first = segments.append("cora", new byte[] { 1, 2, 3 });
+
+		Set<Integer> compactedSegments = segments.startCompaction();
+		segments.moveToNewSegment(first);
+		segments.stopUsingSegments(compactedSegments);
+		segments.removeSegments(compactedSegments);
+
+		assertEquals(segments.read(first), new byte[] { 1, 2, 3 });
+	}
+
+	@Test
+	public void testSegmentsFromEarlierStartAreRemoved() {
+		segments.append("cora", new byte[10]);
+		segments.append("cora", new byte[10]);
+
+		createSegmentsRemovingSegmentsFromEarlierStart();
+
+		assertFalse(Files.exists(Paths.get(basePath, "segments", "segment0.bin")));
+	}
+
+	@Test
+	public void testManifestIsWrittenWithSegmentsForcedToDisk() {
+		segments.append("cora", new byte[] { 1, 2, 3 });
+
+		segments.writeManifestForRecordsAndDataFiles(Collections.emptyMap(),
+				Collections.emptyList());
+
+		assertTrue(Files.exists(segments.getManifestPath()));
+		assertFalse(Files.exists(Paths.get(basePath, "segments", "manifest.bin.tmp")));
+	}
+
+	@Test
+	public void testSegmentsAreRemovedWhenManifestCanNotBeRead() throws IOException {
+		segments.append("cora", new byte[] { 1, 2, 3 });
+		Files.write(segments.getManifestPath(), new byte[] { 0, 0, 0, 1, 0 });
+
+		MappedRecordSegments reopenedSegments = createSegmentsRemovingSegmentsFromEarlierStart();
+
+		assertEquals(reopenedSegments.getNoOfSegments(), 0);
+		assertFalse(Files.exists(segments.getManifestPath()));
+		assertFalse(Files.exists(Paths.get(basePath, "segments", "segment0.bin")));
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "can not store record of size 21 in record segments of size 16")
+	public void testErrorIfRecordIsLargerThanSegment() {
+		segments.append("cora", new byte[17]);
+	}
+}
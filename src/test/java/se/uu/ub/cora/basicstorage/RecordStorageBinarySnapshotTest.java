@@ -0,0 +1,277 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+public class RecordStorageBinarySnapshotTest {
+	private static final String PLACE_CORA_FILENAME = "place_cora.json.gz";
+	private String basePath = "/tmp/recordStorageBinarySnapshotTemp/";
+	private RecordStorageOnDisk recordStorage;
+
+	@BeforeMethod
+	public void makeSureBasePathExistsAndIsEmpty() throws IOException {
+		File dir = new File(basePath);
+		dir.mkdir();
+		deleteFiles(basePath);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+
+		recordStorage = RecordStorageOnDisk.createRecordStorageOnDiskWithBasePath(basePath);
+	}
+
+	private void deleteFiles(String path) throws IOException {
+		Stream<Path> list;
+		list = Files.list(Paths.get(path));
+
+		list.forEach(p -> deleteFile(p));
+		list.close();
+	}
+
+	private void deleteFile(Path path) {
+		try {
+			if (path.toFile().isDirectory()) {
+				deleteFiles(path.toString());
+			}
+			Files.delete(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		if (Files.exists(Paths.get(basePath))) {
+			deleteFiles(basePath);
+			File dir = new File(basePath);
+			dir.delete();
+		}
+	}
+
+	private void createPlaceWithNameAndLinkToRecordId(String recordId, String placeName,
+			String linkedRecordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+		DataGroup repeatedGroup = new DataGroupSpy("repeatedGroup");
+		repeatedGroup.setRepeatId("1");
+		repeatedGroup.addAttributeByIdWithValue("type", "someType");
+		dataGroup.addChild(repeatedGroup);
+
+		DataGroup collectedData = DataCreator.createCollectedDataWithTypeAndId("place", recordId);
+		DataGroup collectStorageTerm = new DataGroupSpy("storage");
+		collectedData.addChild(collectStorageTerm);
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("1",
+						"placeNameStorageTerm", placeName, "placeName"));
+
+		DataGroup linkList = DataCreator.createEmptyLinkList();
+		linkList.addChild(DataCreator.createRecordToRecordLink("place", recordId, "place",
+				linkedRecordId));
+
+		recordStorage.create("place", recordId, dataGroup, collectedData, linkList, "cora");
+	}
+
+	private Path getSnapshotPath() {
+		return RecordStorageBinarySnapshot.usingBasePath(basePath).getSnapshotPath();
+	}
+
+	@Test
+	public void testWriteBinarySnapshot() {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+
+		recordStorage.writeBinarySnapshot();
+
+		assertTrue(Files.exists(getSnapshotPath()));
+	}
+
+	@Test
+	public void testStartupReadsRecordsTermsAndLinksFromSnapshot() throws IOException {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		createPlaceWithNameAndLinkToRecordId("place:0002", "Stockholm", "place:0001");
+		recordStorage.writeBinarySnapshot();
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertTrue(readStorage.isReadFromBinarySnapshot());
+		DataGroup place = readStorage.read("place", "place:0001");
+		DataGroup repeatedGroup = place.getFirstGroupWithNameInData("repeatedGroup");
+		assertEquals(repeatedGroup.getRepeatId(), "1");
+		assertEquals(repeatedGroup.getAttributes().get("type"), "someType");
+		assertEquals(place.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), "place:0001");
+		assertOnlyRecordFoundForPlaceName(readStorage, "Stockholm", "place:0002");
+		assertEquals(readStorage.readLinkList("place", "place:0001").getChildren().size(), 1);
+		assertEquals(readStorage.generateLinkCollectionPointingToRecord("place", "place:0002")
+				.size(), 1);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class)
+	public void testStartupDoesNotTrustSnapshotWhenDataFileIsRewrittenWithSameSizeAndLastModified()
+			throws IOException {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		recordStorage.writeBinarySnapshot();
+		makeRecordFileUnparsableKeepingSizeAndLastModified();
+
+		RecordStorageOnDisk.createRecordStorageOnDiskWithBasePath(basePath);
+	}
+
+	@Test
+	public void testCloseWritesBinarySnapshot() {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+
+		recordStorage.close();
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+		assertTrue(readStorage.isReadFromBinarySnapshot());
+		assertOnlyRecordFoundForPlaceName(readStorage, "Uppsala", "place:0001");
+	}
+
+	private void makeRecordFileUnparsableKeepingSizeAndLastModified() throws IOException {
+		Path recordFile = Paths.get(basePath, "cora", PLACE_CORA_FILENAME);
+		FileTime lastModified = Files.getLastModifiedTime(recordFile);
+		byte[] unparsable = new byte[(int) Files.size(recordFile)];
+		Arrays.fill(unparsable, (byte) 'x');
+		Files.write(recordFile, unparsable);
+		Files.setLastModifiedTime(recordFile, lastModified);
+	}
+
+	private void assertOnlyRecordFoundForPlaceName(RecordStorageOnDisk readStorage,
+			String placeName, String expectedRecordId) {
+		DataGroup filter = DataCreator.createEmptyFilter();
+		DataGroup part = DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				placeName);
+		filter.addChild(part);
+		StorageReadResult readResult = readStorage.readList("place", filter);
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResult.listOfDataGroups.get(0).getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), expectedRecordId);
+	}
+
+	@Test
+	public void testStartupReadsJsonFilesWhenSnapshotIsStale() {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		recordStorage.writeBinarySnapshot();
+		createPlaceWithNameAndLinkToRecordId("place:0002", "Stockholm", "place:0001");
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertOnlyRecordFoundForPlaceName(readStorage, "Stockholm", "place:0002");
+	}
+
+	@Test
+	public void testStartupReadsJsonFilesWhenSnapshotIsTruncated() throws IOException {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		createPlaceWithNameAndLinkToRecordId("place:0002", "Stockholm", "place:0001");
+		recordStorage.writeBinarySnapshot();
+		byte[] snapshot = Files.readAllBytes(getSnapshotPath());
+		Files.write(getSnapshotPath(), Arrays.copyOf(snapshot, snapshot.length - 10));
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertStorageReadFromJsonFilesContainsBothPlaces(readStorage);
+	}
+
+	private void assertStorageReadFromJsonFilesContainsBothPlaces(
+			RecordStorageOnDisk readStorage) {
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertOnlyRecordFoundForPlaceName(readStorage, "Stockholm", "place:0002");
+		assertEquals(readStorage.readLinkList("place", "place:0001").getChildren().size(), 1);
+		assertEquals(readStorage.generateLinkCollectionPointingToRecord("place", "place:0002")
+				.size(), 1);
+	}
+
+	@Test
+	public void testStartupReadsJsonFilesWhenSnapshotIsCorrupt() throws IOException {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		createPlaceWithNameAndLinkToRecordId("place:0002", "Stockholm", "place:0001");
+		recordStorage.writeBinarySnapshot();
+		byte[] snapshot = Files.readAllBytes(getSnapshotPath());
+		Arrays.fill(snapshot, snapshot.length / 2, snapshot.length, (byte) 0x7f);
+		Files.write(getSnapshotPath(), snapshot);
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertStorageReadFromJsonFilesContainsBothPlaces(readStorage);
+	}
+
+	@Test
+	public void testStartupReadsJsonFilesWhenDataFileIsRemoved() {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+		recordStorage.writeBinarySnapshot();
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertFalse(readStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("place",
+				"place:0001"));
+	}
+
+	@Test
+	public void testStartupReadsJsonFilesWhenSnapshotIsMissing() {
+		createPlaceWithNameAndLinkToRecordId("place:0001", "Uppsala", "place:0002");
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertFalse(Files.exists(getSnapshotPath()));
+		assertFalse(readStorage.isReadFromBinarySnapshot());
+		assertOnlyRecordFoundForPlaceName(readStorage, "Uppsala", "place:0001");
+	}
+}
@@ -21,14 +21,23 @@ package se.uu.ub.cora.basicstorage;
 
 import static org.testng.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.basicstorage.testdata.DataCreator;
 import se.uu.ub.cora.basicstorage.testdata.TestDataRecordInMemoryStorage;
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.data.DataGroupFactory;
 import se.uu.ub.cora.data.DataGroupProvider;
@@ -80,7 +89,7 @@ public class RecordStorageInMemoryListTest {
 		Collection<DataGroup> readList = readResult.listOfDataGroups;
 
 		assertEquals(readList.size(), 2);
-		assertEquals(readResult.start, 0);
+		assertEquals(readResult.start, 1);
 		assertEquals(readResult.totalNumberOfMatches, 2);
 	}
 
@@ -97,7 +106,7 @@ public class RecordStorageInMemoryListTest {
 		StorageReadResult readResult = recordStorage.readList("place", filter);
 		Collection<DataGroup> readList = readResult.listOfDataGroups;
 		assertEquals(readList.size(), 0);
-		assertEquals(readResult.start, 0);
+		assertEquals(readResult.start, 1);
 		assertEquals(readResult.totalNumberOfMatches, 0);
 	}
 
@@ -145,6 +154,39 @@ public class RecordStorageInMemoryListTest {
 				.getFirstAtomicValueWithNameInData("id"), "place:0001");
 	}
 
+	@Test
+	public void testListWithFilterDoesNotCacheExpandedCompactRecords() {
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		RecordStorageInMemory compactStorage = new RecordStorageInMemory();
+		compactStorage.keepRecordsCompactUsingNoOfCachedRecords(10);
+		recordStorage = compactStorage;
+		createPlaceInStorageWithUppsalaStorageTerm();
+
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+		Collection<DataGroup> readList = recordStorage.readList("place", filter).listOfDataGroups;
+
+		assertEquals(readList.size(), 1);
+		assertEquals(compactStorage.getExpandedRecordCache().getNoOfCachedRecords(), 0);
+	}
+
+	@Test
+	public void testListWithFilterForTypeWithoutRecordTypeReturnsAllMatches() {
+		recordStorage = new RecordStorageInMemory();
+		createPlaceInStorageWithUppsalaStorageTerm();
+
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+		StorageReadResult readResult = recordStorage.readList("place", filter);
+
+		assertEquals(readResult.totalNumberOfMatches, 1);
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResult.listOfDataGroups.get(0).getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), "place:0001");
+	}
+
 	@Test
 	public void testListAfterUpdateWithNoCollectedStorageTermReadWithFilter() {
 		createPlaceInStorageWithUppsalaStorageTerm();
@@ -327,6 +369,321 @@ public class RecordStorageInMemoryListTest {
 				dataDivider);
 	}
 
+	@Test
+	public void testReadListWithStartAndRows() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+		createPlaceInStorageWithStockholmStorageTerm();
+		createPlaceInStorageWithUppsalaStorageAndStockholmTerm();
+
+		StorageReadResult readResult = recordStorage.readList("place",
+				createFilterWithStartAndRows("2", "1"));
+
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResult.start, 2);
+		assertEquals(readResult.totalNumberOfMatches, 3);
+	}
+
+	private DataGroup createFilterWithStartAndRows(String start, String rows) {
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(new DataAtomicSpy("start", start));
+		filter.addChild(new DataAtomicSpy("rows", rows));
+		return filter;
+	}
+
+	@Test
+	public void testReadListWithStartAfterLastRecord() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+		createPlaceInStorageWithStockholmStorageTerm();
+
+		StorageReadResult readResult = recordStorage.readList("place",
+				createFilterWithStartAndRows("3", "10"));
+
+		assertEquals(readResult.listOfDataGroups.size(), 0);
+		assertEquals(readResult.totalNumberOfMatches, 2);
+	}
+
+	@Test
+	public void testReadListWithFilterAndStartAndRows() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+		createPlaceInStorageWithStockholmStorageTerm();
+		createPlaceInStorageWithUppsalaStorageAndStockholmTerm();
+		DataGroup filter = createFilterWithStartAndRows("2", "5");
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+
+		StorageReadResult readResult = recordStorage.readList("place", filter);
+
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResult.totalNumberOfMatches, 2);
+	}
+
+	@Test
+	public void testReadListPagesAreOrderedByRecordId() {
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0004", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+
+		StorageReadResult firstPage = recordStorage.readList("place",
+				createFilterWithStartAndRows("1", "2"));
+		StorageReadResult secondPage = recordStorage.readList("place",
+				createFilterWithStartAndRows("3", "2"));
+
+		assertRecordIdsInReadResult(firstPage, "place:0001", "place:0002");
+		assertRecordIdsInReadResult(secondPage, "place:0003", "place:0004");
+	}
+
+	@Test
+	public void testReadListPagesAfterIndexingSeeLaterWrites() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0005", "Uppsala");
+		StorageReadResult pageBeforeWrites = recordStorage.readList("place",
+				createFilterWithStartAndRows("2", "2"));
+
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		recordStorage.deleteByTypeAndId("place", "place:0005");
+		StorageReadResult pageAfterWrites = recordStorage.readList("place",
+				createFilterWithStartAndRows("2", "2"));
+		StorageReadResult samePageAgain = recordStorage.readList("place",
+				createFilterWithStartAndRows("2", "2"));
+
+		assertRecordIdsInReadResult(pageBeforeWrites, "place:0003", "place:0005");
+		assertRecordIdsInReadResult(pageAfterWrites, "place:0002", "place:0003");
+		assertRecordIdsInReadResult(samePageAgain, "place:0002", "place:0003");
+	}
+
+	@Test
+	public void testReadListPageStartingAfterLastRecordOnceIndexed() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		recordStorage.readList("place", createFilterWithStartAndRows("2", "1"));
+
+		StorageReadResult readResult = recordStorage.readList("place",
+				createFilterWithStartAndRows("5", "2"));
+
+		assertEquals(readResult.listOfDataGroups.size(), 0);
+		assertEquals(readResult.totalNumberOfMatches, 2);
+	}
+
+	private void createPlaceWithIdAndPlaceName(String recordId, String placeName) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"place", recordId);
+		recordStorage.create("place", recordId, dataGroup,
+				createCollectedDataWithPlaceName(recordId, placeName), emptyLinkList, dataDivider);
+	}
+
+	private DataGroup createCollectedDataWithPlaceName(String recordId, String placeName) {
+		DataGroup collectedData = DataCreator.createCollectedDataWithTypeAndId("place", recordId);
+		DataGroup collectStorageTerm = new DataGroupSpy("storage");
+		collectedData.addChild(collectStorageTerm);
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("1",
+						"placeNameStorageTerm", placeName, "placeName"));
+		return collectedData;
+	}
+
+	private void assertRecordIdsInReadResult(StorageReadResult readResult,
+			String... expectedRecordIds) {
+		assertEquals(readResult.listOfDataGroups.size(), expectedRecordIds.length);
+		for (int i = 0; i < expectedRecordIds.length; i++) {
+			DataGroup recordInfo = readResult.listOfDataGroups.get(i)
+					.getFirstGroupWithNameInData("recordInfo");
+			assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"),
+					expectedRecordIds[i]);
+		}
+	}
+
+	@Test
+	public void testReadListWithFilterPagesAreOrderedByRecordId() {
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0004", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		DataGroup filter = createFilterWithStartAndRows("2", "2");
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+
+		StorageReadResult readResult = recordStorage.readList("place", filter);
+
+		assertRecordIdsInReadResult(readResult, "place:0002", "place:0003");
+		assertEquals(readResult.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testReadListWithFilterReturnsRecordWithSameValueTwiceOnce() {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"place", "place:0001");
+		DataGroup collectedData = DataCreator.createCollectedDataWithTypeAndId("place",
+				"place:0001");
+		DataGroup collectStorageTerm = new DataGroupSpy("storage");
+		collectedData.addChild(collectStorageTerm);
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("1",
+						"placeNameStorageTerm", "Uppsala", "placeName"));
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("2",
+						"placeNameStorageTerm", "Uppsala", "placeName"));
+		recordStorage.create("place", "place:0001", dataGroup, collectedData, emptyLinkList,
+				dataDivider);
+		DataGroup filter = createFilterWithPlaceName("Uppsala");
+
+		StorageReadResult readResult = recordStorage.readList("place", filter);
+
+		assertRecordIdsInReadResult(readResult, "place:0001");
+		assertEquals(readResult.totalNumberOfMatches, 1);
+		assertEquals(((RecordStorageInMemory) recordStorage).countRecordsForType("place", filter),
+				1);
+	}
+
+	private DataGroup createFilterWithPlaceName(String placeName) {
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				placeName));
+		return filter;
+	}
+
+	@Test
+	public void testReadListWithFilterUsesValueFromUpdatedRecord() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"place", "place:0001");
+		recordStorage.update("place", "place:0001", dataGroup,
+				createCollectedDataWithPlaceName("place:0001", "Stockholm"), emptyLinkList,
+				dataDivider);
+
+		assertRecordIdsInReadResult(
+				recordStorage.readList("place", createFilterWithPlaceName("Uppsala")),
+				"place:0002");
+		assertRecordIdsInReadResult(
+				recordStorage.readList("place", createFilterWithPlaceName("Stockholm")),
+				"place:0001");
+	}
+
+	@Test
+	public void testReadListWithFilterDoesNotFindDeletedRecord() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		StorageReadResult readResult = recordStorage.readList("place",
+				createFilterWithPlaceName("Uppsala"));
+		assertRecordIdsInReadResult(readResult, "place:0002");
+		assertEquals(readResult.totalNumberOfMatches, 1);
+	}
+
+	@Test
+	public void testReadListOrderIsKeptAfterDeleteAndCreate() {
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		recordStorage.deleteByTypeAndId("place", "place:0002");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0000", "Uppsala");
+
+		StorageReadResult readResult = recordStorage.readList("place", emptyFilter);
+
+		assertRecordIdsInReadResult(readResult, "place:0000", "place:0001", "place:0003");
+	}
+
+	@Test
+	public void testReadListAsStreamIsOrderedByRecordId() {
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+
+		List<String> recordIds = readRecordIdsAsStream(emptyFilter);
+
+		assertEquals(recordIds, Arrays.asList("place:0001", "place:0002", "place:0003"));
+	}
+
+	private List<String> readRecordIdsAsStream(DataGroup filter) {
+		Stream<DataGroup> stream = ((RecordStorageInMemory) recordStorage)
+				.readListAsStream("place", filter);
+		return stream.map(this::extractRecordId).collect(Collectors.toList());
+	}
+
+	private String extractRecordId(DataGroup record) {
+		return record.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id");
+	}
+
+	@Test
+	public void testReadListAsStreamWithFilter() {
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+
+		List<String> recordIds = readRecordIdsAsStream(filter);
+
+		assertEquals(recordIds, Arrays.asList("place:0002", "place:0003"));
+	}
+
+	@Test
+	public void testReadListAsStreamWithStartAndRows() {
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0001", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+
+		List<String> recordIds = readRecordIdsAsStream(createFilterWithStartAndRows("2", "1"));
+
+		assertEquals(recordIds, Arrays.asList("place:0002"));
+	}
+
+	@Test
+	public void testReadListAsStreamSkipsRecordDeletedAfterStreamWasCreated() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		Stream<DataGroup> stream = ((RecordStorageInMemory) recordStorage)
+				.readListAsStream("place", emptyFilter);
+
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		assertEquals(stream.map(this::extractRecordId).collect(Collectors.toList()),
+				Arrays.asList("place:0002"));
+	}
+
+	@Test
+	public void testReadListAsStreamCanBeReadInParallel() {
+		for (int i = 0; i < 100; i++) {
+			createPlaceWithIdAndPlaceName("place:" + i, "Uppsala");
+		}
+
+		Stream<DataGroup> stream = ((RecordStorageInMemory) recordStorage)
+				.readListAsStream("place", emptyFilter);
+
+		assertEquals(stream.parallel().count(), 100);
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No records exists with recordType: place")
+	public void testReadListAsStreamNoRecordsOfType() {
+		((RecordStorageInMemory) recordStorage).readListAsStream("place", emptyFilter);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "start must be larger than zero: 0")
+	public void testReadListWithStartZero() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+
+		recordStorage.readList("place", createFilterWithStartAndRows("0", "10"));
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "rows must be a number: many")
+	public void testReadListWithRowsNotANumber() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+
+		recordStorage.readList("place", createFilterWithStartAndRows("1", "many"));
+	}
+
 	@Test(expectedExceptions = RecordNotFoundException.class)
 	public void testReadRecordListNotFound() {
 		String recordType = "place_NOT_FOUND";
@@ -353,7 +710,7 @@ public class RecordStorageInMemoryListTest {
 		StorageReadResult readResult = recordStorage.readAbstractList(recordType, emptyFilter);
 		Collection<DataGroup> recordList = readResult.listOfDataGroups;
 		assertEquals(recordList.size(), 3);
-		assertEquals(readResult.start, 0);
+		assertEquals(readResult.start, 1);
 		assertEquals(readResult.totalNumberOfMatches, 3);
 	}
 
@@ -378,6 +735,174 @@ public class RecordStorageInMemoryListTest {
 				.getFirstAtomicValueWithNameInData("id"), "image:0001");
 	}
 
+	@Test
+	public void testReadListReportsStartAsGivenInFilter() {
+		createPlaceInStorageWithUppsalaStorageTerm();
+		createPlaceInStorageWithStockholmStorageTerm();
+		createPlaceInStorageWithUppsalaStorageAndStockholmTerm();
+
+		StorageReadResult readResult = recordStorage.readList("place",
+				createFilterWithStartAndRows("3", "5"));
+		StorageReadResult readResultPastMatches = recordStorage.readList("place",
+				createFilterWithStartAndRows("5", "1"));
+
+		assertEquals(readResult.start, 3);
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResultPastMatches.start, 5);
+		assertEquals(readResultPastMatches.listOfDataGroups.size(), 0);
+		assertEquals(readResultPastMatches.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testReadAbstractRecordListWithStartAndRowsSpanningRecordTypes() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		createGenericBinaryRecord();
+
+		StorageReadResult readResult = recordStorage.readAbstractList("binary",
+				createFilterWithStartAndRows("2", "2"));
+
+		assertEquals(readResult.listOfDataGroups.size(), 2);
+		assertEquals(readResult.start, 2);
+		assertEquals(readResult.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testReadAbstractRecordListWithStartAfterLastRecord() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		createGenericBinaryRecord();
+
+		StorageReadResult readResult = recordStorage.readAbstractList("binary",
+				createFilterWithStartAndRows("4", "2"));
+
+		assertEquals(readResult.listOfDataGroups.size(), 0);
+		assertEquals(readResult.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testCountRecordsForType() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Stockholm");
+
+		long noOfRecords = ((RecordStorageInMemory) recordStorage).countRecordsForType("place",
+				emptyFilter);
+
+		assertEquals(noOfRecords, 2);
+	}
+
+	@Test
+	public void testCountRecordsForTypeWithFilter() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Stockholm");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				"Uppsala"));
+
+		long noOfRecords = ((RecordStorageInMemory) recordStorage).countRecordsForType("place",
+				filter);
+
+		assertEquals(noOfRecords, recordStorage.readList("place", filter).totalNumberOfMatches);
+		assertEquals(noOfRecords, 2);
+	}
+
+	@Test
+	public void testCountRecordsForTypeWithFilterFollowsUpdatesAndDeletes() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0002", "Uppsala");
+		createPlaceWithIdAndPlaceName("place:0003", "Uppsala");
+		DataGroup dataGroup = recordStorage.read("place", "place:0001");
+
+		recordStorage.update("place", "place:0001", dataGroup,
+				createCollectedDataWithPlaceName("place:0001", "Stockholm"), emptyLinkList,
+				dataDivider);
+		recordStorage.deleteByTypeAndId("place", "place:0002");
+
+		RecordStorageInMemory storage = (RecordStorageInMemory) recordStorage;
+		assertEquals(storage.countRecordsForType("place", createFilterWithPlaceName("Uppsala")),
+				1);
+		assertEquals(storage.countRecordsForType("place", createFilterWithPlaceName("Stockholm")),
+				1);
+	}
+
+	@Test
+	public void testCountRecordsForTypeWithFilterOnMissingKey() {
+		createPlaceWithIdAndPlaceName("place:0001", "Uppsala");
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "noKey",
+				"Uppsala"));
+
+		assertEquals(((RecordStorageInMemory) recordStorage).countRecordsForType("place", filter),
+				0);
+	}
+
+	@Test
+	public void testCountRecordsForTypeWithoutRecords() {
+		long noOfRecords = ((RecordStorageInMemory) recordStorage).countRecordsForType("place",
+				emptyFilter);
+
+		assertEquals(noOfRecords, 0);
+	}
+
+	@Test
+	public void testCountRecordsForAbstractType() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		createGenericBinaryRecord();
+
+		long noOfRecords = ((RecordStorageInMemory) recordStorage)
+				.countRecordsForAbstractType("binary", emptyFilter);
+
+		assertEquals(noOfRecords, 3);
+	}
+
+	@Test
+	public void testCountRecordsForAbstractTypeWithFilter() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		createGenericBinaryRecord();
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(
+				DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "id", "image:0001"));
+
+		long noOfRecords = ((RecordStorageInMemory) recordStorage)
+				.countRecordsForAbstractType("binary", filter);
+
+		assertEquals(noOfRecords, 1);
+	}
+
+	@Test
+	public void testReadAbstractRecordListSeesRecordTypeCreatedAfterPreviousRead() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		recordStorage.readAbstractList("binary", emptyFilter);
+
+		createRecordTypeInStorage(DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndParentId("sound", "true", "binary"));
+		DataGroup sound = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"sound", "sound:0001");
+		recordStorage.create("sound", "sound:0001", sound, emptyCollectedData, emptyLinkList,
+				dataDivider);
+
+		assertEquals(recordStorage.readAbstractList("binary", emptyFilter).totalNumberOfMatches,
+				3);
+	}
+
+	@Test
+	public void testReadAbstractRecordListDoesNotSeeRecordTypeDeletedAfterPreviousRead() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		createGenericBinaryRecord();
+		recordStorage.readAbstractList("binary", emptyFilter);
+
+		recordStorage.deleteByTypeAndId("recordType", "genericBinary");
+
+		assertEquals(recordStorage.readAbstractList("binary", emptyFilter).totalNumberOfMatches,
+				2);
+	}
+
 	private void createImageRecords() {
 		DataGroup dataGroup = DataCreator
 				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
@@ -515,4 +1040,125 @@ public class RecordStorageInMemoryListTest {
 				emptyFilter).listOfDataGroups;
 		assertEquals(recordList.size(), 2);
 	}
+
+	@Test
+	public void testReadAbstractRecordListReadsAgainWhenWrittenToDuringRead() {
+		RecordStorageWritingDuringRead writingStorage = createWritingStorageWithBinaryRecords();
+		writingStorage.writeDuringNextRead = true;
+
+		StorageReadResult readResult = recordStorage.readAbstractList("binary", emptyFilter);
+
+		assertEquals(readResult.listOfDataGroups.size(), 4);
+		assertEquals(readResult.totalNumberOfMatches, 4);
+	}
+
+	@Test
+	public void testReadAbstractRecordListIsNotReadAgainWhenOtherTypeIsWrittenDuringRead() {
+		RecordStorageWritingDuringRead writingStorage = createWritingStorageWithBinaryRecords();
+		recordStorage.readAbstractList("binary", emptyFilter);
+		int noOfLoadsInOneRead = writingStorage.noOfLoadsOfGenericBinary;
+		writingStorage.noOfLoadsOfGenericBinary = 0;
+		writingStorage.recordTypeToWriteTo = "place";
+		writingStorage.writeDuringNextRead = true;
+
+		StorageReadResult readResult = recordStorage.readAbstractList("binary", emptyFilter);
+
+		assertEquals(readResult.totalNumberOfMatches, 3);
+		assertEquals(writingStorage.noOfLoadsOfGenericBinary, noOfLoadsInOneRead);
+		assertEquals(recordStorage.read("place", "place:0003").getNameInData(), "nameInData");
+	}
+
+	@Test
+	public void testReadAbstractRecordListWrittenToDuringManyReadsDoesNotBlockWriters() {
+		RecordStorageWritingDuringRead writingStorage = createWritingStorageWithBinaryRecords();
+		writingStorage.noOfReadsToWriteDuring = 20;
+
+		StorageReadResult readResult = recordStorage.readAbstractList("binary", emptyFilter);
+
+		assertEquals(writingStorage.noOfReadsToWriteDuring, 0);
+		assertEquals(readResult.listOfDataGroups.size(), 23);
+		assertEquals(readResult.totalNumberOfMatches, 23);
+	}
+
+	private RecordStorageWritingDuringRead createWritingStorageWithBinaryRecords() {
+		RecordStorageWritingDuringRead writingStorage = new RecordStorageWritingDuringRead();
+		recordStorage = writingStorage;
+		createRecordTypeInStorage(DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("binary", "true", "true"));
+		createRecordTypeInStorage(DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndParentId("image", "true", "binary"));
+		createRecordTypeInStorage(DataCreator.createRecordTypeWithIdAndUserSuppliedIdAndParentId(
+				"genericBinary", "true", "binary"));
+		createImageRecords();
+		createGenericBinaryRecord();
+		return writingStorage;
+	}
+
+	private void createRecordTypeInStorage(DataGroup recordType) {
+		String id = recordType.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id");
+		recordStorage.create("recordType", id, recordType, emptyCollectedData, emptyLinkList,
+				dataDivider);
+	}
+
+	private class RecordStorageWritingDuringRead extends RecordStorageInMemory {
+		boolean writeDuringNextRead = false;
+		String recordTypeToWriteTo = null;
+		int noOfLoadsOfGenericBinary = 0;
+		int noOfReadsToWriteDuring = 0;
+		private List<String> readBinaryTypes = new ArrayList<>();
+
+		@Override
+		protected void ensureRecordsAreLoadedForRecordType(String recordType) {
+			if ("genericBinary".equals(recordType)) {
+				noOfLoadsOfGenericBinary++;
+				possiblyCreateImageFromOtherThread();
+			}
+			if (writeDuringNextRead && isNotReadBinaryType(recordType)) {
+				readBinaryTypes.add(recordType);
+				possiblyCreateRecordInFirstReadTypeFromOtherThread();
+			}
+		}
+
+		private boolean isNotReadBinaryType(String recordType) {
+			return ("image".equals(recordType) || "genericBinary".equals(recordType))
+					&& !readBinaryTypes.contains(recordType);
+		}
+
+		private void possiblyCreateImageFromOtherThread() {
+			if (noOfReadsToWriteDuring > 0) {
+				noOfReadsToWriteDuring--;
+				createRecordFromOtherThread("image", "image:1" + noOfReadsToWriteDuring);
+			}
+		}
+
+		private void possiblyCreateRecordInFirstReadTypeFromOtherThread() {
+			if (readBinaryTypes.size() == 2) {
+				writeDuringNextRead = false;
+				String typeToWriteTo = null == recordTypeToWriteTo ? readBinaryTypes.get(0)
+						: recordTypeToWriteTo;
+				createRecordFromOtherThread(typeToWriteTo, typeToWriteTo + ":0003");
+			}
+		}
+
+		private void createRecordFromOtherThread(String recordType, String recordId) {
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			try {
+				executor.submit(() -> createRecordUsingTypeAndId(recordType, recordId)).get(10,
+						TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		private void createRecordUsingTypeAndId(String recordType, String recordId) {
+			DataGroup dataGroup = DataCreator
+					.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId(
+							"nameInData", recordType, recordId);
+			create(recordType, recordId, dataGroup, emptyCollectedData, emptyLinkList,
+					dataDivider);
+		}
+	}
 }
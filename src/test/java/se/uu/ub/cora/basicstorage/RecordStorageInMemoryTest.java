@@ -22,13 +22,22 @@ package se.uu.ub.cora.basicstorage;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -36,6 +45,7 @@ import org.testng.annotations.Test;
 import se.uu.ub.cora.basicstorage.testdata.DataCreator;
 import se.uu.ub.cora.basicstorage.testdata.TestDataRecordInMemoryStorage;
 import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.data.DataGroupFactory;
 import se.uu.ub.cora.data.DataGroupProvider;
@@ -96,6 +106,21 @@ public class RecordStorageInMemoryTest {
 
 	}
 
+	@Test
+	public void testInitWithDataCopiesRecordsForEachRecordType() {
+		Map<String, Map<String, DividerGroup>> records = new HashMap<>();
+		Map<String, DividerGroup> places = new HashMap<>();
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		places.put("place:0001", DividerGroup.withDataDividerAndDataGroup(dataDivider, dataGroup));
+		records.put("place", places);
+
+		RecordStorageInMemory recordsInMemoryWithData = new RecordStorageInMemory(records);
+		places.remove("place:0001");
+
+		assertTrue(recordsInMemoryWithData.records.get("place") instanceof ConcurrentHashMap);
+		assertTrue(recordsInMemoryWithData.records.get("place").containsKey("place:0001"));
+	}
+
 	private DataGroup createDataGroupWithRecordInfo() {
 		return DataCreator.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId(
 				"nameInData", "place", "place:0001");
@@ -306,6 +331,134 @@ public class RecordStorageInMemoryTest {
 		assertNotNull(image);
 	}
 
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: image:0001")
+	public void testReadDeletedRecordOfAbstractType() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		recordStorage.read("binary", "image:0001");
+
+		recordStorage.deleteByTypeAndId("image", "image:0001");
+
+		recordStorage.read("binary", "image:0001");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: image:0009")
+	public void testReadRecordOfAbstractTypeWithIdOnlyInNotImplementingType() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"place", "image:0009");
+		recordStorage.create("place", "image:0009", dataGroup, emptyLinkList, emptyLinkList,
+				dataDivider);
+
+		recordStorage.read("binary", "image:0009");
+	}
+
+	@Test
+	public void testRecordExistsForAbstractTypeAfterRecordIsMovedToOtherImplementingType() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+
+		recordStorage.deleteByTypeAndId("image", "image:0001");
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"genericBinary", "image:0001");
+		recordStorage.create("genericBinary", "image:0001", dataGroup, emptyLinkList,
+				emptyLinkList, dataDivider);
+
+		assertTrue(recordStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(
+				"binary", "image:0001"));
+		assertEquals(recordStorage.read("binary", "image:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("type"),
+				"genericBinary");
+	}
+
+	@Test
+	public void testReadRecordOfAbstractTypeWithIdInSeveralImplementingTypes() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"genericBinary", "image:0001");
+		recordStorage.create("genericBinary", "image:0001", dataGroup, emptyLinkList,
+				emptyLinkList, dataDivider);
+		String firstReadType = readTypeOfRecordUsingTypeAndId("binary", "image:0001");
+
+		recordStorage.deleteByTypeAndId(firstReadType, "image:0001");
+
+		String otherType = "image".equals(firstReadType) ? "genericBinary" : "image";
+		assertEquals(readTypeOfRecordUsingTypeAndId("binary", "image:0001"), otherType);
+		recordStorage.deleteByTypeAndId(otherType, "image:0001");
+		assertFalse(recordStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(
+				"binary", "image:0001"));
+	}
+
+	private String readTypeOfRecordUsingTypeAndId(String recordType, String recordId) {
+		return recordStorage.read(recordType, recordId).getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("type");
+	}
+
+	@Test
+	public void testReadOrNull() {
+		RecordStorageInMemory recordsInMemoryWithTestData = TestDataRecordInMemoryStorage
+				.createRecordStorageInMemoryWithTestData();
+
+		DataGroup place = recordsInMemoryWithTestData.readOrNull("place", "place:0001");
+
+		assertEquals(place.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), "place:0001");
+	}
+
+	@Test
+	public void testReadOrNullMissingRecordId() {
+		RecordStorageInMemory recordsInMemoryWithTestData = TestDataRecordInMemoryStorage
+				.createRecordStorageInMemoryWithTestData();
+
+		assertNull(recordsInMemoryWithTestData.readOrNull("place", "NOTplace:0001"));
+	}
+
+	@Test
+	public void testReadOrNullMissingRecordType() {
+		RecordStorageInMemory recordsInMemoryWithTestData = TestDataRecordInMemoryStorage
+				.createRecordStorageInMemoryWithTestData();
+
+		assertNull(recordsInMemoryWithTestData.readOrNull("NOTrecordType", "place:0001"));
+	}
+
+	@Test
+	public void testReadOrNullRecordOfAbstractType() {
+		RecordStorageInMemory recordsInMemoryWithTestData = TestDataRecordInMemoryStorage
+				.createRecordStorageInMemoryWithTestData();
+		recordStorage = recordsInMemoryWithTestData;
+		createImageRecords();
+
+		assertNotNull(recordsInMemoryWithTestData.readOrNull("binary", "image:0001"));
+		assertNull(recordsInMemoryWithTestData.readOrNull("binary", "image:0009"));
+	}
+
+	@Test
+	public void testReadUsesUpdatedRecordType() {
+		recordStorage = TestDataRecordInMemoryStorage.createRecordStorageInMemoryWithTestData();
+		createImageRecords();
+		DataGroup genericBinary = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("nameInData",
+						"genericBinary", "genericBinary:0001");
+		recordStorage.create("genericBinary", "genericBinary:0001", genericBinary, emptyLinkList,
+				emptyLinkList, dataDivider);
+		recordStorage.read("genericBinary", "genericBinary:0001");
+
+		DataGroup abstractGenericBinary = DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("genericBinary", "true",
+						"true");
+		recordStorage.update("recordType", "genericBinary", abstractGenericBinary,
+				emptyLinkList, emptyLinkList, dataDivider);
+
+		assertNull(((RecordStorageInMemory) recordStorage).readOrNull("genericBinary",
+				"genericBinary:0001"));
+	}
+
 	@Test(expectedExceptions = RecordNotFoundException.class)
 	public void testReadMissingRecordType() {
 		recordStorage.read("", "");
@@ -369,6 +522,79 @@ public class RecordStorageInMemoryTest {
 		// assertEquals(child.getValue(), "childValue");
 	}
 
+	@Test
+	public void testCreateAndUpdateTakingOverEnteredDataStoresEnteredData() {
+		RecordStorageInMemory takingOverStorage = new RecordStorageInMemory();
+		takingOverStorage.takeOverEnteredDataInsteadOfCopying();
+		dataCopierFactory.factoredCopier = null;
+		takingOverStorage.create("recordType", FROM_RECORD_TYPE,
+				DataCreator.createRecordTypeWithIdAndUserSuppliedIdAndAbstract(FROM_RECORD_TYPE,
+						"true", "false"),
+				emptyCollectedData, emptyLinkList, dataDivider);
+		DataGroup linkList = DataCreator.createEmptyLinkList();
+		linkList.addChild(DataCreator.createRecordToRecordLink(FROM_RECORD_TYPE, FROM_RECORD_ID,
+				TO_RECORD_TYPE, TO_RECORD_ID));
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		takingOverStorage.create(FROM_RECORD_TYPE, FROM_RECORD_ID, dataGroup, emptyCollectedData,
+				linkList, dataDivider);
+		DataGroup updatedDataGroup = createDataGroupWithRecordInfo();
+		DataGroup updatedLinkList = DataCreator.createEmptyLinkList();
+		updatedLinkList.addChild(DataCreator.createRecordToRecordLink(FROM_RECORD_TYPE,
+				FROM_RECORD_ID, TO_RECORD_TYPE, TO_RECORD_ID));
+		takingOverStorage.update(FROM_RECORD_TYPE, FROM_RECORD_ID, updatedDataGroup,
+				emptyCollectedData, updatedLinkList, dataDivider);
+
+		assertNull(dataCopierFactory.factoredCopier);
+		assertSame(takingOverStorage.read(FROM_RECORD_TYPE, FROM_RECORD_ID), updatedDataGroup);
+		assertSame(takingOverStorage.readLinkList(FROM_RECORD_TYPE, FROM_RECORD_ID),
+				updatedLinkList);
+	}
+
+	@Test
+	public void testRecordsAreKeptCompactAndReadThroughCache() {
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		RecordStorageInMemory compactStorage = new RecordStorageInMemory();
+		compactStorage.keepRecordsCompactUsingNoOfCachedRecords(10);
+		compactStorage.create("recordType", "place",
+				DataCreator.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("place", "true",
+						"false"),
+				emptyCollectedData, emptyLinkList, dataDivider);
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		compactStorage.create("place", "place:0001", dataGroup, emptyCollectedData,
+				emptyLinkList, dataDivider);
+
+		assertNull(compactStorage.records.get("place").get("place:0001").dataGroup);
+		assertNotNull(compactStorage.records.get("recordType").get("place").dataGroup);
+		DataGroup readDataGroup = compactStorage.read("place", "place:0001");
+		assertNotSame(readDataGroup, dataGroup);
+		assertEquals(readDataGroup.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), "place:0001");
+		assertSame(compactStorage.read("place", "place:0001"), readDataGroup);
+		assertEquals(compactStorage.getExpandedRecordCache().getNoOfCachedRecords(), 1);
+	}
+
+	@Test
+	public void testUpdateOfCompactRecordIsReadAfterUpdate() {
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		RecordStorageInMemory compactStorage = new RecordStorageInMemory();
+		compactStorage.keepRecordsCompactUsingNoOfCachedRecords(10);
+		compactStorage.create("recordType", "place",
+				DataCreator.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("place", "true",
+						"false"),
+				emptyCollectedData, emptyLinkList, dataDivider);
+		compactStorage.create("place", "place:0001", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, dataDivider);
+		compactStorage.read("place", "place:0001");
+		DataGroup updatedDataGroup = createDataGroupWithRecordInfo();
+		updatedDataGroup.addChild(new DataAtomicSpy("name", "Uppsala"));
+
+		compactStorage.update("place", "place:0001", updatedDataGroup, emptyCollectedData,
+				emptyLinkList, dataDivider);
+
+		DataGroup readDataGroup = compactStorage.read("place", "place:0001");
+		assertEquals(readDataGroup.getFirstAtomicValueWithNameInData("name"), "Uppsala");
+	}
+
 	@Test(expectedExceptions = RecordConflictException.class)
 	public void testCreateConflict() {
 		DataGroup dataGroup = createDataGroupWithRecordInfo();
@@ -808,4 +1034,91 @@ public class RecordStorageInMemoryTest {
 
 		recordStorage.read("abstractRecordType", "someType:0001");
 	}
+
+	@Test
+	public void testConcurrentReadsWhileWriting() throws Exception {
+		DataGroup placeRecordType = DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("place", "true", "false");
+		recordStorage.create("recordType", "place", placeRecordType, emptyLinkList,
+				emptyLinkList, dataDivider);
+		createPlaceWithLinkUsingId("place:0");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> readers = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				readers.add(executor.submit(this::readPlacesAndLinks));
+			}
+			Future<?> writer = executor.submit(this::createAndDeletePlaces);
+
+			writer.get();
+			for (Future<?> reader : readers) {
+				reader.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(recordStorage.readList("place", emptyFilter).listOfDataGroups.size(), 1);
+	}
+
+	private void createPlaceWithLinkUsingId(String recordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+		DataGroup linkList = DataCreator.createEmptyLinkList();
+		linkList.addChild(DataCreator.createRecordToRecordLink("place", recordId,
+				TO_RECORD_TYPE, TO_RECORD_ID));
+		recordStorage.create("place", recordId, dataGroup, emptyCollectedData, linkList,
+				dataDivider);
+	}
+
+	private void createAndDeletePlaces() {
+		for (int i = 1; i <= 500; i++) {
+			createPlaceWithLinkUsingId("place:" + i);
+			recordStorage.deleteByTypeAndId("place", "place:" + (i - 1));
+		}
+	}
+
+	private void readPlacesAndLinks() {
+		for (int i = 0; i < 500; i++) {
+			for (DataGroup place : recordStorage.readList("place", emptyFilter).listOfDataGroups) {
+				assertEquals(place.getNameInData(), "authority");
+			}
+			recordStorage.generateLinkCollectionPointingToRecord(TO_RECORD_TYPE, TO_RECORD_ID);
+			recordStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("place",
+					"place:" + i);
+		}
+	}
+
+	@Test
+	public void testWriteIsOnlyBlockedByWritesToSameRecordType() throws Exception {
+		RecordTypeWriteLocks writeLocks = ((RecordStorageInMemory) recordStorage).writeLocks;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		writeLocks.lockRecordType("place");
+		try {
+			Future<?> imageWriter = executor.submit(() -> createRecordUsingTypeAndId("image",
+					"image:0001"));
+			imageWriter.get(10, TimeUnit.SECONDS);
+
+			Future<?> placeWriter = executor.submit(() -> createRecordUsingTypeAndId("place",
+					"place:0001"));
+			Thread.sleep(100);
+			assertFalse(placeWriter.isDone());
+			writeLocks.unlockRecordType("place");
+			placeWriter.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertFalse(writeLocks.isRecordTypeLockedByCurrentThread("place"));
+		assertTrue(recordStorage.recordsExistForRecordType("image"));
+		assertTrue(recordStorage.recordsExistForRecordType("place"));
+	}
+
+	private void createRecordUsingTypeAndId(String recordType, String recordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						recordType, recordId);
+		recordStorage.create(recordType, recordId, dataGroup, emptyCollectedData, emptyLinkList,
+				dataDivider);
+	}
 }
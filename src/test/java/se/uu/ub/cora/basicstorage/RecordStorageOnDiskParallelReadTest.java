@@ -0,0 +1,242 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
+
+public class RecordStorageOnDiskParallelReadTest {
+	private static final String FILE_READER_THREAD_NAME = "recordStorageOnDiskFileReader";
+	private static final int NO_OF_DATA_DIVIDERS = 12;
+	private static final int NO_OF_RECORDS_PER_DATA_DIVIDER = 5;
+	private String basePath = "/tmp/recordStorageOnDiskParallelReadTemp/";
+	private RecordStorageOnDisk recordStorage;
+
+	@BeforeMethod
+	public void makeSureBasePathExistsAndIsEmpty() throws IOException {
+		File dir = new File(basePath);
+		dir.mkdir();
+		deleteFiles(basePath);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+
+		recordStorage = RecordStorageOnDisk.createRecordStorageOnDiskWithBasePath(basePath);
+	}
+
+	private void deleteFiles(String path) throws IOException {
+		Stream<Path> list;
+		list = Files.list(Paths.get(path));
+
+		list.forEach(p -> deleteFile(p));
+		list.close();
+	}
+
+	private void deleteFile(Path path) {
+		try {
+			if (path.toFile().isDirectory()) {
+				deleteFiles(path.toString());
+			}
+			Files.delete(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		if (Files.exists(Paths.get(basePath))) {
+			deleteFiles(basePath);
+			File dir = new File(basePath);
+			dir.delete();
+		}
+	}
+
+	private List<String> createPlacesInManyDataDividers() {
+		List<String> recordIds = new ArrayList<>();
+		for (int divider = 0; divider < NO_OF_DATA_DIVIDERS; divider++) {
+			for (int record = 0; record < NO_OF_RECORDS_PER_DATA_DIVIDER; record++) {
+				String recordId = "place:" + divider + "_" + record;
+				createPlaceWithNameAndLinkToRecordIdInDataDivider(recordId, "name" + record,
+						"place:0_0", "divider" + divider);
+				recordIds.add(recordId);
+			}
+		}
+		return recordIds;
+	}
+
+	private void createPlaceWithNameAndLinkToRecordIdInDataDivider(String recordId,
+			String placeName, String linkedRecordId, String dataDivider) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+
+		DataGroup collectedData = DataCreator.createCollectedDataWithTypeAndId("place", recordId);
+		DataGroup collectStorageTerm = new DataGroupSpy("storage");
+		collectedData.addChild(collectStorageTerm);
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("1",
+						"placeNameStorageTerm", placeName, "placeName"));
+
+		DataGroup linkList = DataCreator.createEmptyLinkList();
+		linkList.addChild(DataCreator.createRecordToRecordLink("place", recordId, "place",
+				linkedRecordId));
+
+		recordStorage.create("place", recordId, dataGroup, collectedData, linkList,
+				dataDivider);
+	}
+
+	@Test
+	public void testParallelReadingEqualsSequentialReading() {
+		List<String> recordIds = createPlacesInManyDataDividers();
+
+		RecordStorageOnDisk sequentialStorage = new RecordStorageOnDiskReadingSequentially(
+				basePath);
+		RecordStorageOnDisk parallelStorage = new RecordStorageOnDiskReadingInParallel(basePath);
+
+		for (String recordId : recordIds) {
+			assertSameRecordAndLinksInBothStorages(sequentialStorage, parallelStorage,
+					recordId);
+		}
+		for (int record = 0; record < NO_OF_RECORDS_PER_DATA_DIVIDER; record++) {
+			assertSameRecordIdsFoundForPlaceName(sequentialStorage, parallelStorage,
+					"name" + record);
+		}
+		assertEquals(readRecordIdsForFilter(parallelStorage, DataCreator.createEmptyFilter()),
+				readRecordIdsForFilter(sequentialStorage, DataCreator.createEmptyFilter()));
+		assertEquals(parallelStorage.generateLinkCollectionPointingToRecord("place", "place:0_0")
+				.size(), recordIds.size());
+	}
+
+	private void assertSameRecordAndLinksInBothStorages(RecordStorageOnDisk sequentialStorage,
+			RecordStorageOnDisk parallelStorage, String recordId) {
+		assertEquals(getRecordIdFromRecordInfo(parallelStorage.read("place", recordId)),
+				getRecordIdFromRecordInfo(sequentialStorage.read("place", recordId)));
+		assertEquals(parallelStorage.readLinkList("place", recordId).getChildren().size(),
+				sequentialStorage.readLinkList("place", recordId).getChildren().size());
+	}
+
+	private String getRecordIdFromRecordInfo(DataGroup record) {
+		return record.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id");
+	}
+
+	private void assertSameRecordIdsFoundForPlaceName(RecordStorageOnDisk sequentialStorage,
+			RecordStorageOnDisk parallelStorage, String placeName) {
+		DataGroup filter = DataCreator.createEmptyFilter();
+		filter.addChild(DataCreator.createFilterPartWithRepeatIdAndKeyAndValue("0", "placeName",
+				placeName));
+		List<String> sequentialRecordIds = readRecordIdsForFilter(sequentialStorage, filter);
+		assertEquals(sequentialRecordIds.size(), NO_OF_DATA_DIVIDERS);
+		assertEquals(readRecordIdsForFilter(parallelStorage, filter), sequentialRecordIds);
+	}
+
+	private List<String> readRecordIdsForFilter(RecordStorageOnDisk storage, DataGroup filter) {
+		List<String> recordIds = new ArrayList<>();
+		for (DataGroup record : storage.readList("place", filter).listOfDataGroups) {
+			recordIds.add(getRecordIdFromRecordInfo(record));
+		}
+		return recordIds;
+	}
+
+	@Test
+	public void testFailureInOneFileIsPropagatedAndFileReadersAreShutDown() throws Exception {
+		createPlacesInManyDataDividers();
+		Files.write(Paths.get(basePath, "divider7", "place_divider7.json.gz"),
+				"not gzipped json".getBytes());
+
+		try {
+			new RecordStorageOnDiskReadingInParallel(basePath);
+			fail("DataStorageException should have been thrown");
+		} catch (DataStorageException e) {
+			assertTrue(e.getMessage().startsWith("can not read files from disk on init: "));
+		}
+		assertFalse(fileReaderThreadsAreAliveAfterWaiting());
+	}
+
+	private boolean fileReaderThreadsAreAliveAfterWaiting() throws InterruptedException {
+		for (int i = 0; i < 50; i++) {
+			if (!fileReaderThreadsAreAlive()) {
+				return false;
+			}
+			Thread.sleep(100);
+		}
+		return true;
+	}
+
+	private boolean fileReaderThreadsAreAlive() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (FILE_READER_THREAD_NAME.equals(thread.getName()) && thread.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class RecordStorageOnDiskReadingSequentially extends RecordStorageOnDisk {
+		RecordStorageOnDiskReadingSequentially(String basePath) {
+			super(basePath);
+		}
+
+		@Override
+		protected int getMaxNoOfThreadsForReadingFiles() {
+			return 1;
+		}
+	}
+
+	private static class RecordStorageOnDiskReadingInParallel extends RecordStorageOnDisk {
+		RecordStorageOnDiskReadingInParallel(String basePath) {
+			super(basePath);
+		}
+
+		@Override
+		protected int getMaxNoOfThreadsForReadingFiles() {
+			return 4;
+		}
+	}
+}
@@ -20,6 +20,8 @@ package se.uu.ub.cora.basicstorage;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
@@ -35,9 +37,17 @@ import java.util.stream.Stream;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
 import se.uu.ub.cora.basicstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.data.DataGroupFactory;
 import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.MetadataStorage;
 import se.uu.ub.cora.storage.MetadataStorageProvider;
@@ -114,6 +124,217 @@ public class RecordStorageOnDiskProviderTest {
 		assertTrue(recordStorage instanceof RecordStorageInMemoryReadFromDisk);
 	}
 
+	@Test
+	public void testNormalStartupReturnsRecordStorageOnDiskWithJournal() {
+		initInfo.put("storageType", "journal");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorage recordStorage = recordStorageOnDiskProvider.getRecordStorage();
+		assertTrue(recordStorage instanceof RecordStorageOnDiskWithJournal);
+	}
+
+	@Test
+	public void testStartupWithMappedStorageTypeReturnsRecordStorageWithMappedRecords() {
+		initInfo.put("storageType", "mapped");
+		initInfo.put("storageNoOfCachedRecords", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorage recordStorage = recordStorageOnDiskProvider.getRecordStorage();
+		assertTrue(recordStorage instanceof RecordStorageOnDiskWithMappedRecords);
+	}
+
+	@Test
+	public void testStartupWithSynchronousDurabilityReturnsRecordStorageOnDisk() {
+		initInfo.put("storageDurability", "synchronous");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorage recordStorage = recordStorageOnDiskProvider.getRecordStorage();
+		assertTrue(recordStorage instanceof RecordStorageOnDisk);
+		assertFalse(recordStorage instanceof RecordStorageOnDiskWithWriteBehind);
+	}
+
+	@Test
+	public void testNormalStartupLoadsAllRecordsAtStart() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertFalse(recordStorage.isLoadingRecordsWhenUsed());
+	}
+
+	@Test
+	public void testStartupWithLoadingWhenUsedReturnsRecordStorageLoadingRecordsWhenUsed() {
+		initInfo.put("storageLoading", "whenUsed");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertTrue(recordStorage.isLoadingRecordsWhenUsed());
+	}
+
+	@Test
+	public void testNormalStartupCopiesEnteredData() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertTrue(recordStorage.isCopyingEnteredData());
+	}
+
+	@Test
+	public void testStartupWithTakeOverEnteredDataReturnsRecordStorageNotCopyingEnteredData() {
+		initInfo.put("storageEnteredData", "takeOver");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertFalse(recordStorage.isCopyingEnteredData());
+	}
+
+	@Test
+	public void testNormalStartupKeepsRecordsExpanded() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertNull(recordStorage.getExpandedRecordCache());
+	}
+
+	@Test
+	public void testStartupWithCompactRecordFormReturnsRecordStorageKeepingRecordsCompact() {
+		initInfo.put("storageRecordForm", "compact");
+		initInfo.put("storageNoOfCachedRecords", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertNotNull(recordStorage.getExpandedRecordCache());
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "storageNoOfCachedRecords must be a number")
+	public void testErrorIfNoOfCachedRecordsIsNotANumber() {
+		initInfo.put("storageRecordForm", "compact");
+		initInfo.put("storageNoOfCachedRecords", "many");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test
+	public void testStartupWithIntervalDurabilityReturnsRecordStorageWithRunningFlusher() {
+		initInfo.put("storageDurability", "interval");
+		initInfo.put("storageFlushIntervalInMilliseconds", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDiskWithWriteBehind recordStorage = (RecordStorageOnDiskWithWriteBehind) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertTrue(recordStorage.isFlusherRunning());
+		recordStorage.close();
+	}
+
+	@Test
+	public void testStartupWithOnShutdownDurabilityReturnsRecordStorageWithoutFlusher() {
+		initInfo.put("storageDurability", "onShutdown");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDiskWithWriteBehind recordStorage = (RecordStorageOnDiskWithWriteBehind) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertFalse(recordStorage.isFlusherRunning());
+		recordStorage.close();
+	}
+
+	@Test
+	public void testLoggingStartupWithIntervalDurability() {
+		initInfo.put("storageDurability", "interval");
+		initInfo.put("storageFlushIntervalInMilliseconds", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 3),
+				"Found interval as storageDurability");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 1000 as storageFlushIntervalInMilliseconds");
+		assertEquals(loggerFactorySpy.getNoOfInfoLogMessagesUsingClassName(testedClassName), 6);
+		((RecordStorageOnDiskWithWriteBehind) recordStorageOnDiskProvider.getRecordStorage())
+				.close();
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unknown storageDurability: sometimes")
+	public void testErrorIfUnknownDurability() {
+		initInfo.put("storageDurability", "sometimes");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "storageFlushIntervalInMilliseconds must be a number")
+	public void testErrorIfFlushIntervalIsNotANumber() {
+		initInfo.put("storageDurability", "interval");
+		initInfo.put("storageFlushIntervalInMilliseconds", "often");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Storage options can not be combined: storageType journal, storageLoading whenUsed")
+	public void testErrorIfStorageTypeIsCombinedWithLoadingWhenUsed() {
+		initInfo.put("storageType", "journal");
+		initInfo.put("storageLoading", "whenUsed");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Storage options can not be combined: storageType memory, "
+			+ "storageDurability onShutdown")
+	public void testErrorIfStorageTypeIsCombinedWithWriteBehindDurability() {
+		initInfo.put("storageType", "memory");
+		initInfo.put("storageDurability", "onShutdown");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Storage options can not be combined: storageDurability interval, "
+			+ "storageRecordForm compact")
+	public void testErrorIfWriteBehindDurabilityIsCombinedWithCompactRecordForm() {
+		initInfo.put("storageDurability", "interval");
+		initInfo.put("storageFlushIntervalInMilliseconds", "1000");
+		initInfo.put("storageRecordForm", "compact");
+		initInfo.put("storageNoOfCachedRecords", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Storage options can not be combined: storageLoading whenUsed, "
+			+ "storageRecordForm compact")
+	public void testErrorIfLoadingWhenUsedIsCombinedWithCompactRecordForm() {
+		initInfo.put("storageLoading", "whenUsed");
+		initInfo.put("storageRecordForm", "compact");
+		initInfo.put("storageNoOfCachedRecords", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test
+	public void testLoggingErrorIfStorageOptionsCanNotBeCombined() {
+		initInfo.put("storageType", "mapped");
+		initInfo.put("storageLoading", "whenUsed");
+		try {
+			recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		} catch (DataStorageException e) {
+			// expected
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Storage options can not be combined: storageType mapped, "
+						+ "storageLoading whenUsed");
+		assertNull(recordStorageOnDiskProvider.getRecordStorage());
+	}
+
+	@Test
+	public void testStartupWithMappedStorageTypeAndCompactRecordFormIsAllowed() {
+		initInfo.put("storageType", "mapped");
+		initInfo.put("storageRecordForm", "compact");
+		initInfo.put("storageNoOfCachedRecords", "1000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorage recordStorage = recordStorageOnDiskProvider.getRecordStorage();
+		assertTrue(recordStorage instanceof RecordStorageOnDiskWithMappedRecords);
+	}
+
+	@Test
+	public void testStartupWithStorageTypeAndSynchronousDurabilityIsAllowed() {
+		initInfo.put("storageType", "journal");
+		initInfo.put("storageDurability", "synchronous");
+		initInfo.put("storageEnteredData", "takeOver");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertTrue(recordStorage instanceof RecordStorageOnDiskWithJournal);
+		assertFalse(recordStorage.isCopyingEnteredData());
+	}
+
 	@Test
 	public void testNormalStartupBasePathSentToRecordStorage() {
 		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
@@ -208,4 +429,51 @@ public class RecordStorageOnDiskProviderTest {
 		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
 	}
 
+	@Test
+	public void testStartedRecordStorageIsClosedOnShutdown() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertTrue(RecordStoragesClosedOnShutdown.isClosedOnShutdown(recordStorage));
+		recordStorage.close();
+		assertFalse(RecordStoragesClosedOnShutdown.isClosedOnShutdown(recordStorage));
+	}
+
+	@Test
+	public void testRestartAfterCloseReadsRecordsFromBinarySnapshot() {
+		setDataProvidersNeededToWriteAndReadRecords();
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		RecordStorageOnDisk recordStorage = (RecordStorageOnDisk) recordStorageOnDiskProvider
+				.getRecordStorage();
+		createPlaceInRecordStorage(recordStorage);
+		recordStorage.close();
+
+		RecordStorageInstance.setInstance(null);
+		RecordStorageProvider restartedProvider = new RecordStorageOnDiskProvider();
+		restartedProvider.startUsingInitInfo(initInfo);
+
+		RecordStorageOnDisk restartedStorage = (RecordStorageOnDisk) restartedProvider
+				.getRecordStorage();
+		assertTrue(restartedStorage.isReadFromBinarySnapshot());
+		assertEquals(restartedStorage.read("place", "place:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0001");
+	}
+
+	private void setDataProvidersNeededToWriteAndReadRecords() {
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+	}
+
+	private void createPlaceInRecordStorage(RecordStorageOnDisk recordStorage) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", "place:0001");
+		recordStorage.create("place", "place:0001", dataGroup,
+				DataCreator.createEmptyCollectedData(), DataCreator.createEmptyLinkList(), "cora");
+	}
 }
@@ -21,6 +21,7 @@ package se.uu.ub.cora.basicstorage;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.io.BufferedReader;
@@ -41,6 +42,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -348,6 +353,27 @@ public class RecordStorageOnDiskTest {
 		assertFalse(pathIncludingDataDivider.toFile().exists());
 	}
 
+	@Test
+	public void testUpdateOnlyRewritesFileForChangedDataDivider() throws IOException {
+		DataGroup emptyLinkList = new DataGroupSpy("collectedDataLinks");
+		RecordStorageOnDisk recordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+		recordStorage.create("place", "place:0002", dataGroup, emptyCollectedData, emptyLinkList,
+				"jsClient");
+		writeZippedFileToDisk("not rewritten", "cora", "place_cora.json");
+
+		recordStorage.update("place", "place:0002", dataGroup, emptyCollectedData, emptyLinkList,
+				"jsClient");
+
+		assertEquals(readJsonFileFromDisk(PLACE_CORA_FILENAME, "cora"), "not rewritten\n");
+		assertEquals(readJsonFileFromDisk(PLACE_JSCLIENT_FILENAME, "jsClient"),
+				expectedRecordJsonOneRecordPlace1);
+	}
+
 	@Test
 	public void testInitTwoFilesOnDiskTwoSystems() throws IOException {
 		createRecordTypePlace();
@@ -519,6 +545,94 @@ public class RecordStorageOnDiskTest {
 		assertEquals(readJsonFileFromDisk(LINK_LISTS_FILENAME, "cora"), expectedLinkListJson);
 	}
 
+	@Test
+	public void testUnchangedLinkListIsNotRewrittenOnUpdate() throws IOException {
+		createRecordTypePlace();
+		RecordStorageOnDisk recordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup, emptyCollectedData,
+				createLinkListWithTwoLinks("place:0001"), "cora");
+		writeZippedFileToDisk("not rewritten", "cora", "linkLists_cora.json");
+
+		recordStorage.update("place", "place:0001", dataGroup, emptyCollectedData,
+				createLinkListWithTwoLinks("place:0001"), "cora");
+
+		assertEquals(readJsonFileFromDisk("linkLists_cora.json.gz", "cora"), "not rewritten\n");
+	}
+
+	@Test
+	public void testChangedLinkListIsRewrittenOnUpdate() throws IOException {
+		createRecordTypePlace();
+		RecordStorageOnDisk recordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup, emptyCollectedData,
+				createLinkListWithTwoLinks("place:0001"), "cora");
+		writeZippedFileToDisk("not rewritten", "cora", "linkLists_cora.json");
+
+		recordStorage.update("place", "place:0001", dataGroup, emptyCollectedData,
+				emptyLinkList, "cora");
+
+		assertFalse(Files.exists(Paths.get(basePath, "cora", "linkLists_cora.json.gz")));
+	}
+
+	@Test
+	public void testLoadingRecordsWhenUsedLoadsRecordTypeOnFirstRead() {
+		createRecordTypePlace();
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup, emptyCollectedData,
+				createLinkListWithTwoLinks("place:0001"), "cora");
+
+		RecordStorageOnDisk lazyRecordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePathLoadingRecordsWhenUsed(basePath);
+
+		assertTrue(lazyRecordStorage.getNotLoadedRecordTypes().contains("place"));
+		assertTrue(lazyRecordStorage.linksExistForRecord(TO_RECORD_TYPE, TO_RECORD_ID));
+		assertTrue(lazyRecordStorage.getNotLoadedRecordTypes().contains("place"));
+
+		DataGroup dataGroupOut = lazyRecordStorage.read("place", "place:0001");
+
+		assertJsonEqualDataGroup(dataGroupOut, dataGroup);
+		assertTrue(lazyRecordStorage.getNotLoadedRecordTypes().isEmpty());
+	}
+
+	@Test
+	public void testLoadingRecordsWhenUsedKeepsStoredRecordsOnCreate() {
+		createRecordTypePlace();
+		recordStorage.create("place", "place:0001", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, "cora");
+		RecordStorageOnDisk lazyRecordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePathLoadingRecordsWhenUsed(basePath);
+
+		lazyRecordStorage.create("place", "place:0002", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, "cora");
+
+		RecordStorageOnDisk readRecordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+		assertEquals(readRecordStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+	}
+
+	@Test
+	public void testKeepingRecordsCompactWritesAndReadsRecords() {
+		createRecordTypePlace();
+		RecordStorageOnDisk compactRecordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePathKeepingRecordsCompact(basePath, 10);
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		compactRecordStorage.create("place", "place:0001", dataGroup, emptyCollectedData,
+				emptyLinkList, "cora");
+
+		RecordStorageOnDisk readCompactRecordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePathKeepingRecordsCompact(basePath, 10);
+
+		assertNull(readCompactRecordStorage.records.get("place").get("place:0001").dataGroup);
+		assertJsonEqualDataGroup(readCompactRecordStorage.read("place", "place:0001"),
+				dataGroup);
+	}
+
 	@Test
 	public void testRecordWithLinksOneRecordTypeWithoutLinks() throws IOException {
 		DataGroup linkListWithTwoLinks = createLinkListWithTwoLinks("place:0001");
@@ -1359,7 +1473,7 @@ public class RecordStorageOnDiskTest {
 
 		String expectedCollectedDataOneTerm2 = "{\n";
 		expectedCollectedDataOneTerm2 += "    \"children\": [{\n";
-		expectedCollectedDataOneTerm2 += "        \"repeatId\": \"1\",\n";
+		expectedCollectedDataOneTerm2 += "        \"repeatId\": \"0\",\n";
 		expectedCollectedDataOneTerm2 += "        \"children\": [\n";
 		expectedCollectedDataOneTerm2 += "            {\n";
 		expectedCollectedDataOneTerm2 += "                \"name\": \"type\",\n";
@@ -1394,6 +1508,38 @@ public class RecordStorageOnDiskTest {
 				expectedCollectedDataOneTerm2);
 	}
 
+	@Test
+	public void testWriteCollectedDataOnlyRewritesFileForChangedDataDivider()
+			throws IOException {
+		createRecordTypePlace();
+		RecordStorageOnDisk recordStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup,
+				createCollectedDataWithOneTermForId("place:0001"), emptyLinkList, "cora");
+		recordStorage.create("place", "place:0002", dataGroup,
+				createCollectedDataWithOneTermForId("place:0002"), emptyLinkList, "testSystem");
+		writeZippedFileToDisk("not rewritten", "cora", "collectedData_cora.json");
+
+		recordStorage.update("place", "place:0002", dataGroup,
+				createCollectedDataWithOneTermForId("place:0002"), emptyLinkList, "testSystem");
+
+		assertEquals(readJsonFileFromDisk(COLLECTED_DATA_FILENAME, "cora"), "not rewritten\n");
+		assertTrue(Files.exists(
+				Paths.get(basePath, "testSystem", "collectedData_testSystem.json.gz")));
+	}
+
+	private DataGroup createCollectedDataWithOneTermForId(String recordId) {
+		DataGroup collectedData = DataCreator.createCollectedDataWithTypeAndId("place", recordId);
+		DataGroup collectStorageTerm = new DataGroupSpy("storage");
+		collectedData.addChild(collectStorageTerm);
+		collectStorageTerm.addChild(DataCreator
+				.createStorageTermWithRepeatIdAndTermIdAndTermValueAndStorageKey("1",
+						"placeNameStorageTerm", "Uppsala", "placeName"));
+		return collectedData;
+	}
+
 	@Test
 	public void testWriteUpdatedCollectedDataToDiskOneRecordOneTerms() throws IOException {
 		createRecordTypePlace();
@@ -1823,6 +1969,39 @@ public class RecordStorageOnDiskTest {
 				expectedRecordJsonOneRecordPlace1);
 	}
 
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: place:0002")
+	public void testUpdateMissingRecordId() {
+		DataGroup dataGroup = createDataGroupWithRecordInfo();
+		recordStorage.create("place", "place:0001", dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+
+		recordStorage.update("place", "place:0002", dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No records exists with recordType: place")
+	public void testUpdateUnknownRecordType() {
+		recordStorage.update("place", "place:0001", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, "cora");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: place:0002")
+	public void testDeleteMissingRecordId() {
+		recordStorage.create("place", "place:0001", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, "cora");
+
+		recordStorage.deleteByTypeAndId("place", "place:0002");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No records exists with recordType: place")
+	public void testDeleteUnknownRecordType() {
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+	}
+
 	@Test
 	public void testDeleteFileOnDiskRemovedWhenNoRecordsLeft() throws IOException {
 		RecordStorageOnDisk recordStorage = RecordStorageOnDisk
@@ -2260,6 +2439,41 @@ public class RecordStorageOnDiskTest {
 		recordStorage.deleteDirectory(dir);
 	}
 
+	@Test
+	public void testConcurrentWritesForTwoRecordTypesInSameDataDivider() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> placeWriter = executor
+					.submit(() -> createAndDeleteRecordsWithLinksUsingType("place"));
+			Future<?> imageWriter = executor
+					.submit(() -> createAndDeleteRecordsWithLinksUsingType("image"));
+
+			placeWriter.get(60, TimeUnit.SECONDS);
+			imageWriter.get(60, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertFalse(Files.exists(Paths.get(basePath, "cora")));
+		recordStorage.create("place", "place:0001", createDataGroupWithRecordInfo(),
+				emptyCollectedData, emptyLinkList, "cora");
+		assertTrue(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+	}
+
+	private void createAndDeleteRecordsWithLinksUsingType(String recordType) {
+		for (int i = 0; i < 200; i++) {
+			String recordId = recordType + ":" + i;
+			DataGroup dataGroup = DataCreator
+					.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId(
+							"authority", recordType, recordId);
+			DataGroup linkList = DataCreator.createEmptyLinkList();
+			linkList.addChild(DataCreator.createRecordToRecordLink(recordType, recordId,
+					TO_RECORD_TYPE, TO_RECORD_ID));
+			recordStorage.create(recordType, recordId, dataGroup, emptyCollectedData, linkList,
+					"cora");
+			recordStorage.deleteByTypeAndId(recordType, recordId);
+		}
+	}
+
 	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
 			+ "Symbolic link points to missing path: /tmp/recordStorageOnDiskTemp/linkTest")
 	public void testStartWithSymbolicLinkPointingToNothing() throws IOException {
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
+import se.uu.ub.cora.storage.RecordConflictException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class RecordStorageOnDiskWithJournalTest {
+	private static final String PLACE_CORA_FILENAME = "place_cora.json.gz";
+	private String basePath = "/tmp/recordStorageOnDiskWithJournalTemp/";
+	private DataGroup emptyLinkList = DataCreator.createEmptyLinkList();
+	private DataGroup emptyCollectedData = DataCreator.createEmptyCollectedData();
+	private RecordStorageOnDiskWithJournal recordStorage;
+
+	@BeforeMethod
+	public void makeSureBasePathExistsAndIsEmpty() throws IOException {
+		File dir = new File(basePath);
+		dir.mkdir();
+		deleteFiles(basePath);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+
+		recordStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+	}
+
+	private void deleteFiles(String path) throws IOException {
+		Stream<Path> list;
+		list = Files.list(Paths.get(path));
+
+		list.forEach(p -> deleteFile(p));
+		list.close();
+	}
+
+	private void deleteFile(Path path) {
+		try {
+			if (path.toFile().isDirectory()) {
+				deleteFiles(path.toString());
+			}
+			Files.delete(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		if (Files.exists(Paths.get(basePath))) {
+			deleteFiles(basePath);
+			File dir = new File(basePath);
+			dir.delete();
+		}
+	}
+
+	private void createRecordTypePlace() {
+		DataGroup placeRecordType = DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("place", "true", "false");
+		recordStorage.create("recordType", "place", placeRecordType, emptyCollectedData,
+				emptyLinkList, "cora");
+	}
+
+	private void createPlace(String recordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+		recordStorage.create("place", recordId, dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+	}
+
+	private Path getJournalPath() {
+		return Paths.get(basePath, "journal", "journal.json");
+	}
+
+	@Test
+	public void testCreateIsWrittenToJournalNotToRecordFile() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		assertTrue(Files.exists(getJournalPath()));
+		assertEquals(recordStorage.getNoOfJournalEntries(), 2);
+		assertFalse(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+	}
+
+	@Test
+	public void testJournalIsReplayedOnStartup() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup readPlace = restartedStorage.read("place", "place:0001");
+		assertEquals(readPlace.getNameInData(), "authority");
+	}
+
+	@Test
+	public void testReplayedJournalIsWrittenAsSnapshotAndCleared() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertTrue(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+		assertFalse(Files.exists(getJournalPath()));
+		assertEquals(restartedStorage.getNoOfJournalEntries(), 0);
+	}
+
+	@Test
+	public void testWriteSnapshot() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		recordStorage.writeSnapshot();
+
+		assertTrue(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+		assertFalse(Files.exists(getJournalPath()));
+		assertEquals(recordStorage.getNoOfJournalEntries(), 0);
+	}
+
+	@Test
+	public void testUpdateIsReplayedOnStartup() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		DataGroup updatedPlace = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("person",
+						"place", "place:0001");
+		recordStorage.update("place", "place:0001", updatedPlace, emptyCollectedData,
+				emptyLinkList, "cora");
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup readPlace = restartedStorage.read("place", "place:0001");
+		assertEquals(readPlace.getNameInData(), "person");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class)
+	public void testDeleteIsReplayedOnStartup() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		createPlace("place:0002");
+		recordStorage.deleteByTypeAndId("place", "place:0002");
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		restartedStorage.read("place", "place:0002");
+	}
+
+	@Test
+	public void testDeleteOfSnapshotRecordRemovesRecordFileOnSnapshot() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		recordStorage.writeSnapshot();
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+		assertTrue(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+
+		recordStorage.writeSnapshot();
+
+		assertFalse(Files.exists(Paths.get(basePath, "cora", PLACE_CORA_FILENAME)));
+	}
+
+	@Test
+	public void testPartlyWrittenLastEntryIsSkipped() throws IOException {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		Files.write(getJournalPath(), "{\"children\":[{\"name\":".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		DataGroup readPlace = restartedStorage.read("place", "place:0001");
+		assertEquals(readPlace.getNameInData(), "authority");
+	}
+
+	@Test
+	public void testCreateWithConflictingIdIsNotWrittenToJournal() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		try {
+			createPlace("place:0001");
+			fail("RecordConflictException should have been thrown");
+		} catch (RecordConflictException e) {
+			assertEquals(recordStorage.getNoOfJournalEntries(), 2);
+		}
+	}
+
+	@Test
+	public void testUpdateOfMissingRecordIsNotWrittenToJournal() {
+		createRecordTypePlace();
+		DataGroup updatedPlace = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("person",
+						"place", "place:0001");
+		try {
+			recordStorage.update("place", "place:0001", updatedPlace, emptyCollectedData,
+					emptyLinkList, "cora");
+			fail("RecordNotFoundException should have been thrown");
+		} catch (RecordNotFoundException e) {
+			assertEquals(recordStorage.getNoOfJournalEntries(), 1);
+		}
+	}
+
+	@Test
+	public void testDeleteOfMissingRecordIsNotWrittenToJournal() {
+		createRecordTypePlace();
+		try {
+			recordStorage.deleteByTypeAndId("place", "place:0001");
+			fail("RecordNotFoundException should have been thrown");
+		} catch (RecordNotFoundException e) {
+			assertEquals(recordStorage.getNoOfJournalEntries(), 1);
+		}
+	}
+
+	@Test
+	public void testWriteSnapshotLeavesNoTemporaryFiles() throws IOException {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		recordStorage.writeSnapshot();
+
+		try (Stream<Path> paths = Files.walk(Paths.get(basePath))) {
+			assertFalse(paths.anyMatch(path -> path.toString().endsWith(".tmp")));
+		}
+	}
+
+	@Test
+	public void testConcurrentCreatesForTwoRecordTypesAreAllWrittenToJournal()
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> placeWriter = executor.submit(() -> createRecordsUsingType("place"));
+			Future<?> imageWriter = executor.submit(() -> createRecordsUsingType("image"));
+
+			placeWriter.get(60, TimeUnit.SECONDS);
+			imageWriter.get(60, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(recordStorage.getNoOfJournalEntries(), 200);
+
+		RecordStorageOnDiskWithJournal restartedStorage = RecordStorageOnDiskWithJournal
+				.createRecordStorageOnDiskWithBasePath(basePath);
+
+		assertEquals(restartedStorage.records.get("place").size(), 100);
+		assertEquals(restartedStorage.records.get("image").size(), 100);
+	}
+
+	private void createRecordsUsingType(String recordType) {
+		for (int i = 0; i < 100; i++) {
+			String recordId = recordType + ":" + i;
+			DataGroup dataGroup = DataCreator
+					.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId(
+							"authority", recordType, recordId);
+			recordStorage.create(recordType, recordId, dataGroup, emptyCollectedData,
+					emptyLinkList, "cora");
+		}
+	}
+}
+
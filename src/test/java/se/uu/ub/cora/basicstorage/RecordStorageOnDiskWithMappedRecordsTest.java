@@ -0,0 +1,349 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
+
+public class RecordStorageOnDiskWithMappedRecordsTest {
+	private String basePath = "/tmp/recordStorageOnDiskWithMappedRecordsTemp/";
+	private DataGroup emptyLinkList = DataCreator.createEmptyLinkList();
+	private DataGroup emptyCollectedData = DataCreator.createEmptyCollectedData();
+	private RecordStorageOnDiskWithMappedRecords recordStorage;
+
+	@BeforeMethod
+	public void makeSureBasePathExistsAndIsEmpty() throws IOException {
+		File dir = new File(basePath);
+		dir.mkdir();
+		deleteFiles(basePath);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+
+		recordStorage = createMappedRecordStorage();
+	}
+
+	private RecordStorageOnDiskWithMappedRecords createMappedRecordStorage() {
+		return RecordStorageOnDiskWithMappedRecords
+				.createRecordStorageOnDiskWithBasePathAndNoOfCachedRecords(basePath, 10);
+	}
+
+	private void deleteFiles(String path) throws IOException {
+		Stream<Path> list;
+		list = Files.list(Paths.get(path));
+
+		list.forEach(p -> deleteFile(p));
+		list.close();
+	}
+
+	private void deleteFile(Path path) {
+		try {
+			if (path.toFile().isDirectory()) {
+				deleteFiles(path.toString());
+			}
+			Files.delete(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		if (Files.exists(Paths.get(basePath))) {
+			deleteFiles(basePath);
+			File dir = new File(basePath);
+			dir.delete();
+		}
+	}
+
+	private void createRecordTypePlace() {
+		DataGroup placeRecordType = DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract("place", "true", "false");
+		recordStorage.create("recordType", "place", placeRecordType, emptyCollectedData,
+				emptyLinkList, "cora");
+	}
+
+	private DataGroup createPlace(String recordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+		recordStorage.create("place", recordId, dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+		return dataGroup;
+	}
+
+	@Test
+	public void testRecordsAreStoredInMappedSegments() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+
+		DividerGroup storedRecord = recordStorage.records.get("place").get("place:0001");
+		assertNull(storedRecord.dataGroup);
+		assertNull(storedRecord.compactDataGroup);
+		assertTrue(storedRecord.mappedPosition >= 0);
+		assertEquals(recordStorage.getRecordSegments().getNoOfSegments(), 1);
+		assertTrue(Files.exists(Paths.get(basePath, "segments", "segment0.bin")));
+	}
+
+	@Test
+	public void testReadRecordFromMappedSegments() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		createPlace("place:0002");
+
+		DataGroup place = recordStorage.read("place", "place:0002");
+
+		assertEquals(place.getFirstGroupWithNameInData("recordInfo")
+				.getFirstAtomicValueWithNameInData("id"), "place:0002");
+	}
+
+	@Test
+	public void testRecordsAreReadFromRecordFilesOnStartup() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		createPlace("place:0002");
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertFalse(readStorage.records.get("place").get("place:0001")
+				.mappedPosition == DividerGroup.NOT_MAPPED);
+	}
+
+	@Test
+	public void testRecordsAreReopenedFromSegmentsOnStartupAfterSnapshot() {
+		createRecordTypePlace();
+		DataGroup place = createPlace("place:0001");
+		createPlace("place:0002");
+		recordStorage.update("place", "place:0001", place, emptyCollectedData, emptyLinkList,
+				"cora");
+		recordStorage.writeBinarySnapshot();
+		long mappedPosition = getMappedPosition(recordStorage, "place:0001");
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		assertEquals(getMappedPosition(readStorage, "place:0001"), mappedPosition);
+		assertEquals(readStorage.read("place", "place:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0001");
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertEquals(readStorage.read("recordType", "place").getNameInData(), "recordType");
+	}
+
+	private long getMappedPosition(RecordStorageOnDiskWithMappedRecords storage,
+			String recordId) {
+		return storage.records.get("place").get(recordId).mappedPosition;
+	}
+
+	@Test
+	public void testRecordsCreatedAfterReopenDoNotOverwriteReopenedRecords() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		recordStorage.writeBinarySnapshot();
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		recordStorage = readStorage;
+		createPlace("place:0002");
+
+		assertTrue(getMappedPosition(readStorage, "place:0002") > getMappedPosition(
+				readStorage, "place:0001"));
+		assertEquals(readStorage.read("place", "place:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0001");
+	}
+
+	@Test
+	public void testSegmentsAreRebuiltWhenDataFilesChangedAfterManifest() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		recordStorage.writeBinarySnapshot();
+		createPlace("place:0002");
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+	}
+
+	@Test
+	public void testUnchangedRecordTypesAreReopenedWhenOtherDataFilesChangedAfterManifest() {
+		createPlace("place:0001");
+		createRecordTypePlace();
+		recordStorage.writeBinarySnapshot();
+		long mappedPosition = recordStorage.records.get("recordType").get("place").mappedPosition;
+		assertTrue(mappedPosition > 0);
+		createPlace("place:0002");
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		assertEquals(readStorage.records.get("recordType").get("place").mappedPosition,
+				mappedPosition);
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertEquals(readStorage.read("place", "place:0002")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0002");
+	}
+
+	@Test
+	public void testManifestIsWrittenOnClose() {
+		createRecordTypePlace();
+		DataGroup place = createPlace("place:0001");
+		recordStorage.update("place", "place:0001", place, emptyCollectedData, emptyLinkList,
+				"cora");
+		long mappedPosition = getMappedPosition(recordStorage, "place:0001");
+
+		recordStorage.close();
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+		assertEquals(getMappedPosition(readStorage, "place:0001"), mappedPosition);
+		assertEquals(readStorage.read("place", "place:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0001");
+	}
+
+	@Test
+	public void testSegmentsAreCompactedOnStartupWhenMostUsedBytesAreNotInUse() {
+		createRecordTypePlace();
+		createPlace("place:0001");
+		DataGroup place = createPlace("place:0002");
+		for (int i = 0; i < 4; i++) {
+			recordStorage.update("place", "place:0002", place, emptyCollectedData,
+					emptyLinkList, "cora");
+		}
+		recordStorage.writeBinarySnapshot();
+		assertTrue(getMappedPosition(recordStorage, "place:0002") > 0);
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorage();
+
+		assertTrue(getMappedPosition(readStorage, "place:0002") < getMappedPosition(
+				recordStorage, "place:0002"));
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+	}
+
+	@Test
+	public void testManifestIsWrittenWhenSegmentIsSealed() {
+		recordStorage = createMappedRecordStorageWithSegmentSize(4096);
+		createRecordTypePlace();
+		DataGroup place = createPlace("place:0001");
+		recordStorage.update("place", "place:0001", place, emptyCollectedData, emptyLinkList,
+				"cora");
+		createPlacesUntilNoOfSegmentsIs(2);
+		long mappedPosition = getMappedPosition(recordStorage, "place:0001");
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorageWithSegmentSize(
+				4096);
+
+		assertTrue(Files.exists(recordStorage.getRecordSegments().getManifestPath()));
+		assertEquals(getMappedPosition(readStorage, "place:0001"), mappedPosition);
+		assertEquals(readStorage.read("place", "place:0001")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0001");
+	}
+
+	private RecordStorageOnDiskWithMappedRecords createMappedRecordStorageWithSegmentSize(
+			int segmentSize) {
+		return RecordStorageOnDiskWithMappedRecords
+				.createRecordStorageOnDiskWithBasePathAndNoOfCachedRecordsAndSegmentSize(basePath,
+						10, segmentSize);
+	}
+
+	private void createPlacesUntilNoOfSegmentsIs(int noOfSegments) {
+		int placeNo = 2;
+		while (recordStorage.getRecordSegments().getNoOfSegments() < noOfSegments) {
+			createPlace("place:" + placeNo);
+			placeNo++;
+		}
+	}
+
+	@Test
+	public void testSegmentsAreCompactedWhileRunningWhenMostUsedBytesAreNotInUse() {
+		recordStorage = createMappedRecordStorageWithSegmentSize(4096);
+		createRecordTypePlace();
+		createPlace("place:0001");
+		DataGroup place = createPlace("place:0002");
+		DividerGroup firstStoredRecord = recordStorage.records.get("place").get("place:0002");
+
+		for (int i = 0; i < 100; i++) {
+			recordStorage.update("place", "place:0002", place, emptyCollectedData,
+					emptyLinkList, "cora");
+			assertTrue(recordStorage.getRecordSegments().getNoOfSegments() <= 2);
+		}
+
+		MappedRecordSegments recordSegments = recordStorage.getRecordSegments();
+		assertFalse(Files.exists(
+				recordSegments.getSegmentPathForPosition(firstStoredRecord.mappedPosition)));
+		assertEquals(DataGroupCompactor.expand(recordSegments.read(firstStoredRecord))
+				.getNameInData(), "authority");
+		assertEquals(recordStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+	}
+
+	@Test
+	public void testRecordsAreReadAfterSegmentsAreCompactedWhileRunning() {
+		recordStorage = createMappedRecordStorageWithSegmentSize(4096);
+		createRecordTypePlace();
+		createPlace("place:0001");
+		createPlace("place:0002");
+		for (int i = 0; i < 100; i++) {
+			recordStorage.deleteByTypeAndId("place", "place:0002");
+			createPlace("place:0002");
+		}
+
+		RecordStorageOnDiskWithMappedRecords readStorage = createMappedRecordStorageWithSegmentSize(
+				4096);
+
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 2);
+		assertEquals(readStorage.read("place", "place:0002")
+				.getFirstGroupWithNameInData("recordInfo").getFirstAtomicValueWithNameInData("id"),
+				"place:0002");
+		assertTrue(readStorage.getRecordSegments().getNoOfSegments() <= 2);
+	}
+}
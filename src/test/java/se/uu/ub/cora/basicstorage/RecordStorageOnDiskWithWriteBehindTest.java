@@ -0,0 +1,304 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicdata.converter.DataToJsonConverterFactoryImp;
+import se.uu.ub.cora.basicdata.converter.JsonToDataConverterFactoryImp;
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.converter.DataToJsonConverterProvider;
+import se.uu.ub.cora.data.converter.JsonToDataConverterProvider;
+import se.uu.ub.cora.data.copier.DataCopierProvider;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class RecordStorageOnDiskWithWriteBehindTest {
+	private static final String PLACE_CORA_FILENAME = "place_cora.json.gz";
+	private String basePath = "/tmp/recordStorageOnDiskWithWriteBehindTemp/";
+	private DataGroup emptyLinkList = DataCreator.createEmptyLinkList();
+	private DataGroup emptyCollectedData = DataCreator.createEmptyCollectedData();
+	private RecordStorageOnDiskWithWriteBehind recordStorage;
+
+	@BeforeMethod
+	public void makeSureBasePathExistsAndIsEmpty() throws IOException {
+		File dir = new File(basePath);
+		dir.mkdir();
+		deleteFiles(basePath);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataCopierProvider.setDataCopierFactory(new DataCopierFactorySpy());
+		DataToJsonConverterProvider
+				.setDataToJsonConverterFactory(new DataToJsonConverterFactoryImp());
+		JsonToDataConverterProvider
+				.setJsonToDataConverterFactory(new JsonToDataConverterFactoryImp());
+
+		recordStorage = RecordStorageOnDiskWithWriteBehind
+				.createRecordStorageOnDiskWithBasePathFlushingOnClose(basePath);
+	}
+
+	private void deleteFiles(String path) throws IOException {
+		Stream<Path> list;
+		list = Files.list(Paths.get(path));
+
+		list.forEach(p -> deleteFile(p));
+		list.close();
+	}
+
+	private void deleteFile(Path path) {
+		try {
+			if (path.toFile().isDirectory()) {
+				deleteFiles(path.toString());
+			}
+			Files.delete(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@AfterMethod
+	public void removeTempFiles() throws IOException {
+		recordStorage.close();
+		if (Files.exists(Paths.get(basePath))) {
+			deleteFiles(basePath);
+			File dir = new File(basePath);
+			dir.delete();
+		}
+	}
+
+	private void createPlace(String recordId) {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", recordId);
+		recordStorage.create("place", recordId, dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+	}
+
+	private Path getPlaceCoraPath() {
+		return Paths.get(basePath, "cora", PLACE_CORA_FILENAME);
+	}
+
+	@Test
+	public void testCreateIsNotWrittenBeforeFlush() {
+		createPlace("place:0001");
+
+		assertFalse(Files.exists(getPlaceCoraPath()));
+		assertFalse(recordStorage.isFlusherRunning());
+	}
+
+	@Test
+	public void testFlushWritesChanges() {
+		createPlace("place:0001");
+
+		recordStorage.flush();
+
+		assertTrue(Files.exists(getPlaceCoraPath()));
+	}
+
+	@Test
+	public void testSeveralChangesAreWrittenInOneFlush() {
+		createPlace("place:0001");
+		createPlace("place:0002");
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		recordStorage.flush();
+
+		RecordStorageOnDisk readStorage = RecordStorageOnDisk
+				.createRecordStorageOnDiskWithBasePath(basePath);
+		assertEquals(readStorage.readList("place", DataCreator.createEmptyFilter())
+				.listOfDataGroups.size(), 1);
+	}
+
+	@Test
+	public void testCreateAndDeleteBeforeFlushLeavesNoFile() {
+		createPlace("place:0001");
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		recordStorage.flush();
+
+		assertFalse(Files.exists(getPlaceCoraPath()));
+	}
+
+	@Test
+	public void testDeleteOfFlushedRecordRemovesFileOnFlush() {
+		createPlace("place:0001");
+		recordStorage.flush();
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+
+		recordStorage.flush();
+
+		assertFalse(Files.exists(getPlaceCoraPath()));
+	}
+
+	@Test
+	public void testWrittenFilesAndDirectoriesAreForcedToDiskOnFlush() {
+		createPlace("place:0001");
+		recordStorage.writeChangedDataToDiskRemovingOnlyExistingFiles();
+		assertTrue(recordStorage.getPathsToForceToDisk().contains(getPlaceCoraPath()));
+		assertTrue(recordStorage.getPathsToForceToDisk()
+				.contains(getPlaceCoraPath().getParent()));
+		assertTrue(recordStorage.getPathsToForceToDisk().contains(Paths.get(basePath)));
+
+		recordStorage.flush();
+
+		assertTrue(recordStorage.getPathsToForceToDisk().isEmpty());
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: place:0002")
+	public void testUpdateMissingRecordId() {
+		createPlace("place:0001");
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", "place:0002");
+
+		recordStorage.update("place", "place:0002", dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No records exists with recordType: place")
+	public void testUpdateUnknownRecordType() {
+		DataGroup dataGroup = DataCreator
+				.createDataGroupWithNameInDataAndRecordInfoWithRecordTypeAndRecordId("authority",
+						"place", "place:0001");
+
+		recordStorage.update("place", "place:0001", dataGroup, emptyCollectedData, emptyLinkList,
+				"cora");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No record exists with recordId: place:0002")
+	public void testDeleteMissingRecordId() {
+		createPlace("place:0001");
+
+		recordStorage.deleteByTypeAndId("place", "place:0002");
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "No records exists with recordType: place")
+	public void testDeleteUnknownRecordType() {
+		recordStorage.deleteByTypeAndId("place", "place:0001");
+	}
+
+	@Test
+	public void testCloseWritesChanges() {
+		createPlace("place:0001");
+
+		recordStorage.close();
+
+		assertTrue(Files.exists(getPlaceCoraPath()));
+	}
+
+	@Test
+	public void testCloseWritesBinarySnapshot() {
+		createPlace("place:0001");
+
+		recordStorage.close();
+
+		assertTrue(Files.exists(
+				RecordStorageBinarySnapshot.usingBasePath(basePath).getSnapshotPath()));
+	}
+
+	@Test
+	public void testIsClosedOnShutdownUntilClosed() {
+		assertTrue(RecordStoragesClosedOnShutdown.isClosedOnShutdown(recordStorage));
+
+		recordStorage.close();
+
+		assertFalse(RecordStoragesClosedOnShutdown.isClosedOnShutdown(recordStorage));
+	}
+
+	@Test
+	public void testConcurrentClosesCloseOnce() throws Exception {
+		createPlace("place:0001");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> firstClose = executor.submit(recordStorage::close);
+			Future<?> secondClose = executor.submit(recordStorage::close);
+
+			firstClose.get(10, TimeUnit.SECONDS);
+			secondClose.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertTrue(Files.exists(getPlaceCoraPath()));
+		assertTrue(recordStorage.getPathsToForceToDisk().isEmpty());
+	}
+
+	@Test
+	public void testChangesAfterCloseAreWrittenDirectly() {
+		recordStorage.close();
+
+		createPlace("place:0001");
+
+		assertTrue(Files.exists(getPlaceCoraPath()));
+	}
+
+	@Test
+	public void testFlusherWritesChangesUsingInterval() throws InterruptedException {
+		recordStorage.close();
+		recordStorage = RecordStorageOnDiskWithWriteBehind
+				.createRecordStorageOnDiskWithBasePathAndFlushInterval(basePath, 10);
+		assertTrue(recordStorage.isFlusherRunning());
+
+		createPlace("place:0001");
+
+		waitForFileToBeWritten(getPlaceCoraPath());
+		assertTrue(Files.exists(getPlaceCoraPath()));
+	}
+
+	private void waitForFileToBeWritten(Path path) throws InterruptedException {
+		int waitedMilliseconds = 0;
+		while (!Files.exists(path) && waitedMilliseconds < 5000) {
+			Thread.sleep(10);
+			waitedMilliseconds += 10;
+		}
+	}
+
+	@Test
+	public void testCloseStopsFlusher() {
+		recordStorage.close();
+		recordStorage = RecordStorageOnDiskWithWriteBehind
+				.createRecordStorageOnDiskWithBasePathAndFlushInterval(basePath, 10);
+
+		recordStorage.close();
+
+		assertFalse(recordStorage.isFlusherRunning());
+	}
+}
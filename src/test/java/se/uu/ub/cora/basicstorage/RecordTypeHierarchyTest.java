@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.basicstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.basicstorage.testdata.DataCreator;
+import se.uu.ub.cora.data.DataGroup;
+
+public class RecordTypeHierarchyTest {
+	private Map<String, DataGroup> recordTypes;
+
+	@BeforeMethod
+	public void setUp() {
+		recordTypes = new LinkedHashMap<>();
+		addAbstractRecordType("authority");
+		addRecordTypeWithParent("country", "place");
+		addRecordTypeWithParent("person", "authority");
+		addAbstractRecordTypeWithParent("place", "authority");
+		addRecordTypeWithParent("town", "place");
+	}
+
+	private void addAbstractRecordType(String recordType) {
+		recordTypes.put(recordType, DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract(recordType, "true", "true"));
+	}
+
+	private void addRecordTypeWithParent(String recordType, String parentId) {
+		recordTypes.put(recordType, DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndParentId(recordType, "true", parentId));
+	}
+
+	private void addAbstractRecordTypeWithParent(String recordType, String parentId) {
+		DataGroup recordTypeDataGroup = DataCreator
+				.createRecordTypeWithIdAndUserSuppliedIdAndAbstract(recordType, "true", "true");
+		DataGroup parent = new DataGroupSpy("parentId");
+		parent.addChild(new DataAtomicSpy("linkedRecordType", "recordType"));
+		parent.addChild(new DataAtomicSpy("linkedRecordId", parentId));
+		recordTypeDataGroup.addChild(parent);
+		recordTypes.put(recordType, recordTypeDataGroup);
+	}
+
+	private RecordTypeHierarchy createHierarchy() {
+		return RecordTypeHierarchy.usingVersionAndRecordTypes(7, recordTypes);
+	}
+
+	@Test
+	public void testVersion() {
+		assertEquals(createHierarchy().version, 7);
+	}
+
+	@Test
+	public void testImplementingRecordTypesIncludeGrandChildrenAfterTheirParent() {
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(hierarchy.getImplementingRecordTypes("authority"),
+				Arrays.asList("person", "place", "country", "town"));
+	}
+
+	@Test
+	public void testImplementingRecordTypesForChild() {
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(hierarchy.getImplementingRecordTypes("place"),
+				Arrays.asList("country", "town"));
+	}
+
+	@Test
+	public void testNoImplementingRecordTypes() {
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(hierarchy.getImplementingRecordTypes("town"), Collections.emptyList());
+		assertEquals(hierarchy.getImplementingRecordTypes("notARecordType"),
+				Collections.emptyList());
+	}
+
+	@Test
+	public void testIsImplementingRecordType() {
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertTrue(hierarchy.isImplementingRecordType("authority", "town"));
+		assertTrue(hierarchy.isImplementingRecordType("place", "town"));
+		assertFalse(hierarchy.isImplementingRecordType("place", "person"));
+		assertFalse(hierarchy.isImplementingRecordType("town", "place"));
+	}
+
+	@Test
+	public void testAbstractFlags() {
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertTrue(hierarchy.isAbstract("authority"));
+		assertTrue(hierarchy.isAbstract("place"));
+		assertFalse(hierarchy.isAbstract("town"));
+		assertFalse(hierarchy.isAbstract("notARecordType"));
+	}
+
+	@Test
+	public void testDescriptor() {
+		RecordTypeDescriptor descriptor = createHierarchy().getDescriptorOrNull("place");
+
+		assertEquals(descriptor.parentId, "authority");
+		assertTrue(descriptor.isAbstract);
+		assertEquals(descriptor.implementingRecordTypes, Arrays.asList("country", "town"));
+		assertTrue(descriptor.hasImplementingRecordType("town"));
+		assertFalse(descriptor.hasImplementingRecordType("person"));
+	}
+
+	@Test
+	public void testDescriptorWithoutParent() {
+		RecordTypeDescriptor descriptor = createHierarchy().getDescriptorOrNull("authority");
+
+		assertNull(descriptor.parentId);
+	}
+
+	@Test
+	public void testNoDescriptorForMissingRecordType() {
+		assertNull(createHierarchy().getDescriptorOrNull("notARecordType"));
+	}
+
+	@Test
+	public void testRecordTypesInACycleAreOnlyAddedOnce() {
+		addRecordTypeWithParent("authority", "town");
+
+		RecordTypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(hierarchy.getImplementingRecordTypes("place"),
+				Arrays.asList("country", "town", "authority", "person", "place"));
+	}
+}